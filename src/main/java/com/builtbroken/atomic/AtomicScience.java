@@ -323,6 +323,7 @@ public class AtomicScience
         //Kill old thread
         MapHandler.THREAD_RAD_EXPOSURE.kill();
         MapHandler.THREAD_THERMAL_ACTION.kill();
+        MapHandler.APPLY_QUEUE.clear();
     }
 
     /**
@@ -16,12 +16,11 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 import org.lwjgl.input.Keyboard;
 
 import java.util.HashMap;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 public abstract class CommonProxy extends ContentProxy implements IGuiHandler
 {
-    public static final HashMap<UUID, AcceleratorParticleRenderData> PARTICLES_TO_RENDER = new HashMap(); //TODO add fly wheel pattern
+    public static final HashMap<Integer, AcceleratorParticleRenderData> PARTICLES_TO_RENDER = new HashMap(); //TODO add fly wheel pattern
     public static final ConcurrentLinkedQueue<PacketAcceleratorParticleSync> NEW_PARTICLE_PACKETS = new ConcurrentLinkedQueue();
 
     public CommonProxy(String name)
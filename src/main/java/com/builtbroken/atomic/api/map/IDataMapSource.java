@@ -142,9 +142,25 @@ public interface IDataMapSource extends IPosWorld
     /**
      * Called each tick in the {@link net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent}
      * Only use as needed
+     * <p>
+     * Sources that are change tracked are only updated when checked, see {@link #isChangeTracked()}
      */
     default void update()
     {
 
     }
+
+    /**
+     * Checks if the source reports its own changes through
+     * {@link com.builtbroken.atomic.map.data.node.MapDataSources#markDirty(IDataMapSource)}.
+     * <p>
+     * Tracked sources are only checked when marked dirty and by a slow
+     * sweep, rather than every tick.
+     *
+     * @return true if changes are reported
+     */
+    default boolean isChangeTracked()
+    {
+        return false;
+    }
 }
@@ -1,25 +1,29 @@
 package com.builtbroken.atomic.client.particles;
 
 import net.minecraft.item.ItemStack;
-
-import java.util.UUID;
+import net.minecraft.util.EnumFacing;
 
 /**
  * Created by Dark(DarkGuardsman, Robert) on 4/14/2019.
  */
 public class AcceleratorParticleRenderData
 {
-    public UUID ID;
+    public int id;
     public int dim;
     public float cx, cy, cz;
     public float lx, ly, lz;
-    public float tx, ty, tz;
 
     public ItemStack renderItem = ItemStack.EMPTY;
 
     public float energy;
     public float speed;
 
+    //Direction to extrapolate in until the next update
+    public EnumFacing direction;
+
+    //Ticks between updates from the server
+    public int interval = 1;
+
     public float yawRotation = 0;
     public float pitchRotation = 0;
 
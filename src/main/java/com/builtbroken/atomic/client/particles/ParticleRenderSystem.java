@@ -36,10 +36,11 @@ public class ParticleRenderSystem
             final World world = Minecraft.getMinecraft().world;
 
             //Tick
-            CommonProxy.PARTICLES_TO_RENDER.values().forEach(p -> p.keepAlive++);
+            CommonProxy.PARTICLES_TO_RENDER.values().forEach(p -> extrapolate(p));
 
-            //Cleanup
-            CommonProxy.PARTICLES_TO_RENDER.values().removeIf(p -> p.dim != world.provider.getDimension() || p.keepAlive > 10);
+            //Cleanup, particles are kept until the server removes them as updates only carry the item once.
+            //A late update after lag would otherwise recreate the particle without its item
+            CommonProxy.PARTICLES_TO_RENDER.values().removeIf(p -> p.dim != world.provider.getDimension());
         }
         else
         {
@@ -49,6 +50,26 @@ public class ParticleRenderSystem
         }
     }
 
+    /**
+     * Moves the particle forward between server updates. Turns are sent by the
+     * server as they happen, so a straight line is good until the next update.
+     *
+     * @param data - particle
+     */
+    private static void extrapolate(AcceleratorParticleRenderData data)
+    {
+        data.keepAlive++;
+        data.lx = data.cx;
+        data.ly = data.cy;
+        data.lz = data.cz;
+        if (data.direction != null && data.keepAlive < data.interval)
+        {
+            data.cx += data.direction.getXOffset() * data.speed;
+            data.cy += data.direction.getYOffset() * data.speed;
+            data.cz += data.direction.getZOffset() * data.speed;
+        }
+    }
+
     @SubscribeEvent
     public static void render(RenderWorldLastEvent event)
     {
@@ -78,9 +99,14 @@ public class ParticleRenderSystem
             GlStateManager.pushMatrix();
             GlStateManager.translate(-xx, -yy, -zz);
 
+            //Position between last tick and this tick
+            final double x = data.lx + (data.cx - data.lx) * partialTicks;
+            final double y = data.ly + (data.cy - data.ly) * partialTicks;
+            final double z = data.lz + (data.cz - data.lz) * partialTicks;
+
             //Set data
             entityItem.setWorld(world);
-            entityItem.setPosition(data.cx, data.cy, data.cz);
+            entityItem.setPosition(x, y, z);
             entityItem.setItem(data.renderItem == null || data.renderItem.isEmpty() ? brokenItem : data.renderItem);
             entityItem.hoverStart = 0;
 
@@ -91,7 +117,7 @@ public class ParticleRenderSystem
 
             //Render
             //GlStateManager.scale(0.8, 0.8, 0.8);
-            renderEntityItem.doRender(entityItem, data.cx, data.cy, data.cz, 0, 0);
+            renderEntityItem.doRender(entityItem, x, y, z, 0, 0);
 
             GlStateManager.popMatrix();
         }
@@ -102,26 +128,35 @@ public class ParticleRenderSystem
     {
         while (CommonProxy.NEW_PARTICLE_PACKETS.peek() != null)
         {
-            AcceleratorParticleRenderData data;
             final PacketAcceleratorParticleSync packet = CommonProxy.NEW_PARTICLE_PACKETS.poll();
-            if (CommonProxy.PARTICLES_TO_RENDER.containsKey(packet.ID))
+            for (PacketAcceleratorParticleSync.Entry entry : packet.entries)
             {
-                data = CommonProxy.PARTICLES_TO_RENDER.get(packet.ID);
+                AcceleratorParticleRenderData data = CommonProxy.PARTICLES_TO_RENDER.get(entry.id);
+                if (data == null)
+                {
+                    data = new AcceleratorParticleRenderData();
+                    CommonProxy.PARTICLES_TO_RENDER.put(entry.id, data);
+                }
+
+                data.id = entry.id;
+                data.dim = packet.dim;
+                data.interval = packet.interval;
+                data.cx = data.lx = entry.cx;
+                data.cy = data.ly = entry.cy;
+                data.cz = data.lz = entry.cz;
+                data.speed = entry.speed;
+                data.direction = entry.direction;
+                if (entry.renderItem != null)
+                {
+                    data.renderItem = entry.renderItem;
+                }
+                data.keepAlive = 0;
             }
-            else
+
+            for (int id : packet.removed)
             {
-                data = new AcceleratorParticleRenderData();
-                CommonProxy.PARTICLES_TO_RENDER.put(packet.ID, data);
+                CommonProxy.PARTICLES_TO_RENDER.remove(id);
             }
-
-            data.ID = packet.ID;
-            data.dim = packet.dim;
-            data.cx = packet.cx;
-            data.cy = packet.cy;
-            data.cz = packet.cz;
-            data.speed = packet.speed;
-            data.renderItem = packet.renderItem;
-            data.keepAlive = 0;
         }
     }
 }
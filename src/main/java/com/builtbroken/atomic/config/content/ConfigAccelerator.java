@@ -29,4 +29,19 @@ public class ConfigAccelerator
             "However, can be disabled if you notice issues with particle movement.")
     @Config.LangKey("config.atomicscience:content.accelerator.fraction.math.title")
     public boolean FRACTION_MATH = true;
+
+    @Config.Name("max_move_steps")
+    @Config.Comment("Most node steps a particle can take in a single tick. Straight tubes and repeated laps of a ring, " +
+            "magnets included, are skipped without steps. This only limits rings with junctions or detectors, " +
+            "distance left when the limit is hit is moved the next tick.")
+    @Config.LangKey("config.atomicscience:content.accelerator.move.steps.title")
+    @Config.RangeInt(min = 1, max = 100000)
+    public int MAX_MOVE_STEPS = 1000;
+
+    @Config.Name("sync_interval")
+    @Config.Comment("Ticks between sending particle positions to clients. Turns are always sent right away, " +
+            "between updates the client moves particles forward on its own.")
+    @Config.LangKey("config.atomicscience:content.accelerator.sync.interval.title")
+    @Config.RangeInt(min = 1, max = 20)
+    public int SYNC_INTERVAL = 5;
 }
@@ -14,4 +14,7 @@ public class ConfigLogic
 {
     @Config.LangKey("config.atomicscience:thermal.steam.title")
     public static final ConfigSteam STEAM = new ConfigSteam();
+
+    @Config.LangKey("config.atomicscience:thermal.title")
+    public static final ConfigThermal THERMAL = new ConfigThermal();
 }
@@ -108,6 +108,9 @@ public class ConfigRadiation extends ContentProxy
     /** Max distance in meters to update radiation on the map. */
     public static int MAX_UPDATE_RANGE = 50;
 
+    /** Keep ray data per source to update only what changed, a strong source at max range keeps a few MB */
+    public static boolean ENABLE_INCREMENTAL_UPDATES = true;
+
     public static float RADIATION_DECAY_PER_BLOCK = 0.05f;
     public static float RADIATION_DECAY_PER_FLUID = 0.15f;
     public static float RADIATION_DECAY_METAL = 0.50f;
@@ -135,6 +138,12 @@ public class ConfigRadiation extends ContentProxy
         MAX_UPDATE_RANGE = configuration.getInt("map_update_range", cat_map, MAX_UPDATE_RANGE, 10, 100,
                 "Max range to update radiation values when a radiation source has changed.");
 
+        ENABLE_INCREMENTAL_UPDATES = configuration.getBoolean("map_incremental_updates", cat_map, ENABLE_INCREMENTAL_UPDATES,
+                "(true -> on, false -> off) Keeps the ray data of each source after an update. Allows changes in source strength " +
+                        "and blocks placed or removed near the source to update only the affected rays instead of recalculating everything. " +
+                        "Costs 4 bytes for each block reached by each ray of a source, plus about 40 bytes per ray. " +
+                        "A strong source at range 50 in open air reaches the full length of every ray and keeps a few MB.");
+
         MAP_VALUE_TO_MILI_RAD = configuration.getFloat("material_to_radiation", cat_map, MAP_VALUE_TO_MILI_RAD, 0.0001f, 100,
                 "Conversation rate of material on the map to radiation values produced. Value is material -> milli-rad. " +
                         "Keep value low as map is limited to ~2.7 billion for values. Meaning values to large will not function." +
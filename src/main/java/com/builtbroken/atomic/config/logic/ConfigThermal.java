@@ -0,0 +1,47 @@
+package com.builtbroken.atomic.config.logic;
+
+import net.minecraftforge.common.config.Config;
+
+public class ConfigThermal
+{
+    @Config.Name("solver")
+    @Config.Comment("Method used to spread heat from sources into the thermal map. " +
+            "PATHFINDER recalculates the spread of each source from scratch when the source changes. " +
+            "DIFFUSION steps heat through the world over time, merging all sources in a single pass.")
+    @Config.LangKey("config.atomicscience:thermal.solver.title")
+    public Solver SOLVER = Solver.PATHFINDER;
+
+    @Config.Name("diffusion_timestep")
+    @Config.Comment("Number of ticks between each step of the diffusion solver. Lower values give smoother heat movement at a higher cost.")
+    @Config.LangKey("config.atomicscience:thermal.diffusion.timestep.title")
+    @Config.RangeInt(min = 1, max = 200)
+    public int TIMESTEP_TICKS = 5;
+
+    @Config.Name("diffusion_time_scale")
+    @Config.Comment("Multiplier for how fast heat moves between blocks in the diffusion solver. " +
+            "Movement is capped per step to keep the solver stable, so very high values will stop having an effect.")
+    @Config.LangKey("config.atomicscience:thermal.diffusion.time.scale.title")
+    @Config.RangeInt(min = 1)
+    public int TIME_SCALE = 1200;
+
+    @Config.Name("diffusion_heat_loss")
+    @Config.Comment("Fraction of heat lost to the environment by each block every step of the diffusion solver. " +
+            "Without loss heat would build up forever around a source.")
+    @Config.LangKey("config.atomicscience:thermal.diffusion.loss.title")
+    @Config.RangeDouble(min = 0, max = 1)
+    public double HEAT_LOSS = 0.02;
+
+    @Config.Name("diffusion_min_heat")
+    @Config.Comment("Heat in kilo-joules below which a block is treated as cold and dropped from the diffusion solver.")
+    @Config.LangKey("config.atomicscience:thermal.diffusion.min.title")
+    @Config.RangeInt(min = 1)
+    public int MIN_HEAT = 1;
+
+    public enum Solver
+    {
+        /** Spread recalculated per source when it changes */
+        PATHFINDER,
+        /** Time stepped diffusion over all sources at once */
+        DIFFUSION
+    }
+}
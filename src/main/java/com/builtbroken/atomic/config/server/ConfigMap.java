@@ -0,0 +1,26 @@
+package com.builtbroken.atomic.config.server;
+
+import net.minecraftforge.common.config.Config;
+
+public class ConfigMap
+{
+    @Config.Name("scan_interval")
+    @Config.Comment("Seconds between health scans of the same map chunk. " +
+            "Scans remove invalid nodes and free layers that no longer hold data.")
+    @Config.LangKey("config.atomicscience:server.map.scan.interval.title")
+    @Config.RangeInt(min = 1, max = 3600)
+    public int SCAN_INTERVAL = 60;
+
+    @Config.Name("scan_layers_per_tick")
+    @Config.Comment("Max number of map layers (16x16 slice of a chunk) scanned each tick. " +
+            "Chunks are scanned a few layers at a time so large maps never stall a tick.")
+    @Config.LangKey("config.atomicscience:server.map.scan.layers.title")
+    @Config.RangeInt(min = 1, max = 4096)
+    public int SCAN_LAYERS_PER_TICK = 32;
+
+    @Config.Name("scan_budget")
+    @Config.Comment("Max time in microseconds spent each tick scanning map layers.")
+    @Config.LangKey("config.atomicscience:server.map.scan.budget.title")
+    @Config.RangeInt(min = 10, max = 50000)
+    public int SCAN_BUDGET = 500;
+}
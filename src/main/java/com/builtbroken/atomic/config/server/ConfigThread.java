@@ -1,15 +1,53 @@
 package com.builtbroken.atomic.config.server;
 
+import net.minecraftforge.common.config.Config;
+
 /**
  * Created by Dark(DarkGuardsman, Robert) on 2/10/2019.
  */
 public class ConfigThread
 {
-    //@Config.Name("thread_count")
-    //@Config.Comment("Number of worker threads to run to handle blast calculations. " +
-            //"Try to only match 50% of the number of cores your machine can support. " +
-            //"Otherwise the main game thread will slow down while the workers are processing. " +
-            //"Which is counter to the reason threads exist.")
-    //@Config.RangeInt(min = 1, max = 8)
-    public static int THREAD_COUNT = 1;
+    @Config.Name("thread_count")
+    @Config.Comment("Number of worker threads each map system (radiation, thermal) uses to process changes. " +
+            "A value of 1 runs all changes on the map thread itself. " +
+            "Try to only match 50% of the number of cores your machine can support. " +
+            "Otherwise the main game thread will slow down while the workers are processing. " +
+            "Which is counter to the reason threads exist.")
+    @Config.LangKey("config.atomicscience:server.thread.count.title")
+    @Config.RangeInt(min = 1, max = 8)
+    public int THREAD_COUNT = 1;
+
+    @Config.Name("pool_type")
+    @Config.Comment("Type of worker pool used when thread_count is above 1. " +
+            "FIXED uses a fixed size thread pool, FORK_JOIN uses a work stealing pool.")
+    @Config.LangKey("config.atomicscience:server.thread.pool.title")
+    public PoolType POOL_TYPE = PoolType.FIXED;
+
+    @Config.Name("apply_budget")
+    @Config.Comment("Max time in milliseconds spent each tick applying results from the map threads to the world. " +
+            "Results not applied in time carry over to the next tick, spreading large updates over several ticks.")
+    @Config.LangKey("config.atomicscience:server.thread.apply.budget.title")
+    @Config.RangeInt(min = 1, max = 50)
+    public int APPLY_BUDGET = 5;
+
+    @Config.Name("source_sweep_interval")
+    @Config.Comment("Ticks between full checks of map sources that report their own changes, such as reactor cells. " +
+            "These sources are otherwise only checked when they change, the sweep catches changes that were missed.")
+    @Config.LangKey("config.atomicscience:server.thread.source.sweep.title")
+    @Config.RangeInt(min = 1, max = 1200)
+    public int SOURCE_SWEEP_INTERVAL = 100;
+
+    @Config.Name("persist_fields")
+    @Config.Comment("Saves the radiation and heat fields of map sources with the world. " +
+            "On load sources that have not changed reuse their saved field rather than being recalculated by the map threads.")
+    @Config.LangKey("config.atomicscience:server.thread.persist.title")
+    public boolean PERSIST_FIELDS = true;
+
+    public enum PoolType
+    {
+        /** Fixed number of threads sharing a single queue */
+        FIXED,
+        /** Work stealing fork join pool */
+        FORK_JOIN
+    }
 }
@@ -3,6 +3,9 @@ package com.builtbroken.atomic.content.commands;
 import com.builtbroken.atomic.AtomicScience;
 import com.builtbroken.atomic.content.ASIndirectEffects;
 import com.builtbroken.atomic.map.MapHandler;
+import com.builtbroken.atomic.map.data.DataPool;
+import com.builtbroken.atomic.map.data.ThreadDataChange;
+import com.builtbroken.atomic.map.data.storage.DataMap;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
@@ -61,6 +64,34 @@ public class CommandAS extends CommandBase
             {
                 commandMat(server, sender, args);
             }
+            else if (sub.equalsIgnoreCase("threads"))
+            {
+                commandThreads(sender, MapHandler.THREAD_RAD_EXPOSURE);
+                commandThreads(sender, MapHandler.THREAD_THERMAL_ACTION);
+                sender.sendMessage(new TextComponentString("Apply queue: " +
+                        "pending " + MapHandler.APPLY_QUEUE.getPendingCount() + ", " +
+                        "applied " + MapHandler.APPLY_QUEUE.resultsApplied.get() + ", " +
+                        "replaced " + MapHandler.APPLY_QUEUE.resultsReplaced.get() + ", " +
+                        "ticks over budget " + MapHandler.APPLY_QUEUE.ticksOverBudget.get()));
+                for (DataPool pool : DataPool.POOLS)
+                {
+                    sender.sendMessage(new TextComponentString("Pool " + pool.name + ": " +
+                            "size " + pool.size() + "/" + pool.maxObjectPoleCount + ", " +
+                            "hits " + pool.hits.sum() + ", " +
+                            "misses " + pool.misses.sum() + ", " +
+                            "overflows " + pool.overflows.sum()));
+                }
+                for (DataMap map : MapHandler.GLOBAL_DATA_MAP.getMaps())
+                {
+                    sender.sendMessage(new TextComponentString("Map dim " + map.dim + ": " +
+                            "chunks " + map.getLoadedChunks().size() + ", " +
+                            "passes " + map.maintenance.passes + ", " +
+                            "chunks scanned " + map.maintenance.chunksScanned + ", " +
+                            "layers scanned " + map.maintenance.layersScanned + ", " +
+                            "layers removed " + map.maintenance.layersRemoved + ", " +
+                            "reclaimed ~" + (map.maintenance.bytesReclaimed / 1024) + "KB"));
+                }
+            }
             else if (sub.equalsIgnoreCase("item-data"))
             {
                 if (sender instanceof EntityPlayer)
@@ -149,6 +180,25 @@ public class CommandAS extends CommandBase
 
         sender.sendMessage(new TextComponentString(getName() + " material get <dim> <x> <y> <z> -> gets the radioactive material level of the block position"));
         sender.sendMessage(new TextComponentString(getName() + " material set <dim> <x> <y> <z> <value> -> sets the radioactive material level of the block position"));
+        sender.sendMessage(new TextComponentString(getName() + " threads -> shows the queue stats of the map threads"));
+    }
+
+    /**
+     * Shows the queue stats of a map thread
+     *
+     * @param sender
+     * @param thread
+     */
+    public void commandThreads(ICommandSender sender, ThreadDataChange thread)
+    {
+        if (thread != null)
+        {
+            sender.sendMessage(new TextComponentString(thread.name + ": " +
+                    "pending " + thread.getPendingCount() + ", " +
+                    "queued " + thread.changesQueued.get() + ", " +
+                    "completed " + thread.changesCompleted.get() + ", " +
+                    "coalesced " + thread.changesCoalesced.get()));
+        }
     }
 
     /**
@@ -55,6 +55,10 @@ public class TileEntityParticleDetector extends TileEntityMachine
             if (node instanceof AcceleratorNode)
             {
                 ((AcceleratorNode) node).turnController = (p, sides) -> getTurn(sides, p);
+                if (((AcceleratorNode) node).getNetwork() != null)
+                {
+                    ((AcceleratorNode) node).getNetwork().markRouteDirty();
+                }
             }
         }
     }
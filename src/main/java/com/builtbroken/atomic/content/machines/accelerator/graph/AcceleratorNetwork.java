@@ -29,6 +29,17 @@ public class AcceleratorNetwork
      */
     private final Set<IAcceleratorNode> nodes = new HashSet();
 
+    /**
+     * Straight segments of the network, rebuilt after the nodes change
+     */
+    private AcceleratorRoute route;
+    private boolean routeDirty = true;
+
+    /**
+     * Sends particles to nearby players
+     */
+    private final AcceleratorNetworkSync sync = new AcceleratorNetworkSync(this);
+
     public AcceleratorNetwork(int dim)
     {
         this(dim, UUID.randomUUID());
@@ -70,6 +81,10 @@ public class AcceleratorNetwork
         else
         {
             getNodes().forEach(node -> node.update(world, tick));
+            if (world != null && !world.isRemote)
+            {
+                sync.update(world);
+            }
         }
     }
 
@@ -82,6 +97,7 @@ public class AcceleratorNetwork
     {
         nodes.add(acceleratorNode);
         acceleratorNode.setNetwork(this);
+        markRouteDirty();
     }
 
     /**
@@ -90,6 +106,7 @@ public class AcceleratorNetwork
     public void clear()
     {
         getNodes().clear();
+        markRouteDirty();
     }
 
     /**
@@ -103,6 +120,20 @@ public class AcceleratorNetwork
         }
     }
 
+    /**
+     * Does the actual destroy process, also clears the network's particles from clients
+     *
+     * @param world - world the network is in
+     */
+    public void onNetworkRemoved(World world)
+    {
+        if (world != null && !world.isRemote)
+        {
+            sync.onNetworkRemoved(world);
+        }
+        onNetworkRemoved();
+    }
+
     /**
      * Does the actual destroy process
      */
@@ -178,6 +209,33 @@ public class AcceleratorNetwork
         //Add nodes to network
         this.getNodes().addAll(posToNode.values());
         destroyNetwork = false; //Temp fix for connection update calling destroy
+
+        //Compile straight runs so particles don't need to path each tube
+        route = AcceleratorRoute.compile(getNodes());
+        routeDirty = false;
+    }
+
+    /**
+     * Gets the compiled segments of the network, rebuilding if the nodes changed
+     *
+     * @return route
+     */
+    public AcceleratorRoute getRoute()
+    {
+        if (routeDirty || route == null)
+        {
+            route = AcceleratorRoute.compile(getNodes());
+            routeDirty = false;
+        }
+        return route;
+    }
+
+    /**
+     * Called when nodes are added or change behavior to rebuild the route before it is next used
+     */
+    public void markRouteDirty()
+    {
+        routeDirty = true;
     }
 
     public boolean isDead()
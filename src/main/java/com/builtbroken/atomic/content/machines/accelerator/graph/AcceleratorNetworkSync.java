@@ -0,0 +1,177 @@
+package com.builtbroken.atomic.content.machines.accelerator.graph;
+
+import com.builtbroken.atomic.api.accelerator.IAcceleratorNode;
+import com.builtbroken.atomic.config.content.ConfigContent;
+import com.builtbroken.atomic.content.machines.accelerator.particle.AcceleratorParticle;
+import com.builtbroken.atomic.network.netty.PacketSystem;
+import com.builtbroken.atomic.network.packet.client.PacketAcceleratorParticleSync;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+
+import java.util.*;
+
+/**
+ * Sends the particles of a {@link AcceleratorNetwork} to nearby players
+ * <p>
+ * All particles of the network are batched into one packet per player per tick. Positions are sent
+ * every {@link com.builtbroken.atomic.config.content.ConfigAccelerator#SYNC_INTERVAL} ticks, or right
+ * away when a particle turns so the client can keep extrapolating in a straight line. Items are only
+ * sent the first time a player sees a particle or when the item changes.
+ * <p>
+ * The client keeps each particle until told to remove it, so every particle a player was sent is
+ * removed here: when it dies, leaves range or the network is removed. A particle moving to another
+ * network while in range is dropped without a removal, the other network sends it along with its item.
+ */
+public class AcceleratorNetworkSync
+{
+    /** Range players can see particles from */
+    public static final double SYNC_RANGE = 30;
+
+    public final AcceleratorNetwork network;
+
+    /** Particle id to the direction last sent, a change is sent as a keyframe */
+    private final HashMap<Integer, EnumFacing> sentDirection = new HashMap();
+
+    /** Player to the particle ids and item versions their client has */
+    private final HashMap<UUID, HashMap<Integer, Integer>> playerViews = new HashMap();
+
+    /** Particles collected last update, used to tell where a particle went once it leaves */
+    private HashMap<Integer, AcceleratorParticle> lastParticles = new HashMap();
+
+    private int ticksSinceSync = 0;
+
+    public AcceleratorNetworkSync(AcceleratorNetwork network)
+    {
+        this.network = network;
+    }
+
+    /**
+     * Called after the nodes update each tick
+     *
+     * @param world - world the network is in
+     */
+    public void update(World world)
+    {
+        //Collect particles, one that changed nodes this tick can be listed by both nodes
+        final HashMap<Integer, AcceleratorParticle> particles = new HashMap();
+        for (IAcceleratorNode node : network.getNodes())
+        {
+            for (AcceleratorParticle particle : node.getParticles())
+            {
+                if (!particle.isDead() && particle.getCurrentNode() != null && particle.getCurrentNode().getNetwork() == network)
+                {
+                    particles.put(particle.syncId, particle);
+                }
+            }
+        }
+
+        final int interval = ConfigContent.ACCELERATOR.SYNC_INTERVAL;
+        final boolean fullSync = ++ticksSinceSync >= interval;
+        if (fullSync)
+        {
+            ticksSinceSync = 0;
+        }
+
+        //Pick what to send this tick
+        final List<AcceleratorParticle> toSend = new ArrayList();
+        for (AcceleratorParticle particle : particles.values())
+        {
+            if (fullSync || sentDirection.get(particle.syncId) != particle.getMoveDirection())
+            {
+                toSend.add(particle);
+                sentDirection.put(particle.syncId, particle.getMoveDirection());
+            }
+        }
+        sentDirection.keySet().retainAll(particles.keySet());
+
+        //Build a packet per player
+        final Set<UUID> players = new HashSet();
+        for (EntityPlayer player : world.playerEntities)
+        {
+            if (player instanceof EntityPlayerMP)
+            {
+                players.add(player.getUniqueID());
+
+                final HashMap<Integer, Integer> view = playerViews.computeIfAbsent(player.getUniqueID(), key -> new HashMap());
+                if (toSend.isEmpty() && view.isEmpty())
+                {
+                    continue;
+                }
+
+                final PacketAcceleratorParticleSync packet = new PacketAcceleratorParticleSync(network.dim, interval);
+
+                //Particles that left or moved out of range
+                final Iterator<Integer> it = view.keySet().iterator();
+                while (it.hasNext())
+                {
+                    final Integer id = it.next();
+                    final AcceleratorParticle particle = particles.get(id);
+                    if (particle == null)
+                    {
+                        //Moved to another network that will send it, removing could arrive after its update
+                        final AcceleratorParticle moved = lastParticles.get(id);
+                        if (moved == null || moved.isDead() || moved.getCurrentNode() == null || !inRange(player, moved))
+                        {
+                            packet.remove(id);
+                        }
+                        it.remove();
+                    }
+                    else if (!inRange(player, particle))
+                    {
+                        packet.remove(id);
+                        it.remove();
+                    }
+                }
+
+                //Changed particles, item only if the client doesn't have it
+                for (AcceleratorParticle particle : toSend)
+                {
+                    if (inRange(player, particle))
+                    {
+                        final Integer version = view.put(particle.syncId, particle.getItemVersion());
+                        packet.add(particle, version == null || version != particle.getItemVersion());
+                    }
+                }
+
+                if (!packet.isEmpty())
+                {
+                    PacketSystem.INSTANCE.sendToPlayer(packet, player);
+                }
+            }
+        }
+
+        //Drop players that left the world
+        playerViews.keySet().retainAll(players);
+        lastParticles = particles;
+    }
+
+    /**
+     * Called when the network is removed to clear its particles from clients. Networks
+     * built to replace it are updated after, so their particles arrive after the removal.
+     *
+     * @param world - world the network was in
+     */
+    public void onNetworkRemoved(World world)
+    {
+        for (Map.Entry<UUID, HashMap<Integer, Integer>> entry : playerViews.entrySet())
+        {
+            final EntityPlayer player = world.getPlayerEntityByUUID(entry.getKey());
+            if (player instanceof EntityPlayerMP && !entry.getValue().isEmpty())
+            {
+                final PacketAcceleratorParticleSync packet = new PacketAcceleratorParticleSync(network.dim, ConfigContent.ACCELERATOR.SYNC_INTERVAL);
+                entry.getValue().keySet().forEach(packet::remove);
+                PacketSystem.INSTANCE.sendToPlayer(packet, player);
+            }
+        }
+        playerViews.clear();
+        sentDirection.clear();
+        lastParticles = new HashMap();
+    }
+
+    private boolean inRange(EntityPlayer player, AcceleratorParticle particle)
+    {
+        return player.getDistanceSq(particle.x(), particle.y(), particle.z()) <= SYNC_RANGE * SYNC_RANGE;
+    }
+}
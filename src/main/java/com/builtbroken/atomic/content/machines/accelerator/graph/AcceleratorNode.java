@@ -10,8 +10,6 @@ import com.builtbroken.atomic.content.machines.accelerator.particle.AcceleratorP
 import com.builtbroken.atomic.lib.math.BlockPosHelpers;
 import com.builtbroken.atomic.lib.math.MathConstF;
 import com.builtbroken.atomic.lib.math.SideMathHelper;
-import com.builtbroken.atomic.network.netty.PacketSystem;
-import com.builtbroken.atomic.network.packet.client.PacketAcceleratorParticleSync;
 import com.google.common.collect.ImmutableList;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
@@ -20,7 +18,6 @@ import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
-import net.minecraftforge.fml.common.network.NetworkRegistry;
 
 import java.util.*;
 import java.util.function.BiFunction;
@@ -53,6 +50,17 @@ public class AcceleratorNode extends AcceleratorComponent implements IAccelerato
     public Consumer<AcceleratorNode> onNetworkDestroyed;
     public BiFunction<AcceleratorParticle, ImmutableList<TubeSide>, TubeSide> turnController;
 
+    /** Set if {@link #onMoveCallback} is only a display, allowing the network's route to move particles past the node */
+    public boolean onMoveCallbackOptional = false;
+
+    /** Set if {@link #onMoveCallback} has the same effect each call during a tick, such as magnets, so laps can be repeated */
+    public boolean onMoveCallbackConstant = false;
+
+    //Place in the network's route, segment is -1 if not part of one
+    AcceleratorRoute route;
+    int routeSegment = -1;
+    int routeIndex = 0;
+
     public IAcceleratorTube host;
 
     public AcceleratorNode(IAcceleratorTube tube) //TODO convert to host interface
@@ -102,9 +110,13 @@ public class AcceleratorNode extends AcceleratorComponent implements IAccelerato
             //Particles added, prevents concurrent errors
             do
             {
+                //Skip particles that already moved on to another node this tick or never left this node
                 AcceleratorParticle particle = newParticles.poll();
-                particle.setCurrentNode(this);
-                currentParticles.add(particle);
+                if ((particle.getCurrentNode() == null || particle.getCurrentNode() == this) && !currentParticles.contains(particle))
+                {
+                    particle.setCurrentNode(this);
+                    currentParticles.add(particle);
+                }
             }
             while (newParticles.peek() != null);
         }
@@ -114,7 +126,7 @@ public class AcceleratorNode extends AcceleratorComponent implements IAccelerato
         {
             host.markDirty();
 
-            //Update particles
+            //Update particles, synced to clients by the network
             final Iterator<AcceleratorParticle> iterator = currentParticles.iterator();
             while (iterator.hasNext())
             {
@@ -123,24 +135,12 @@ public class AcceleratorNode extends AcceleratorComponent implements IAccelerato
                 {
                     iterator.remove();
                 }
-                else
+                //Particles can pass through several nodes a tick, only update once
+                else if (particle.markUpdated(tick))
                 {
                     particle.update(tick);
                 }
             }
-
-            //Network handling
-            currentParticles.forEach(acceleratorParticle -> {
-
-                //System.out.println(acceleratorParticle);
-
-                PacketAcceleratorParticleSync packet = new PacketAcceleratorParticleSync(acceleratorParticle); //TODO implement flywheel pattern
-
-                PacketSystem.INSTANCE.sendToAllAround(packet,
-                        new NetworkRegistry.TargetPoint(world.provider.getDimension(),
-                                acceleratorParticle.x(), acceleratorParticle.y(), acceleratorParticle.z(),
-                                30));
-            });
         }
     }
 
@@ -290,6 +290,54 @@ public class AcceleratorNode extends AcceleratorComponent implements IAccelerato
         return state != TubeSideType.NONE && getConnectionType().getTypeForSide(localSide) == state;
     }
 
+    void setRoute(AcceleratorRoute route, int segment, int index)
+    {
+        this.route = route;
+        this.routeSegment = segment;
+        this.routeIndex = index;
+    }
+
+    /**
+     * Checks if the node always moves particles the same way, with a single exit
+     * and nothing that changes the particle.
+     *
+     * @return true if passing through the node has no side effects
+     */
+    public boolean isPassive()
+    {
+        return getPossibleExitCount() <= 1
+                && turnController == null
+                && onEnterCallback == null
+                && onExitCallback == null
+                && (onMoveCallback == null || onMoveCallbackOptional);
+    }
+
+    /**
+     * Checks if passing through the node does the same thing each time during a tick.
+     * Used to repeat whole laps of a ring, applying the change of one lap for each lap skipped.
+     *
+     * @return true if the node is passive or only applies a constant change
+     */
+    public boolean isLapStable()
+    {
+        return getPossibleExitCount() <= 1
+                && turnController == null
+                && onEnterCallback == null
+                && onExitCallback == null
+                && (onMoveCallback == null || onMoveCallbackOptional || onMoveCallbackConstant);
+    }
+
+    /**
+     * Checks if particles can pass through the node without it doing anything,
+     * used by {@link AcceleratorRoute} to decide which nodes can be skipped
+     *
+     * @return true if the node only moves particles straight through
+     */
+    public boolean canRoute()
+    {
+        return getConnectionType() == TubeConnectionType.NORMAL && isPassive();
+    }
+
     /**
      * Called to move the particle in the accelerator
      *
@@ -500,6 +548,9 @@ public class AcceleratorNode extends AcceleratorComponent implements IAccelerato
     {
         addParticle(particle);
 
+        //Take over right away so the particle can keep moving this tick
+        particle.setCurrentNode(this);
+
         if (onEnterCallback != null)
         {
             onEnterCallback.accept(particle);
@@ -509,7 +560,8 @@ public class AcceleratorNode extends AcceleratorComponent implements IAccelerato
 
     public void addParticle(AcceleratorParticle particle)
     {
-        if (particle != null)
+        //Particles can pass through the same node several times a tick, only queue once
+        if (particle != null && !newParticles.contains(particle))
         {
             newParticles.offer(particle);
         }
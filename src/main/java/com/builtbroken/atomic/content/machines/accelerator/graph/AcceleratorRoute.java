@@ -0,0 +1,257 @@
+package com.builtbroken.atomic.content.machines.accelerator.graph;
+
+import com.builtbroken.atomic.api.accelerator.IAcceleratorNode;
+import com.builtbroken.atomic.content.machines.accelerator.particle.AcceleratorParticle;
+import com.builtbroken.atomic.lib.math.MathConstF;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Flat table of straight path segments compiled from a {@link AcceleratorNetwork}.
+ * <p>
+ * A segment is a run of tubes in a line that all face the same way and have nothing
+ * that reacts to a particle passing, see {@link AcceleratorNode#canRoute()}. Particles inside
+ * a segment are moved with a single offset along the segment instead of going node by node.
+ * Junctions, turns and tubes with callbacks are left out and still move particles themselves.
+ * <p>
+ * Compiled once per network change, main thread only.
+ */
+public class AcceleratorRoute
+{
+    /** Shortest run worth turning into a segment, single tubes have nothing to skip */
+    public static final int MIN_SEGMENT_LENGTH = 2;
+
+    /** Max distance from the segment line before falling back to the nodes */
+    public static final float ALIGN_CUT = 0.01f;
+
+    //Segment data, indexed by segment id
+    private int[] startX;
+    private int[] startY;
+    private int[] startZ;
+    private EnumFacing[] direction;
+    private int[] length;
+    private int[] nodeOffset;
+
+    //Nodes of all segments in travel order, segment nodes start at nodeOffset
+    private AcceleratorNode[] segmentNodes;
+
+    private int segmentCount;
+
+    private AcceleratorRoute()
+    {
+    }
+
+    /**
+     * Builds the segments for the nodes. Marks each node with its segment
+     * and index so particles can find their place without a lookup.
+     *
+     * @param nodes - nodes of the network
+     * @return compiled route
+     */
+    public static AcceleratorRoute compile(Collection<IAcceleratorNode> nodes)
+    {
+        final AcceleratorRoute route = new AcceleratorRoute();
+        final List<AcceleratorNode[]> segments = new ArrayList();
+        final List<AcceleratorNode> run = new ArrayList();
+        int nodeCount = 0;
+
+        for (IAcceleratorNode entry : nodes)
+        {
+            if (entry instanceof AcceleratorNode && ((AcceleratorNode) entry).route != route)
+            {
+                final AcceleratorNode node = (AcceleratorNode) entry;
+                if (!node.canRoute())
+                {
+                    node.setRoute(route, -1, 0);
+                    continue;
+                }
+
+                //Walk back to the start of the run
+                final EnumFacing facing = node.getDirection();
+                AcceleratorNode start = node;
+                AcceleratorNode prev;
+                while ((prev = route.nextInRun(start, facing.getOpposite(), facing)) != null)
+                {
+                    start = prev;
+                }
+
+                //Walk forward collecting the run
+                run.clear();
+                AcceleratorNode current = start;
+                while (current != null)
+                {
+                    current.setRoute(route, -1, 0);
+                    run.add(current);
+                    current = route.nextInRun(current, facing, facing);
+                }
+
+                if (run.size() >= MIN_SEGMENT_LENGTH)
+                {
+                    final int id = segments.size();
+                    for (int i = 0; i < run.size(); i++)
+                    {
+                        run.get(i).setRoute(route, id, i);
+                    }
+                    segments.add(run.toArray(new AcceleratorNode[run.size()]));
+                    nodeCount += run.size();
+                }
+            }
+        }
+
+        //Flatten
+        final int count = segments.size();
+        route.segmentCount = count;
+        route.startX = new int[count];
+        route.startY = new int[count];
+        route.startZ = new int[count];
+        route.direction = new EnumFacing[count];
+        route.length = new int[count];
+        route.nodeOffset = new int[count];
+        route.segmentNodes = new AcceleratorNode[nodeCount];
+
+        int offset = 0;
+        for (int id = 0; id < count; id++)
+        {
+            final AcceleratorNode[] segment = segments.get(id);
+            final BlockPos pos = segment[0].getPos();
+            route.startX[id] = pos.getX();
+            route.startY[id] = pos.getY();
+            route.startZ[id] = pos.getZ();
+            route.direction[id] = segment[0].getDirection();
+            route.length[id] = segment.length;
+            route.nodeOffset[id] = offset;
+            System.arraycopy(segment, 0, route.segmentNodes, offset, segment.length);
+            offset += segment.length;
+        }
+        return route;
+    }
+
+    /**
+     * Gets the neighbor continuing the run, or null if the run ends
+     *
+     * @param node   - current node
+     * @param side   - side to check
+     * @param facing - facing of the run
+     * @return next node in the run
+     */
+    private AcceleratorNode nextInRun(AcceleratorNode node, EnumFacing side, EnumFacing facing)
+    {
+        final IAcceleratorNode next = node.getNodes()[side.ordinal()];
+        if (next instanceof AcceleratorNode && next != node
+                && ((AcceleratorNode) next).route != this
+                && next.getNetwork() == node.getNetwork()
+                && next.getDirection() == facing
+                && ((AcceleratorNode) next).canRoute())
+        {
+            return (AcceleratorNode) next;
+        }
+        return null;
+    }
+
+    /**
+     * Moves the particle along the segment containing the node
+     * <p>
+     * Stops at the far edge of the segment, leaving the particle with the last
+     * node so it can hand off to the next node as normal. If the particle ends
+     * in a different node it is passed over to that node.
+     *
+     * @param particle       - particle to move
+     * @param node           - node the particle is currently in
+     * @param distanceToMove - distance left this tick
+     * @return distance moved, or -1 if the particle can't be moved by the route
+     */
+    public float move(AcceleratorParticle particle, AcceleratorNode node, float distanceToMove)
+    {
+        final int segment = node.routeSegment;
+        if (node.route != this || segment < 0 || particle.getMoveDirection() != direction[segment])
+        {
+            return -1;
+        }
+
+        //Offset from the center line of the segment
+        final EnumFacing facing = direction[segment];
+        final float deltaX = particle.xf() - (startX[segment] + MathConstF.CENTER);
+        final float deltaY = particle.yf() - (startY[segment] + MathConstF.CENTER);
+        final float deltaZ = particle.zf() - (startZ[segment] + MathConstF.CENTER);
+
+        //Particles off the line are centered by the nodes
+        final float offLine = facing.getXOffset() != 0 ? deltaZ : deltaX;
+        if (Math.abs(offLine) > ALIGN_CUT || Math.abs(deltaY) > ALIGN_CUT)
+        {
+            return -1;
+        }
+
+        //Distance from the entry edge of the first node
+        final float along = deltaX * facing.getXOffset() + deltaZ * facing.getZOffset() + MathConstF.CENTER;
+        if (along < node.routeIndex - ALIGN_CUT || along > node.routeIndex + 1 + ALIGN_CUT)
+        {
+            return -1;
+        }
+
+        //At the end, let the node do the hand off
+        final float remaining = length[segment] - along;
+        if (remaining <= MathConstF.ZERO_CUT)
+        {
+            return -1;
+        }
+
+        //Find the node we end in
+        final float moveAmount = Math.min(remaining, distanceToMove);
+        final int index = Math.max(0, Math.min(length[segment] - 1, (int) Math.floor(along + moveAmount)));
+        final AcceleratorNode target = segmentNodes[nodeOffset[segment] + index];
+        if (target != node && (target.isDead() || !target.canRoute()))
+        {
+            return -1;
+        }
+
+        if (node.onMoveCallback != null)
+        {
+            node.onMoveCallback.accept(particle);
+        }
+
+        particle.move(moveAmount, facing);
+
+        if (target != node)
+        {
+            node.onParticleExit(particle);
+            target.onParticleEnter(particle);
+        }
+        return moveAmount;
+    }
+
+    /**
+     * Number of segments in the route
+     *
+     * @return count
+     */
+    public int getSegmentCount()
+    {
+        return segmentCount;
+    }
+
+    /**
+     * Number of nodes in the segment
+     *
+     * @param segment - segment id
+     * @return length in nodes
+     */
+    public int getSegmentLength(int segment)
+    {
+        return length[segment];
+    }
+
+    /**
+     * Direction particles move in the segment
+     *
+     * @param segment - segment id
+     * @return direction
+     */
+    public EnumFacing getSegmentDirection(int segment)
+    {
+        return direction[segment];
+    }
+}
@@ -52,13 +52,14 @@ public class AcceleratorWorld
                 networks.put(network.uuid, network); //TODO join if networks share same ID but are different
             }
         }
-        networks.values().stream().filter(network -> network.isDead()).collect(Collectors.toList()).forEach(this::doRemove);
+        networks.values().stream().filter(network -> network.isDead()).collect(Collectors.toList()).forEach(network -> doRemove(world, network));
         networks.values().forEach(network -> network.update(world, _tick));
+        _tick++;
     }
 
-    private void doRemove(AcceleratorNetwork network)
+    private void doRemove(World world, AcceleratorNetwork network)
     {
-        network.onNetworkRemoved();
+        network.onNetworkRemoved(world);
         networks.remove(network.uuid);
     }
 
@@ -1,8 +1,10 @@
 package com.builtbroken.atomic.content.machines.accelerator.particle;
 
+import com.builtbroken.atomic.AtomicScience;
 import com.builtbroken.atomic.api.accelerator.IAcceleratorNode;
 import com.builtbroken.atomic.api.accelerator.IAcceleratorParticle;
 import com.builtbroken.atomic.config.content.ConfigContent;
+import com.builtbroken.atomic.content.machines.accelerator.graph.AcceleratorNetwork;
 import com.builtbroken.atomic.content.machines.accelerator.graph.AcceleratorNode;
 import com.builtbroken.atomic.lib.math.MathConstF;
 import com.builtbroken.atomic.lib.transform.move.FractionPos;
@@ -34,8 +36,17 @@ public class AcceleratorParticle implements IAcceleratorParticle
     public static final String NBT_IN_TUBE = "in_tube";
     public static final String NBT_ALIVE = "alive";
 
+    //Session ids for client sync, not saved
+    private static int nextSyncId = 0;
+
     public final UUID unique_id;
 
+    /** Short id used to sync the particle to clients, only valid for this session */
+    public final int syncId = nextSyncId++;
+
+    //Increased each time the item changes so clients only get the item when needed
+    private int itemVersion = 0;
+
     //How far in meters/blocks can be move per tick of the game
     private float velocity;
 
@@ -60,6 +71,13 @@ public class AcceleratorParticle implements IAcceleratorParticle
 
     private boolean isAlive = true;
 
+    //Last network tick we were updated, particles can pass through several nodes a tick
+    private int lastUpdateTick = Integer.MIN_VALUE;
+
+    //Distance left over when the move step limit was hit, moved next tick
+    private float carriedDistance = 0;
+    private boolean warnedStepLimit = false;
+
     public AcceleratorParticle(NBTTagCompound nbt)
     {
         unique_id = nbt.hasKey(NBT_ID) ? NBTUtil.getUUIDFromTag(nbt.getCompoundTag(NBT_ID)) : UUID.randomUUID();
@@ -109,24 +127,42 @@ public class AcceleratorParticle implements IAcceleratorParticle
             velocity = 0.1f;
         }
 
-        //How much we can move in a single go
-        float distanceToMove = Math.max(velocity, .1f);
+        //How much we can move in a single go, plus anything left over from hitting the step limit last tick
+        float distanceToMove = Math.max(velocity, .1f) + carriedDistance;
+        carriedDistance = 0;
 
         //Get current node we are pathing
         IAcceleratorNode currentNode = getCurrentNode();
         if (currentNode != null)
         {
-            //WE can move through several nodes, so loop until done TODO replace with path so we can % locate position and node
-            while (distanceToMove > MathConstF.ZERO_CUT && currentNode != null)
+            //Lap tracking, started on the first edge crossing and completed when we cross the same edge again
+            IAcceleratorNode lapNode = null;
+            EnumFacing lapDirection = null;
+            float lapDistance = 0;
+            float lapStartVelocity = 0;
+            float lapStartEnergy = 0;
+            boolean lapSkipped = false;
+
+            //WE can move through several nodes, so loop until done
+            int steps = 0;
+            while (distanceToMove > MathConstF.ZERO_CUT && currentNode != null && !isDead() && steps++ < ConfigContent.ACCELERATOR.MAX_MOVE_STEPS)
             {
                 final EnumFacing prevDirection = moveDirection;
+                final IAcceleratorNode prevNode = currentNode;
 
-                //Move forward consuming distance
-                float distanceMoved = currentNode.move(this, distanceToMove);
+                //Move forward consuming distance, straight runs are skipped using the network's route
+                float distanceMoved = moveOnRoute(currentNode, distanceToMove);
+                if (distanceMoved < 0)
+                {
+                    distanceMoved = currentNode.move(this, distanceToMove);
+                }
                 distanceToMove -= distanceMoved;
 
-                //Exit condition if we didn't move, prevents infinite loops
-                if (Math.abs(distanceMoved) <= 0.0001)
+                //Reset for next loop
+                currentNode = getCurrentNode();
+
+                //Exit condition if we didn't move or change nodes, prevents infinite loops
+                if (Math.abs(distanceMoved) <= 0.0001 && currentNode == prevNode)
                 {
                     break;
                 }
@@ -150,8 +186,57 @@ public class AcceleratorParticle implements IAcceleratorParticle
                     //TODO render points ahead and behind of the particle for debug
                 }
 
-                //Reset for next loop
-                currentNode = getCurrentNode();
+                //Nodes that pick between exits or react to the particle break the lap
+                if (!isLapStable(prevNode))
+                {
+                    lapNode = null;
+                    continue;
+                }
+
+                if (lapNode != null)
+                {
+                    lapDistance += distanceMoved;
+                }
+
+                //Crossed into the next node on the edge
+                if (!lapSkipped && currentNode != null && currentNode != prevNode && Math.abs(distanceMoved) <= MathConstF.ZERO_CUT)
+                {
+                    if (lapNode == null)
+                    {
+                        lapNode = currentNode;
+                        lapDirection = moveDirection;
+                        lapDistance = 0;
+                        lapStartVelocity = velocity;
+                        lapStartEnergy = energy;
+                    }
+                    else if (lapNode == currentNode && lapDirection == moveDirection && lapDistance > MathConstF.ZERO_CUT)
+                    {
+                        //Back where the lap started. Every node on the ring does the same thing each pass, magnets
+                        // included, so skipping a lap applies the same change to velocity and energy as the one we
+                        // just measured. Distance for this tick was fixed at the start so added velocity doesn't change it.
+                        final int laps = (int) (distanceToMove / lapDistance);
+                        if (laps > 0)
+                        {
+                            distanceToMove -= laps * lapDistance;
+                            velocity += laps * (velocity - lapStartVelocity);
+                            energy += laps * (energy - lapStartEnergy);
+                        }
+                        lapSkipped = true;
+                    }
+                }
+            }
+
+            //Hit the step limit, keep the distance for next tick rather than dropping it
+            if (distanceToMove > MathConstF.ZERO_CUT && steps > ConfigContent.ACCELERATOR.MAX_MOVE_STEPS && getCurrentNode() != null && !isDead())
+            {
+                carriedDistance = Math.min(distanceToMove, Math.max(velocity, .1f));
+                if (!warnedStepLimit)
+                {
+                    warnedStepLimit = true;
+                    AtomicScience.logger.warn(this + " hit the move step limit of " + ConfigContent.ACCELERATOR.MAX_MOVE_STEPS
+                            + " with " + distanceToMove + " left to move, the rest is carried to the next tick."
+                            + " Consider raising max_move_steps or removing junctions from the ring.");
+                }
             }
         }
         else
@@ -161,6 +246,26 @@ public class AcceleratorParticle implements IAcceleratorParticle
         }
     }
 
+    /**
+     * Moves along the compiled route of the node's network
+     *
+     * @param node           - current node
+     * @param distanceToMove - distance left to move
+     * @return distance moved, or -1 if the node needs to move the particle
+     */
+    protected float moveOnRoute(IAcceleratorNode node, float distanceToMove)
+    {
+        if (node instanceof AcceleratorNode)
+        {
+            final AcceleratorNetwork network = ((AcceleratorNode) node).getNetwork();
+            if (network != null)
+            {
+                return network.getRoute().move(this, (AcceleratorNode) node, distanceToMove);
+            }
+        }
+        return -1;
+    }
+
     public void move(float x, float y, float z)
     {
         pos().move(x, y, z);
@@ -179,6 +284,33 @@ public class AcceleratorParticle implements IAcceleratorParticle
         energy -= 1;
     }
 
+    /**
+     * Checks if the node can be repeated as part of a lap
+     *
+     * @param node - node
+     * @return true if passing the node does the same thing each time this tick
+     */
+    protected boolean isLapStable(IAcceleratorNode node)
+    {
+        return node instanceof AcceleratorNode && ((AcceleratorNode) node).isLapStable();
+    }
+
+    /**
+     * Called by the node to mark the particle as updated for the tick
+     *
+     * @param tick - network tick
+     * @return true if the particle has not been updated this tick
+     */
+    public boolean markUpdated(int tick)
+    {
+        if (lastUpdateTick == tick)
+        {
+            return false;
+        }
+        lastUpdateTick = tick;
+        return true;
+    }
+
     public void addEnergy(float magnetPower)
     {
         energy += magnetPower;
@@ -199,6 +331,11 @@ public class AcceleratorParticle implements IAcceleratorParticle
         setVelocity(velocity + acceleration);
     }
 
+    public float getEnergy()
+    {
+        return energy;
+    }
+
     public float getVelocity()
     {
         return velocity;
@@ -268,6 +405,7 @@ public class AcceleratorParticle implements IAcceleratorParticle
 
     public AcceleratorParticle setItem(ItemStack stack)
     {
+        this.itemVersion++;
         this.itemStack = stack;
         if (stack == null)
         {
@@ -276,6 +414,16 @@ public class AcceleratorParticle implements IAcceleratorParticle
         return this;
     }
 
+    /**
+     * Version of the item, changes each time {@link #setItem(ItemStack)} is called
+     *
+     * @return version
+     */
+    public int getItemVersion()
+    {
+        return itemVersion;
+    }
+
     public EnumFacing getMoveDirection()
     {
         if (moveDirection == null)
@@ -338,6 +486,7 @@ public class AcceleratorParticle implements IAcceleratorParticle
         );
         moveDirection = EnumFacing.byIndex(nbt.getByte(NBT_DIR));
         itemStack = new ItemStack(nbt.getCompoundTag(NBT_STACK));
+        itemVersion++;
         notInTube = nbt.getBoolean(NBT_IN_TUBE);
         isAlive = nbt.getBoolean(NBT_ALIVE);
     }
@@ -48,6 +48,7 @@ public class TileEntityAcceleratorTube extends TileEntityAcceleratorTubePrefab
     public void onLoad()
     {
         getNode().onMoveCallback = (particle) -> debugSpeed(particle);
+        getNode().onMoveCallbackOptional = true; //Speed signs can be skipped by the network route
         if (isServer())
         {
             updateState(false, true);
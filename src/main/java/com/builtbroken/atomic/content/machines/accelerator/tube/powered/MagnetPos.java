@@ -12,7 +12,7 @@ import net.minecraft.util.math.BlockPos;
 public class MagnetPos
 {
 
-    private static DataPool<MagnetPos> objectPool = new DataPool(1000); //TODO config
+    private static DataPool<MagnetPos> objectPool = new DataPool("MagnetPos", 1000); //TODO config
 
     private BlockPos pos;
     private float power;
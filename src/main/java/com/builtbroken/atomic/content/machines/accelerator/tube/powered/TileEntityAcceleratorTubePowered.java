@@ -38,6 +38,8 @@ public class TileEntityAcceleratorTubePowered extends TileEntityAcceleratorTube
     {
         super.onLoad();
         getNode().onMoveCallback = (particle) -> accelerate(particle);
+        getNode().onMoveCallbackOptional = false;
+        getNode().onMoveCallbackConstant = true; //Power scale only changes in update(), constant while particles move
     }
 
     @Override
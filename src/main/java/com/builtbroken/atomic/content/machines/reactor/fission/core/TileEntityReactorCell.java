@@ -54,9 +54,11 @@ public class TileEntityReactorCell extends TileEntityInventoryMachine<IItemHandl
 
     private int heatCache;
     private int radCache;
+    /** Run state last reported to the map sources */
+    private boolean sourcesRunning = false;
 
-    private final RadSourceTile<TileEntityReactorCell> radiationSource = new RadSourceTile(this, () -> radCache, () -> isRunning);
-    private final ThermalSource<TileEntityReactorCell> thermalSource = new ThermalSourceTile(this, () -> heatCache, () -> isRunning);
+    private final RadSourceTile<TileEntityReactorCell> radiationSource = new RadSourceTile(this, () -> radCache, () -> isRunning, true);
+    private final ThermalSource<TileEntityReactorCell> thermalSource = new ThermalSourceTile(this, () -> heatCache, () -> isRunning, true);
 
     @Override
     protected void firstTick(boolean isClient)
@@ -174,8 +176,18 @@ public class TileEntityReactorCell extends TileEntityInventoryMachine<IItemHandl
             doRunChecks(ticks);
 
             //Cache values for faster runtime of threads
-            heatCache = getHeatGenerated();
-            radCache = getRadioactiveMaterial();
+            final int heat = getHeatGenerated();
+            final int rad = getRadioactiveMaterial();
+
+            //Let the map know the sources changed, they are not checked otherwise
+            if (heat != heatCache || rad != radCache || isRunning != sourcesRunning)
+            {
+                heatCache = heat;
+                radCache = rad;
+                sourcesRunning = isRunning;
+                MapDataSources.markDirty(getRadiationSource());
+                MapDataSources.markDirty(getHeatSource());
+            }
         }
         else if (isRunning)
         {
@@ -1,11 +1,9 @@
 package com.builtbroken.atomic.content.machines.sensors.thermal;
 
 import com.builtbroken.atomic.AtomicScience;
-import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.content.ASItems;
 import com.builtbroken.atomic.content.prefab.BlockPrefab;
 import com.builtbroken.atomic.lib.MetaEnum;
-import com.builtbroken.atomic.map.events.MapSystemEvent;
 import com.google.common.collect.Lists;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.properties.PropertyEnum;
@@ -18,9 +16,6 @@ import net.minecraft.util.EnumHand;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
-import net.minecraftforge.fml.common.Mod;
-import net.minecraftforge.fml.common.eventhandler.EventPriority;
-import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 
 import javax.annotation.Nullable;
 
@@ -28,7 +23,6 @@ import javax.annotation.Nullable;
  *
  * Created by Dark(DarkGuardsman, Robert) on 10/23/2018.
  */
-@Mod.EventBusSubscriber
 public class BlockThermalRedstone extends BlockPrefab
 {
     public static final PropertyEnum<MetaEnum> REDSTONE_PROPERTY = PropertyEnum.create("redstone", MetaEnum.class, Lists.newArrayList(MetaEnum.values()));
@@ -112,22 +106,4 @@ public class BlockThermalRedstone extends BlockPrefab
         }
         return 0;
     }
-
-    @SubscribeEvent(priority = EventPriority.LOWEST)
-    public static void onHeatChanged(MapSystemEvent.OnValueChanged event)
-    {
-        final World world = event.world();
-        if (world != null && !world.isRemote && event.type == DataMapType.THERMAL && world.isBlockLoaded(event.getPos()))
-        {
-            final IBlockState blockState = world.getBlockState(event.getPos());
-            if (blockState.getBlock() instanceof BlockThermalRedstone)
-            {
-                final TileEntity tile = world.getTileEntity(event.getPos());
-                if (tile instanceof TileEntityThermalRedstone)
-                {
-                    ((TileEntityThermalRedstone) tile).updateRedstoneState(blockState, event.getNewValue());
-                }
-            }
-        }
-    }
 }
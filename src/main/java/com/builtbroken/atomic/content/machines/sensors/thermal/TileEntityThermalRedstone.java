@@ -1,11 +1,14 @@
 package com.builtbroken.atomic.content.machines.sensors.thermal;
 
+import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.content.machines.sensors.thermal.gui.ContainerThermalRedstone;
 import com.builtbroken.atomic.content.machines.sensors.thermal.gui.GuiThermalRedstone;
 import com.builtbroken.atomic.content.prefab.TileEntityPrefab;
 import com.builtbroken.atomic.lib.MetaEnum;
 import com.builtbroken.atomic.lib.gui.IGuiTile;
 import com.builtbroken.atomic.map.MapHandler;
+import com.builtbroken.atomic.map.data.storage.DataMap;
+import com.builtbroken.atomic.map.events.IMapChangeListener;
 import com.builtbroken.atomic.network.IPacket;
 import com.builtbroken.atomic.network.netty.PacketSystem;
 import com.builtbroken.atomic.network.packet.PacketTile;
@@ -16,13 +19,14 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import java.util.BitSet;
 import java.util.List;
 
 /**
  *
  * Created by Dark(DarkGuardsman, Robert) on 10/23/2018.
  */
-public class TileEntityThermalRedstone extends TileEntityPrefab implements IGuiTile
+public class TileEntityThermalRedstone extends TileEntityPrefab implements IGuiTile, IMapChangeListener
 {
     public static final String NBT_MIN_HEAT = "minHeat";
     public static final String NBT_MAX_HEAT = "maxHeat";
@@ -37,10 +41,51 @@ public class TileEntityThermalRedstone extends TileEntityPrefab implements IGuiT
 
     //TODO set owner of machine
 
+    /** Dimension the sensor is watching for heat changes, null if not watching */
+    private Integer watchingDim;
+
     @Override
     public void onLoad()
     {
         updateRedstoneState(world.getBlockState(getPos()), MapHandler.THERMAL_MAP.getStoredValue(world, getPos()));
+        if (isServer() && watchingDim == null)
+        {
+            //Only notified of heat changes at our own position
+            watchingDim = world.provider.getDimension();
+            MapHandler.GLOBAL_DATA_MAP.changes.watch(watchingDim, getPos(), DataMapType.THERMAL, this);
+        }
+    }
+
+    @Override
+    public void invalidate()
+    {
+        super.invalidate();
+        stopWatching();
+    }
+
+    @Override
+    public void onChunkUnload()
+    {
+        super.onChunkUnload();
+        stopWatching();
+    }
+
+    private void stopWatching()
+    {
+        if (watchingDim != null)
+        {
+            MapHandler.GLOBAL_DATA_MAP.changes.unwatch(watchingDim, getPos(), DataMapType.THERMAL, this);
+            watchingDim = null;
+        }
+    }
+
+    @Override
+    public void onMapChanged(DataMap map, DataMapType type, int chunkX, int chunkZ, BitSet positions)
+    {
+        if (!isInvalid() && world.isBlockLoaded(getPos()))
+        {
+            updateRedstoneState(world.getBlockState(getPos()), map.getValue(getPos(), type));
+        }
     }
 
     @Override
@@ -0,0 +1,284 @@
+package com.builtbroken.atomic.lib.collection;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Map of long keys to objects using open addressing, keys are stored as primitives
+ * so lookups do not create a {@link Long} like {@link java.util.HashMap} does.
+ * <p>
+ * Uses linear probing with removal by shifting entries back, so no tombstones are left
+ * behind. Values can not be null, an empty slot is marked by a null value.
+ * <p>
+ * Not thread safe.
+ */
+public class LongObjectMap<V>
+{
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongObjectMap()
+    {
+        this(16);
+    }
+
+    public LongObjectMap(int expectedSize)
+    {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Gets the value of the key
+     *
+     * @param key - key
+     * @return value, or null if not set
+     */
+    public V get(long key)
+    {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        int slot = slot(key);
+        Object value;
+        while ((value = values[slot]) != null)
+        {
+            if (keys[slot] == key)
+            {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value of the key
+     *
+     * @param key   - key
+     * @param value - value, not null
+     * @return previous value, or null if not set
+     */
+    public V put(long key, V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("LongObjectMap: null values are not supported");
+        }
+
+        int slot = slot(key);
+        Object current;
+        while ((current = values[slot]) != null)
+        {
+            if (keys[slot] == key)
+            {
+                values[slot] = value;
+                return (V) current;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt)
+        {
+            allocate(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the key
+     *
+     * @param key - key
+     * @return value removed, or null if not set
+     */
+    public V remove(long key)
+    {
+        int slot = slot(key);
+        Object current;
+        while ((current = values[slot]) != null)
+        {
+            if (keys[slot] == key)
+            {
+                shiftBack(slot);
+                size--;
+                return (V) current;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Fills the gap left by a removal with later entries of the same probe run,
+     * so lookups never stop early on an empty slot
+     *
+     * @param gap - slot removed
+     */
+    private void shiftBack(int gap)
+    {
+        int slot = gap;
+        while (true)
+        {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null)
+            {
+                break;
+            }
+
+            //Entry can move if the gap is between its home slot and its current slot
+            final int home = slot(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - gap) & mask))
+            {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = null;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Copies the keys into a new array
+     *
+     * @return keys, in no particular order
+     */
+    public long[] keys()
+    {
+        final long[] out = new long[size];
+        int count = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            if (values[i] != null)
+            {
+                out[count++] = keys[i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * View of the values, does not support removal. Changing the map while iterating is not supported.
+     *
+     * @return values
+     */
+    public Collection<V> values()
+    {
+        return new AbstractCollection<V>()
+        {
+            @Override
+            public Iterator<V> iterator()
+            {
+                return new Iterator<V>()
+                {
+                    private int slot = next(0);
+
+                    private int next(int from)
+                    {
+                        while (from < values.length && values[from] == null)
+                        {
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return slot < values.length;
+                    }
+
+                    @Override
+                    public V next()
+                    {
+                        if (slot >= values.length)
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        final V value = (V) values[slot];
+                        slot = next(slot + 1);
+                        return value;
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    private int slot(long key)
+    {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity)
+    {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+
+        if (oldValues != null)
+        {
+            for (int i = 0; i < oldValues.length; i++)
+            {
+                if (oldValues[i] != null)
+                {
+                    int slot = slot(oldKeys[i]);
+                    while (values[slot] != null)
+                    {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private static int capacityFor(int expectedSize)
+    {
+        int capacity = 8;
+        while (capacity * LOAD_FACTOR < expectedSize)
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -12,6 +12,7 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import javax.annotation.Nullable;
 import java.util.HashMap;
 
 /**
@@ -89,10 +90,24 @@ public class RadiationHandler
     public static float getReduceRadiationForBlock(World world, int xi, int yi, int zi) //TODO make a directional version
     {
         final BlockPos pos = new BlockPos(xi, yi, zi);
-        final IBlockState blockState = world.getBlockState(pos);
+        return getReduceRadiationForBlock(world, pos, world.getBlockState(pos), world.getTileEntity(pos));
+    }
+
+    /**
+     * Called to get the generalized radiation resistance of a block
+     * <p>
+     * Used when the block data was already pulled, such as when reading a chunk section
+     *
+     * @param world      - location
+     * @param pos        - location
+     * @param blockState - block at the location
+     * @param tileEntity - tile at the location, or null if none
+     * @return value between 0.0 and 1.0
+     */
+    public static float getReduceRadiationForBlock(World world, BlockPos pos, IBlockState blockState, @Nullable TileEntity tileEntity)
+    {
         final Block block = blockState.getBlock();
 
-        TileEntity tileEntity = world.getTileEntity(pos);
         if (tileEntity != null && tileEntity.hasCapability(AtomicScienceAPI.RADIATION_RESISTANT_CAPABILITY, null))
         {
             IRadiationResistant radiationResistant = tileEntity.getCapability(AtomicScienceAPI.RADIATION_RESISTANT_CAPABILITY, null);
@@ -144,9 +159,18 @@ public class RadiationHandler
      */
     public static double reduceRadiationForBlock(World world, int xi, int yi, int zi, double power)
     {
-        //Get reduction
-        float reduction = getReduceRadiationForBlock(world, xi, yi, zi);
+        return reduceRadiation(getReduceRadiationForBlock(world, xi, yi, zi), power);
+    }
 
+    /**
+     * Called to reduce the radiation value
+     *
+     * @param reduction - resistance of the block, see {@link #getReduceRadiationForBlock(World, int, int, int)}
+     * @param power     - radiation value
+     * @return reduced value
+     */
+    public static double reduceRadiation(float reduction, double power)
+    {
         //TODO add system to allow per block flat limit, then apply greater (limit or percentage)
         //TODO add an upper limit, how much radiation a block can stop, pick small (limit or percentage)
         //Flat line
@@ -2,8 +2,14 @@ package com.builtbroken.atomic.map;
 
 import com.builtbroken.atomic.AtomicScience;
 import com.builtbroken.atomic.api.AtomicScienceAPI;
+import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.config.logic.ConfigRadiation;
+import com.builtbroken.atomic.config.server.ConfigServer;
+import com.builtbroken.atomic.map.data.node.MapApplyQueue;
+import com.builtbroken.atomic.map.data.node.MapDataSources;
+import com.builtbroken.atomic.map.data.storage.MapFieldStore;
 import com.builtbroken.atomic.map.exposure.RadiationMap;
+import com.builtbroken.atomic.map.exposure.RadiationResistanceCache;
 import com.builtbroken.atomic.map.exposure.ThreadRadExposure;
 import com.builtbroken.atomic.map.thermal.ThermalMap;
 import com.builtbroken.atomic.map.thermal.ThreadThermalAction;
@@ -33,6 +39,18 @@ public final class MapHandler
 
     public static final MapSystem GLOBAL_DATA_MAP = new MapSystem();
 
+    /** Cache of block radiation resistance, read by the exposure thread */
+    public static final RadiationResistanceCache RESISTANCE_CACHE = new RadiationResistanceCache();
+
+    /** Results from the map threads waiting to be applied on the main thread */
+    public static final MapApplyQueue APPLY_QUEUE = new MapApplyQueue();
+
+    /** Fields of map sources saved with the world */
+    public static final MapFieldStore FIELD_STORE = new MapFieldStore();
+
+    /** Listener added to each server world to detect block changes */
+    public static final MapWorldListener WORLD_LISTENER = new MapWorldListener();
+
     /** Thread used to calculate exposure values per location */
     public static ThreadRadExposure THREAD_RAD_EXPOSURE;
     /** Thread used to move heat around the map */
@@ -53,12 +71,22 @@ public final class MapHandler
         }
 
         MinecraftForge.EVENT_BUS.register(THERMAL_MAP);
+        GLOBAL_DATA_MAP.changes.addListener(DataMapType.THERMAL, THERMAL_MAP);
     }
 
     ///----------------------------------------------------------------
     ///--------World events
     ///----------------------------------------------------------------
 
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event)
+    {
+        if (!event.getWorld().isRemote)
+        {
+            event.getWorld().addEventListener(WORLD_LISTENER);
+        }
+    }
+
     @SubscribeEvent
     public void onWorldUnload(WorldEvent.Unload event)
     {
@@ -67,6 +95,23 @@ public final class MapHandler
             RADIATION_MAP.onWorldUnload(event.getWorld());
             THERMAL_MAP.onWorldUnload(event.getWorld());
             GLOBAL_DATA_MAP.onWorldUnload(event.getWorld());
+            if (THREAD_THERMAL_ACTION != null)
+            {
+                THREAD_THERMAL_ACTION.onWorldUnload(event.getWorld());
+            }
+            RESISTANCE_CACHE.onWorldUnload(event.getWorld());
+            FIELD_STORE.onWorldUnload(event.getWorld());
+            event.getWorld().removeEventListener(WORLD_LISTENER);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldSave(WorldEvent.Save event)
+    {
+        if (!event.getWorld().isRemote)
+        {
+            MapDataSources.storeFields(event.getWorld());
+            FIELD_STORE.save(event.getWorld());
         }
     }
 
@@ -76,16 +121,34 @@ public final class MapHandler
         if (!event.getWorld().isRemote)
         {
             GLOBAL_DATA_MAP.onChunkUnload(event.getWorld(), event.getChunk());
+            RESISTANCE_CACHE.onChunkUnload(event.getWorld(), event.getChunk());
         }
     }
 
 
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event)
+    {
+        if (event.phase == TickEvent.Phase.END)
+        {
+            APPLY_QUEUE.process(ConfigServer.THREAD.APPLY_BUDGET * 1000000L);
+        }
+    }
+
     @SubscribeEvent
     public void onWorldTick(TickEvent.WorldTickEvent event)
     {
         if (!event.world.isRemote)
         {
             GLOBAL_DATA_MAP.onWorldTick(event.world);
+            if (event.phase == TickEvent.Phase.END)
+            {
+                RESISTANCE_CACHE.onWorldTick(event.world);
+            }
+            if (THREAD_THERMAL_ACTION != null && event.phase == TickEvent.Phase.END)
+            {
+                THREAD_THERMAL_ACTION.onWorldTick(event.world);
+            }
         }
     }
 }
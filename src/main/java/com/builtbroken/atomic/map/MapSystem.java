@@ -1,14 +1,19 @@
 package com.builtbroken.atomic.map;
 
+import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.api.map.IDataMapNode;
 import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.lib.collection.IntObjectMap;
 import com.builtbroken.atomic.map.data.storage.DataMap;
+import com.builtbroken.atomic.map.events.MapChangeDispatcher;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * Generic map system that can be used for anything so long as it stores data to the map
@@ -20,7 +25,57 @@ public class MapSystem
 {
 
     /** Dimension to data map, saved to world and updated over time */
-    protected final HashMap<Integer, DataMap> dimensionToMap = new HashMap();
+    protected final IntObjectMap<DataMap> dimensionToMap = new IntObjectMap();
+    /** Copy of {@link #dimensionToMap} for reads from other threads, replaced when a map is added */
+    protected volatile IntObjectMap<DataMap> dimensionToMapForRead = new IntObjectMap();
+
+    /** Depth of nested batches, main thread only */
+    private int batchDepth = 0;
+
+    /** Delivers value changes to listeners by type and position, main thread only */
+    public final MapChangeDispatcher changes = new MapChangeDispatcher();
+
+    ///----------------------------------------------------------------
+    ///--------Batching
+    ///----------------------------------------------------------------
+
+    /**
+     * Starts a batch of changes. Until {@link #endBatch()} changes to the maps are recorded
+     * instead of firing an event per position, then delivered to {@link #changes} and fired as one
+     * {@link com.builtbroken.atomic.map.events.MapSystemEvent.OnChunkChanged} per chunk.
+     * {@link com.builtbroken.atomic.map.events.MapSystemEvent.OnNodeAdded} still fires per node
+     * so listeners can cancel or replace nodes.
+     * <p>
+     * Main thread only. Batches can be nested, events fire when the outer batch ends.
+     */
+    public void beginBatch()
+    {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch of changes, see {@link #beginBatch()}
+     */
+    public void endBatch()
+    {
+        if (batchDepth > 0 && --batchDepth == 0)
+        {
+            for (DataMap map : new ArrayList(dimensionToMap.values()))
+            {
+                map.flushChanges();
+            }
+        }
+    }
+
+    /**
+     * Checks if changes are currently being batched
+     *
+     * @return true if in a batch
+     */
+    public boolean isBatching()
+    {
+        return batchDepth > 0;
+    }
 
     /**
      * Gets the exposure map
@@ -41,10 +96,82 @@ public class MapSystem
         {
             map = newMap(dim);
             dimensionToMap.put(dim, map);
+
+            final IntObjectMap<DataMap> copy = new IntObjectMap(dimensionToMap.size());
+            for (DataMap existing : dimensionToMap.values())
+            {
+                copy.put(existing.dim, existing);
+            }
+            dimensionToMapForRead = copy;
         }
         return map;
     }
 
+    /**
+     * Gets the value at the location, safe to call from any thread
+     * <p>
+     * Use this from worker threads rather than {@link #getMap(int, boolean)}, which
+     * is not safe while the main thread adds maps.
+     *
+     * @param dim  - dimension
+     * @param x    - location
+     * @param y    - location
+     * @param z    - location
+     * @param type - type of value
+     * @return value
+     */
+    public int readValue(int dim, int x, int y, int z, DataMapType type)
+    {
+        final DataMap map = dimensionToMapForRead.get(dim);
+        if (map != null)
+        {
+            return map.readValue(x, y, z, type);
+        }
+        return 0;
+    }
+
+    /**
+     * Copies the values inside the box into the array, safe to call from any thread.
+     * See {@link DataMap#readRegion(int, int, int, int, int, int, DataMapType, int[])} for the array layout.
+     *
+     * @param dim  - dimension
+     * @param type - type of value
+     * @param out  - array to fill, at least the volume of the box
+     * @return sum of the values in the box
+     */
+    public long readRegion(int dim, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, DataMapType type, int[] out)
+    {
+        final DataMap map = dimensionToMapForRead.get(dim);
+        if (map != null)
+        {
+            return map.readRegion(minX, minY, minZ, maxX, maxY, maxZ, type, out);
+        }
+        Arrays.fill(out, 0, Math.min(out.length, (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1)), 0);
+        return 0;
+    }
+
+    /**
+     * Gets the values at each position, safe to call from any thread.
+     * See {@link DataMap#readValues(long[], int, DataMapType, int[])}
+     *
+     * @param dim       - dimension
+     * @param positions - packed positions, see {@link BlockPos#toLong()}
+     * @param count     - number of positions to read
+     * @param type      - type of value
+     * @param out       - array to fill, index matches the position index
+     * @return sum of the values
+     */
+    public long readValues(int dim, long[] positions, int count, DataMapType type, int[] out)
+    {
+        final DataMap map = dimensionToMapForRead.get(dim);
+        if (map != null)
+        {
+            return map.readValues(positions, count, type, out);
+        }
+        Arrays.fill(out, 0, Math.min(out.length, count), 0);
+        return 0;
+    }
+
     protected DataMap newMap(int dim)
     {
         return new DataMap(this, dim);
@@ -72,6 +199,44 @@ public class MapSystem
     }
 
 
+    /**
+     * Gets the combined value of the type at the position
+     *
+     * @param world - location
+     * @param pos   - location
+     * @param type  - type of value
+     * @return value, or zero if no data
+     */
+    public int getValue(World world, BlockPos pos, DataMapType type)
+    {
+        DataMap map = getMap(world, false);
+        if (map != null)
+        {
+            return map.getValue(pos, type);
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the combined value of the type at the position
+     *
+     * @param dim  - world id
+     * @param x    - location
+     * @param y    - location
+     * @param z    - location
+     * @param type - type of value
+     * @return value, or zero if no data
+     */
+    public int getValue(int dim, int x, int y, int z, DataMapType type)
+    {
+        DataMap map = getMap(dim, false);
+        if (map != null)
+        {
+            return map.getValue(x, y, z, type);
+        }
+        return 0;
+    }
+
     /**
      * Gets the data value at the position
      *
@@ -163,6 +328,24 @@ public class MapSystem
         }
     }
 
+    /**
+     * Adds all the nodes as a single batch, see {@link DataMap#addData(Map)}
+     *
+     * @param world - location
+     * @param nodes - position to node
+     */
+    public <N extends IDataMapNode> void addData(World world, Map<BlockPos, N> nodes)
+    {
+        if (!nodes.isEmpty())
+        {
+            DataMap map = getMap(world, true);
+            if (map != null)
+            {
+                map.addData(nodes);
+            }
+        }
+    }
+
     /**
      * Called to set the data value of the position
      *
@@ -247,6 +430,20 @@ public class MapSystem
         {
             map.onWorldUnload();
         }
+        if (world != null && world.provider != null)
+        {
+            changes.onWorldUnload(world.provider.getDimension());
+        }
+    }
+
+    /**
+     * Maps of all loaded dimensions, main thread only
+     *
+     * @return maps
+     */
+    public Collection<DataMap> getMaps()
+    {
+        return dimensionToMap.values();
     }
 
     public void onWorldTick(World world)
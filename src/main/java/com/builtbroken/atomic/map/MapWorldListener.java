@@ -0,0 +1,108 @@
+package com.builtbroken.atomic.map;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorldEventListener;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+
+/**
+ * World listener used to detect block changes for the map systems.
+ * <p>
+ * Vanilla only calls {@link #notifyBlockUpdate(World, BlockPos, IBlockState, IBlockState, int)}
+ * when a block is set with flag 2 (send to clients) in a populated chunk. This covers normal
+ * placing, breaking and machine changes, unlike forge events which only fire for player actions.
+ * Changes made with other flags or written straight to the chunk are not seen, the map systems
+ * only pick those up when the chunk unloads or the source is traced again.
+ */
+public class MapWorldListener implements IWorldEventListener
+{
+    @Override
+    public void notifyBlockUpdate(World world, BlockPos pos, IBlockState oldState, IBlockState newState, int flags)
+    {
+        if (oldState != newState)
+        {
+            MapHandler.RESISTANCE_CACHE.onBlockChanged(world, pos);
+            MapHandler.FIELD_STORE.onBlockChanged(world, pos);
+            if (MapHandler.THREAD_RAD_EXPOSURE != null)
+            {
+                MapHandler.THREAD_RAD_EXPOSURE.onBlockChanged(world, pos, oldState, newState);
+            }
+            if (MapHandler.THREAD_THERMAL_ACTION != null)
+            {
+                MapHandler.THREAD_THERMAL_ACTION.onBlockChanged(world, pos);
+            }
+        }
+    }
+
+    @Override
+    public void notifyLightSet(BlockPos pos)
+    {
+
+    }
+
+    @Override
+    public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2)
+    {
+
+    }
+
+    @Override
+    public void playSoundToAllNearExcept(@Nullable EntityPlayer player, SoundEvent soundIn, SoundCategory category, double x, double y, double z, float volume, float pitch)
+    {
+
+    }
+
+    @Override
+    public void playRecord(SoundEvent soundIn, BlockPos pos)
+    {
+
+    }
+
+    @Override
+    public void spawnParticle(int particleID, boolean ignoreRange, double xCoord, double yCoord, double zCoord, double xSpeed, double ySpeed, double zSpeed, int... parameters)
+    {
+
+    }
+
+    @Override
+    public void spawnParticle(int id, boolean ignoreRange, boolean minimiseParticleLevel, double x, double y, double z, double xSpeed, double ySpeed, double zSpeed, int... parameters)
+    {
+
+    }
+
+    @Override
+    public void onEntityAdded(Entity entityIn)
+    {
+
+    }
+
+    @Override
+    public void onEntityRemoved(Entity entityIn)
+    {
+
+    }
+
+    @Override
+    public void broadcastSound(int soundID, BlockPos pos, int data)
+    {
+
+    }
+
+    @Override
+    public void playEvent(EntityPlayer player, int type, BlockPos blockPosIn, int data)
+    {
+
+    }
+
+    @Override
+    public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress)
+    {
+
+    }
+}
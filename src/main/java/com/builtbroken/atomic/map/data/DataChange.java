@@ -14,7 +14,7 @@ import java.util.function.Consumer;
  */
 public class DataChange implements IPosWorld
 {
-    private static final DataPool<DataChange> dataChangePool = new DataPool(100000);
+    private static final DataPool<DataChange> dataChangePool = new DataPool("DataChange", 100000);
 
     public IDataMapSource source;
 
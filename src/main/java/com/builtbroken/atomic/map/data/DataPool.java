@@ -1,39 +1,255 @@
 package com.builtbroken.atomic.map.data;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Pool of objects to reduce memory churn for short lived objects.
+ * <p>
+ * Each thread keeps two small magazines of objects so most calls never touch shared state.
+ * Full magazines move to and from a shared depot, bounded by the max size of the pool, once
+ * a thread has more or less than it can hold. Empty magazines are kept in a second depot so
+ * moving objects between threads does not allocate once the pool is warm.
+ * <p>
+ * Safe to use from any thread without locking.
+ *
  *
  * Created by Dark(DarkGuardsman, Robert) on 5/12/2018.
  */
 public class DataPool<E extends Object>
 {
-    public int maxObjectPoleCount = 100000;
-    private ConcurrentLinkedQueue<E> objectPole = new ConcurrentLinkedQueue();
-    private int objectPoleCount = 0;
+    /** Objects per magazine */
+    private static final int MAGAZINE_SIZE = 32;
+
+    /** All pools created, used for stats */
+    public static final List<DataPool> POOLS = new CopyOnWriteArrayList();
+
+    public final String name;
+    public final int maxObjectPoleCount;
+
+    /** Magazines of the current thread */
+    private final ThreadLocal<Magazines> magazines = ThreadLocal.withInitial(Magazines::new);
+
+    /** Shared full magazines */
+    private final Depot fullMagazines;
+    /** Shared empty magazines */
+    private final Depot emptyMagazines;
+
+    //Stats
+    /** Objects currently in the pool */
+    private final LongAdder size = new LongAdder();
+    /** Calls to get that returned an object */
+    public final LongAdder hits = new LongAdder();
+    /** Calls to get that found the pool empty */
+    public final LongAdder misses = new LongAdder();
+    /** Objects dropped as the pool was full */
+    public final LongAdder overflows = new LongAdder();
 
     public DataPool(int max)
     {
+        this("unnamed", max);
+    }
+
+    public DataPool(String name, int max)
+    {
+        this.name = name;
         this.maxObjectPoleCount = max;
+        this.fullMagazines = new Depot(Math.max(1, max / MAGAZINE_SIZE));
+        this.emptyMagazines = new Depot(Math.max(1, max / MAGAZINE_SIZE));
+        POOLS.add(this);
     }
 
+    /**
+     * Checks if there is likely an object to get
+     *
+     * @return true if {@link #get()} should return an object
+     */
     public boolean has()
     {
-        return !objectPole.isEmpty();
+        final Magazines local = magazines.get();
+        return local.loadedCount > 0 || local.previousCount > 0 || fullMagazines.count.get() > 0;
     }
 
+    /**
+     * Gets an object from the pool
+     *
+     * @return object, or null if the pool is empty
+     */
     public E get()
     {
-        objectPoleCount--;
-        return objectPole.poll();
+        final Magazines local = magazines.get();
+        if (local.loadedCount == 0)
+        {
+            if (local.previousCount > 0)
+            {
+                local.swap();
+            }
+            else
+            {
+                final Object[] full = fullMagazines.pop();
+                if (full == null)
+                {
+                    misses.increment();
+                    return null;
+                }
+
+                //Both local magazines are empty, keep one and return the other
+                emptyMagazines.push(local.previous);
+                local.previous = local.loaded;
+                local.previousCount = 0;
+                local.loaded = full;
+                local.loadedCount = MAGAZINE_SIZE;
+            }
+        }
+
+        final int index = --local.loadedCount;
+        final E object = (E) local.loaded[index];
+        local.loaded[index] = null;
+
+        size.decrement();
+        hits.increment();
+        return object;
     }
 
+    /**
+     * Returns an object to the pool
+     *
+     * @param object - object no longer in use
+     */
     public void dispose(E object)
     {
-        if (objectPoleCount < maxObjectPoleCount)
+        final Magazines local = magazines.get();
+        if (local.loadedCount == MAGAZINE_SIZE)
         {
-            objectPole.add(object);
-            objectPoleCount++;
+            if (local.previousCount == 0)
+            {
+                local.swap();
+            }
+            else
+            {
+                //Both local magazines are full, move one to the depot
+                if (!fullMagazines.push(local.previous))
+                {
+                    overflows.increment();
+                    return;
+                }
+
+                final Object[] empty = emptyMagazines.pop();
+                local.previous = local.loaded;
+                local.previousCount = MAGAZINE_SIZE;
+                local.loaded = empty != null ? empty : new Object[MAGAZINE_SIZE];
+                local.loadedCount = 0;
+            }
+        }
+
+        local.loaded[local.loadedCount++] = object;
+        size.increment();
+    }
+
+    /**
+     * Number of objects in the pool, across all threads
+     *
+     * @return count
+     */
+    public long size()
+    {
+        return size.sum();
+    }
+
+    /**
+     * Magazines held by a single thread
+     */
+    private static final class Magazines
+    {
+        Object[] loaded = new Object[MAGAZINE_SIZE];
+        int loadedCount;
+        Object[] previous = new Object[MAGAZINE_SIZE];
+        int previousCount;
+
+        void swap()
+        {
+            final Object[] magazine = loaded;
+            final int count = loadedCount;
+            loaded = previous;
+            loadedCount = previousCount;
+            previous = magazine;
+            previousCount = count;
+        }
+    }
+
+    /**
+     * Bounded set of magazines shared between threads.
+     * <p>
+     * A slot is reserved through the count before a magazine is placed or taken, so a placed
+     * magazine or free slot is always found by the scan. Slots are swapped with compare and set,
+     * which never allocates.
+     */
+    private static final class Depot
+    {
+        final AtomicReferenceArray<Object[]> slots;
+        /** Magazines in the depot, including ones reserved but not yet placed */
+        final AtomicInteger count = new AtomicInteger();
+        /** Slot last used, scans start here as it is likely near free and full slots */
+        final AtomicInteger hint = new AtomicInteger();
+
+        Depot(int capacity)
+        {
+            slots = new AtomicReferenceArray(capacity);
+        }
+
+        boolean push(Object[] magazine)
+        {
+            int reserved;
+            do
+            {
+                reserved = count.get();
+                if (reserved >= slots.length())
+                {
+                    return false;
+                }
+            }
+            while (!count.compareAndSet(reserved, reserved + 1));
+
+            int index = hint.get();
+            while (true)
+            {
+                index = index + 1 < slots.length() ? index + 1 : 0;
+                if (slots.get(index) == null && slots.compareAndSet(index, null, magazine))
+                {
+                    hint.set(index);
+                    return true;
+                }
+            }
+        }
+
+        Object[] pop()
+        {
+            int reserved;
+            do
+            {
+                reserved = count.get();
+                if (reserved <= 0)
+                {
+                    return null;
+                }
+            }
+            while (!count.compareAndSet(reserved, reserved - 1));
+
+            //Magazine may still be getting placed by the thread that reserved it
+            int index = hint.get();
+            while (true)
+            {
+                final Object[] magazine = slots.get(index);
+                if (magazine != null && slots.compareAndSet(index, magazine, null))
+                {
+                    hint.set(index > 0 ? index - 1 : slots.length() - 1);
+                    return magazine;
+                }
+                index = index > 0 ? index - 1 : slots.length() - 1;
+            }
         }
     }
 }
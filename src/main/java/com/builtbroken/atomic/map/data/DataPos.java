@@ -11,7 +11,7 @@ import net.minecraft.util.math.BlockPos;
 @Deprecated
 public class DataPos implements IPos3D
 {
-    private static final DataPool<DataPos> dataPosPool = new DataPool(100000);
+    private static final DataPool<DataPos> dataPosPool = new DataPool("DataPos", 100000);
 
     public int x;
     public int y;
@@ -1,12 +1,27 @@
 package com.builtbroken.atomic.map.data;
 
 import com.builtbroken.atomic.AtomicScience;
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.config.server.ConfigServer;
+import com.builtbroken.atomic.config.server.ConfigThread;
 import com.builtbroken.atomic.map.data.storage.DataChunk;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Generic thread used for calculating actions based on data changes in the main game world.
+ * <p>
+ * The thread acts as a dispatcher. If {@link ConfigThread#THREAD_COUNT} is above 1 changes are
+ * handed to a worker pool and processed in parallel, with only one change per source running
+ * at a time. Otherwise changes are processed on this thread.
+ * <p>
+ * Only the latest change per source is kept in the queue. As a change contains the
+ * full state of the source, any older change that has not started yet is replaced.
  *
  *
  * Created by Dark(DarkGuardsman, Robert) on 4/28/2018.
@@ -17,12 +32,32 @@ public abstract class ThreadDataChange extends Thread
     public final String name;
 
     /** Should the thread continue to run, true -> run... false -> stop & terminate */
-    public boolean shouldRun = true;
+    public volatile boolean shouldRun = true;
 
     //Object queues
-    private ConcurrentLinkedQueue<DataChange> changeQueue = new ConcurrentLinkedQueue();
-    private ConcurrentLinkedQueue<DataChunk> addScanQueue = new ConcurrentLinkedQueue();
-    private ConcurrentLinkedQueue<DataChunk> removeScanQueue = new ConcurrentLinkedQueue();
+    /** Order sources were queued, only contains sources with a pending change */
+    private final LinkedBlockingQueue<IDataMapSource> changeQueue = new LinkedBlockingQueue();
+    private final ConcurrentLinkedQueue<DataChunk> addScanQueue = new ConcurrentLinkedQueue();
+    private final ConcurrentLinkedQueue<DataChunk> removeScanQueue = new ConcurrentLinkedQueue();
+
+    //Source tracking, all guarded by pendingChanges
+    /** Latest change per source, a newer change replaces a pending older change */
+    private final HashMap<IDataMapSource, DataChange> pendingChanges = new HashMap();
+    /** Changes waiting on a change from the same source to finish */
+    private final HashMap<IDataMapSource, DataChange> deferredChanges = new HashMap();
+    /** Sources currently being processed by a worker */
+    private final HashSet<IDataMapSource> sourcesInProgress = new HashSet();
+
+    //Stats
+    /** Number of changes queued */
+    public final AtomicLong changesQueued = new AtomicLong();
+    /** Number of changes replaced by a newer change before running, each is a recompute avoided */
+    public final AtomicLong changesCoalesced = new AtomicLong();
+    /** Number of changes completed */
+    public final AtomicLong changesCompleted = new AtomicLong();
+
+    /** Worker pool, null if running in single thread mode */
+    private volatile ExecutorService workers;
 
     public ThreadDataChange(String name)
     {
@@ -36,10 +71,46 @@ public abstract class ThreadDataChange extends Thread
     public void start()
     {
         shouldRun = true;
-        AtomicScience.logger.info(name + ": Starting thread");
+        workers = createWorkers(ConfigServer.THREAD.THREAD_COUNT, ConfigServer.THREAD.POOL_TYPE);
+        AtomicScience.logger.info(name + ": Starting thread" + (workers != null ? " with " + ConfigServer.THREAD.THREAD_COUNT + " workers" : ""));
         super.start();
     }
 
+    /**
+     * Creates the worker pool
+     *
+     * @param count - number of workers
+     * @param type  - type of pool
+     * @return pool, or null to process changes on this thread
+     */
+    protected ExecutorService createWorkers(int count, ConfigThread.PoolType type)
+    {
+        if (count <= 1)
+        {
+            return null;
+        }
+        else if (type == ConfigThread.PoolType.FORK_JOIN)
+        {
+            final AtomicInteger workerIndex = new AtomicInteger();
+            return new ForkJoinPool(count, pool ->
+            {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(getName() + "-worker-" + workerIndex.getAndIncrement());
+                thread.setPriority(getPriority());
+                thread.setDaemon(true);
+                return thread;
+            }, (thread, e) -> AtomicScience.logger.error(name + ": Unexpected error in worker", e), true);
+        }
+        final AtomicInteger workerIndex = new AtomicInteger();
+        return Executors.newFixedThreadPool(count, runnable ->
+        {
+            Thread thread = new Thread(runnable, getName() + "-worker-" + workerIndex.getAndIncrement());
+            thread.setPriority(getPriority());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Override
     public void run()
     {
@@ -67,36 +138,31 @@ public abstract class ThreadDataChange extends Thread
                     }
                 }
 
-                //Stop looping if we have chunks to scan, only loop if we have something to do
-                while (shouldRun && !changeQueue.isEmpty() && addScanQueue.isEmpty() && removeScanQueue.isEmpty())
+                //Work not tied to a source
+                update();
+
+                //Wait for next change, wakes as soon as a change is queued. Timeout only exists to check chunk queues.
+                final IDataMapSource source = changeQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (source != null)
                 {
-                    DataChange change = changeQueue.poll();
+                    final ExecutorService pool = workers;
+                    final DataChange change = takePending(source, pool != null);
                     if (change != null)
                     {
-                        //If return true, then clear object
-                        if (updateLocation(change))
+                        if (pool == null)
                         {
-                            if (change.completionListener != null)
-                            {
-                                change.completionListener.accept(change.source);
-                            }
-                            change.source.onThreadComplete();
-                            change.dispose();
+                            process(change);
                         }
-                        //False add back to queue, as we are not done
                         else
                         {
-                            changeQueue.add(change);
+                            pool.execute(() -> processWorker(change));
                         }
                     }
-                    else
-                    {
-                        change.dispose();
-                    }
                 }
-
-                //Nothing left to do, then sleep for 100ms before checking on updates
-                sleep(100);
+            }
+            catch (InterruptedException e)
+            {
+                //Woken by kill()
             }
             catch (Exception e)
             {
@@ -108,6 +174,178 @@ public abstract class ThreadDataChange extends Thread
         removeScanQueue.clear();
         addScanQueue.clear();
         changeQueue.clear();
+        synchronized (pendingChanges)
+        {
+            pendingChanges.clear();
+            deferredChanges.clear();
+            sourcesInProgress.clear();
+        }
+    }
+
+    private void processWorker(DataChange change)
+    {
+        final IDataMapSource source = change.source;
+        try
+        {
+            process(change);
+        }
+        catch (Exception e)
+        {
+            AtomicScience.logger.error(name + ": Unexpected error while processing change for " + source, e);
+        }
+        finally
+        {
+            synchronized (pendingChanges)
+            {
+                sourcesInProgress.remove(source);
+
+                //Return deferred change to the queue now that the source is free
+                final DataChange deferred = deferredChanges.remove(source);
+                if (deferred != null)
+                {
+                    offer(deferred, false);
+                }
+            }
+        }
+    }
+
+    private void process(DataChange change)
+    {
+        //If return true, then clear object
+        if (updateLocation(change))
+        {
+            if (change.completionListener != null)
+            {
+                change.completionListener.accept(change.source);
+            }
+            change.source.onThreadComplete();
+            change.dispose();
+            changesCompleted.incrementAndGet();
+        }
+        //False add back to queue, as we are not done
+        else if (shouldRun)
+        {
+            offer(change, false);
+        }
+    }
+
+    /**
+     * Adds the change to the queue, merging with any pending change for the same source
+     *
+     * @param change - change to add
+     * @param newer  - true if the change is newer than any pending change, false if it
+     *               is being returned to the queue and should lose to a pending change
+     */
+    private void offer(DataChange change, boolean newer)
+    {
+        synchronized (pendingChanges)
+        {
+            //Change returned from a worker loses to a newer change deferred while it ran
+            final DataChange deferred = newer ? null : deferredChanges.get(change.source);
+            if (deferred != null)
+            {
+                deferredChanges.put(change.source, merge(change, deferred));
+                return;
+            }
+
+            final DataChange pending = pendingChanges.get(change.source);
+            if (pending == null)
+            {
+                pendingChanges.put(change.source, change);
+                changeQueue.add(change.source);
+            }
+            else
+            {
+                pendingChanges.put(change.source, newer ? merge(pending, change) : merge(change, pending));
+            }
+        }
+    }
+
+    /**
+     * Takes the pending change for the source
+     *
+     * @param source        - source
+     * @param trackProgress - true to mark the source as in progress, if it is already in
+     *                      progress the change is deferred until the running change completes
+     * @return change to run, or null if nothing to run
+     */
+    private DataChange takePending(IDataMapSource source, boolean trackProgress)
+    {
+        synchronized (pendingChanges)
+        {
+            final DataChange change = pendingChanges.remove(source);
+            if (change != null && trackProgress && !sourcesInProgress.add(source))
+            {
+                //Only allow one change per source to run at a time, as results are applied in order
+                final DataChange deferred = deferredChanges.get(source);
+                deferredChanges.put(source, deferred != null ? merge(deferred, change) : change);
+                return null;
+            }
+            return change;
+        }
+    }
+
+    /**
+     * Merges an older change into a newer change, last writer wins
+     *
+     * @param older - change to drop, will be disposed
+     * @param newer - change to keep
+     * @return newer change with listeners from both
+     */
+    private DataChange merge(DataChange older, DataChange newer)
+    {
+        newer.completionListener = mergeListeners(older.completionListener, newer.completionListener);
+
+        older.completionListener = null;
+        older.dispose();
+
+        changesCoalesced.incrementAndGet();
+        return newer;
+    }
+
+    private static Consumer<IDataMapSource> mergeListeners(Consumer<IDataMapSource> first, Consumer<IDataMapSource> second)
+    {
+        if (first == null || first == second)
+        {
+            return second;
+        }
+        else if (second == null)
+        {
+            return first;
+        }
+        return first.andThen(second);
+    }
+
+    /**
+     * Number of changes waiting to run
+     *
+     * @return count
+     */
+    public int getPendingCount()
+    {
+        synchronized (pendingChanges)
+        {
+            return pendingChanges.size() + deferredChanges.size();
+        }
+    }
+
+    /**
+     * Called each loop of the thread before waiting on the next change.
+     * Runs on the thread itself, with up to 100ms between calls while idle.
+     */
+    protected void update()
+    {
+
+    }
+
+    /**
+     * Worker pool used to process changes
+     *
+     * @return pool, or null if running in single thread mode
+     */
+    protected ExecutorService getWorkers()
+    {
+        return workers;
     }
 
     /**
@@ -163,6 +401,9 @@ public abstract class ThreadDataChange extends Thread
 
     /**
      * Called to update the exposure value at the location
+     * <p>
+     * May be called from several worker threads at once, but never
+     * for the same source at the same time.
      *
      * @param change
      * @return true to note change has completed
@@ -173,6 +414,13 @@ public abstract class ThreadDataChange extends Thread
     {
         shouldRun = false;
         AtomicScience.logger.info(name + ": Stopping thread");
+        final ExecutorService pool = workers;
+        workers = null;
+        if (pool != null)
+        {
+            pool.shutdownNow();
+        }
+        interrupt();
     }
 
     public void queueChunkForRemoval(DataChunk chunk)
@@ -195,7 +443,8 @@ public abstract class ThreadDataChange extends Thread
     {
         if (change != null)
         {
-            changeQueue.add(change);
+            changesQueued.incrementAndGet();
+            offer(change, true);
 
             if (AtomicScience.runningAsDev)
             {
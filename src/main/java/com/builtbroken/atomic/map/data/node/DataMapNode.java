@@ -0,0 +1,114 @@
+package com.builtbroken.atomic.map.data.node;
+
+import com.builtbroken.atomic.api.map.IDataMapNode;
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.map.data.IDataPoolObject;
+import com.builtbroken.atomic.map.data.storage.DataLayer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Base node that tracks the {@link DataLayer} it is stored inside. Allows the layer
+ * to keep a running total of values that is updated as the node's value changes.
+ * <p>
+ * The layer only stores the node's current value, so the link is two fields and
+ * the change pushed is always the difference between the old and new value.
+ */
+public abstract class DataMapNode implements IDataMapNode, IDataPoolObject
+{
+    /** Current value of the node */
+    protected int value;
+
+    /** Handle of the source that created the node, see {@link MapNodeSource#HANDLES} */
+    protected int sourceHandle = SourceHandleTable.NO_HANDLE;
+
+    /** Layer the node is stored in, null if not in the map */
+    private DataLayer layer;
+    /** Slot index inside the layer */
+    private int layerIndex;
+
+    protected DataMapNode(int value)
+    {
+        this.value = value;
+    }
+
+    /**
+     * Updates the value of the node and pushes
+     * the change to the layer if stored in the map
+     *
+     * @param value - new value
+     */
+    protected void setValue(int value)
+    {
+        if (layer != null)
+        {
+            final int prev = getType().getValue(this);
+            this.value = value;
+            layer.onNodeValueChanged(layerIndex, getType(), getType().getValue(this) - prev);
+        }
+        else
+        {
+            this.value = value;
+        }
+    }
+
+    @Nullable
+    @Override
+    public IDataMapSource getSource()
+    {
+        return MapNodeSource.HANDLES.get(sourceHandle);
+    }
+
+    /**
+     * Handle of the source that created the node
+     *
+     * @return handle, see {@link MapNodeSource#HANDLES}
+     */
+    public int getSourceHandle()
+    {
+        return sourceHandle;
+    }
+
+    /**
+     * Called by the layer when the node is stored
+     *
+     * @param layer - layer storing the node
+     * @param index - slot index in the layer
+     */
+    public void onAddedToLayer(DataLayer layer, int index)
+    {
+        this.layer = layer;
+        this.layerIndex = index;
+    }
+
+    /**
+     * Called by the layer when the node is removed
+     *
+     * @return value the node had added to the layer
+     */
+    public int onRemovedFromLayer()
+    {
+        this.layer = null;
+        return getType().getValue(this);
+    }
+
+    /**
+     * Clears the link to the layer, called before the node goes back to its pool so a
+     * reused node can never push changes into the layer it was last stored in
+     */
+    protected void resetLayer()
+    {
+        this.layer = null;
+        this.layerIndex = 0;
+    }
+
+    /**
+     * Layer the node is stored in
+     *
+     * @return layer or null if not in the map
+     */
+    public DataLayer getLayer()
+    {
+        return layer;
+    }
+}
@@ -0,0 +1,207 @@
+package com.builtbroken.atomic.map.data.node;
+
+import com.builtbroken.atomic.AtomicScience;
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.map.MapHandler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of map thread results waiting to be applied on the main thread.
+ * <p>
+ * Results are applied in the order queued, at the end of each server tick and up to a time
+ * budget. Anything not applied carries over to the next tick, with at least one result always
+ * making progress so the queue can not stall. A complete result replaces any result for the same
+ * source that is still waiting, as it contains the full state of the source.
+ * <p>
+ * All changes in a tick are applied as a single batch so listeners get one event per chunk,
+ * see {@link com.builtbroken.atomic.map.MapSystem#beginBatch()}.
+ */
+public class MapApplyQueue
+{
+    /** Results added by map threads */
+    private final ConcurrentLinkedQueue<MapNodeUpdate> incoming = new ConcurrentLinkedQueue();
+
+    //Main thread only
+    /** Results waiting to be applied in order */
+    private final ArrayDeque<MapNodeUpdate> pending = new ArrayDeque();
+    /** Last result queued per source */
+    private final HashMap<IDataMapSource, MapNodeUpdate> lastQueued = new HashMap();
+
+    //Stats
+    /** Number of results applied */
+    public final AtomicLong resultsApplied = new AtomicLong();
+    /** Number of results replaced by a newer result before being applied */
+    public final AtomicLong resultsReplaced = new AtomicLong();
+    /** Number of ticks that ran out of time with results left */
+    public final AtomicLong ticksOverBudget = new AtomicLong();
+
+    /**
+     * Queues a result to be applied, safe to call from any thread
+     *
+     * @param update - result
+     */
+    public void queue(MapNodeUpdate update)
+    {
+        if (update != null)
+        {
+            incoming.add(update);
+        }
+    }
+
+    /**
+     * Applies queued results, main thread only
+     *
+     * @param budgetNanos - time allowed before stopping
+     */
+    public void process(long budgetNanos)
+    {
+        final long deadline = System.nanoTime() + budgetNanos;
+
+        //Move new results into the ordered queue
+        MapNodeUpdate update;
+        while ((update = incoming.poll()) != null)
+        {
+            final MapNodeUpdate previous = lastQueued.put(update.source, update);
+            if (update.isComplete())
+            {
+                //Full state of the source, nothing before it needs to apply
+                for (MapNodeUpdate replaced = previous; replaced != null; replaced = replaced.previous)
+                {
+                    if (!replaced.replaced)
+                    {
+                        replaced.replaced = true;
+                        resultsReplaced.incrementAndGet();
+                    }
+                }
+            }
+            else
+            {
+                update.previous = previous;
+            }
+            pending.add(update);
+        }
+
+        if (pending.isEmpty())
+        {
+            return;
+        }
+
+        MapHandler.GLOBAL_DATA_MAP.beginBatch();
+        try
+        {
+            while (!pending.isEmpty())
+            {
+                final MapNodeUpdate next = pending.peek();
+                boolean done;
+                try
+                {
+                    done = next.apply(deadline);
+                }
+                catch (Exception e)
+                {
+                    AtomicScience.logger.error("MapApplyQueue: Unexpected error while applying result for " + next.source, e);
+                    done = true;
+                }
+
+                if (done)
+                {
+                    pending.poll();
+                    runDone(next);
+                    if (!next.replaced)
+                    {
+                        resultsApplied.incrementAndGet();
+                    }
+                    if (lastQueued.get(next.source) == next)
+                    {
+                        lastQueued.remove(next.source);
+
+                        //Check the source again, changes while waiting are skipped
+                        MapDataSources.markDirty(next.source);
+                    }
+                    next.previous = null;
+                }
+
+                if (System.nanoTime() > deadline)
+                {
+                    if (!pending.isEmpty())
+                    {
+                        ticksOverBudget.incrementAndGet();
+                    }
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            MapHandler.GLOBAL_DATA_MAP.endBatch();
+        }
+    }
+
+    /**
+     * Checks if a result for the source is waiting to be applied, main thread only
+     *
+     * @param source - source
+     * @return true if waiting
+     */
+    public boolean isPending(IDataMapSource source)
+    {
+        if (lastQueued.containsKey(source))
+        {
+            return true;
+        }
+        for (MapNodeUpdate update : incoming)
+        {
+            if (update.source == source)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of results waiting to be applied
+     *
+     * @return count
+     */
+    public int getPendingCount()
+    {
+        return pending.size() + incoming.size();
+    }
+
+    /**
+     * Drops all results, called when the server stops
+     */
+    public void clear()
+    {
+        MapNodeUpdate update;
+        while ((update = incoming.poll()) != null)
+        {
+            runDone(update);
+        }
+        while ((update = pending.poll()) != null)
+        {
+            runDone(update);
+        }
+        lastQueued.clear();
+    }
+
+    private void runDone(MapNodeUpdate update)
+    {
+        if (update.onDone != null)
+        {
+            try
+            {
+                update.onDone.run();
+            }
+            catch (Exception e)
+            {
+                AtomicScience.logger.error("MapApplyQueue: Unexpected error while finishing result for " + update.source, e);
+            }
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package com.builtbroken.atomic.map.data.node;
 
 import com.builtbroken.atomic.AtomicScience;
+import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.config.server.ConfigServer;
+import com.builtbroken.atomic.map.MapHandler;
 import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -19,11 +22,20 @@ import java.util.List;
 @Mod.EventBusSubscriber(modid = AtomicScience.DOMAIN)
 public final class MapDataSources
 {
-    private static final List<IDataMapSource> sources = new ArrayList();
+    /** Sources checked each tick, linked set for fast contains and removal while keeping add order */
+    private static final Set<IDataMapSource> polledSources = new LinkedHashSet();
+    /** Sources that report changes, see {@link IDataMapSource#isChangeTracked()} */
+    private static final Set<IDataMapSource> trackedSources = new LinkedHashSet();
+    /** Tracked sources that reported a change, added to from worker threads when changes complete */
+    private static final Set<IDataMapSource> dirtySources = Collections.newSetFromMap(new ConcurrentHashMap());
+    /** Sources by location, see {@link #getSources(World, BlockPos, int, DataMapType, List)} */
+    private static final MapSourceIndex index = new MapSourceIndex();
     private static final HashMap<IDataMapSource, MapSourceInfo> sourceInfo = new HashMap();
-    private static final List<IDataMapSource> waitingForThread = new ArrayList();
+    /** Sources queued to a map thread, updated from worker threads when changes complete */
+    private static final Set<IDataMapSource> waitingForThread = Collections.newSetFromMap(new ConcurrentHashMap());
 
     private static boolean callChecked = false;
+    private static int ticksSinceSweep = 0;
 
     @SubscribeEvent()
     public static void serverTick(TickEvent.ServerTickEvent event)
@@ -36,57 +48,124 @@ public final class MapDataSources
                 AtomicScience.logger.info("MapDataSources#serverTick() is working");
             }
         }
+
+        if (event.phase != TickEvent.Phase.END)
+        {
+            return;
+        }
+
+        //Sources that do not report changes are checked every tick
+        checkSources(polledSources);
+
+        //Tracked sources are only checked once they report a change
+        if (!dirtySources.isEmpty())
+        {
+            Iterator<IDataMapSource> it = dirtySources.iterator();
+            while (it.hasNext())
+            {
+                final IDataMapSource source = it.next();
+                it.remove();
+                if (trackedSources.contains(source) && !checkSource(source))
+                {
+                    trackedSources.remove(source);
+                    onSourceRemoved(source);
+                }
+            }
+        }
+
+        //Sweep tracked sources now and then to catch changes not reported, such as chunk ghosting
+        if (++ticksSinceSweep >= ConfigServer.THREAD.SOURCE_SWEEP_INTERVAL)
+        {
+            ticksSinceSweep = 0;
+            checkSources(trackedSources);
+        }
+    }
+
+    private static void checkSources(Set<IDataMapSource> sources)
+    {
         Iterator<IDataMapSource> it = sources.iterator();
         while (it.hasNext())
         {
             final IDataMapSource source = it.next();
+            if (!checkSource(source))
+            {
+                it.remove();
+                onSourceRemoved(source);
+            }
+        }
+    }
 
-            try
+    /**
+     * Checks the source for changes and queues it to its thread if needed
+     *
+     * @param source - source to check
+     * @return false if the source no longer exists and should be removed
+     */
+    private static boolean checkSource(IDataMapSource source)
+    {
+        try
+        {
+            //Clear dead sources
+            if (source == null || !source.doesSourceExist())
             {
-                //Clear dead sources
-                if (source == null || !source.doesSourceExist())
+                if (AtomicScience.runningAsDev)
+                {
+                    AtomicScience.logger.info("MapDataSources#serverTick() - Removed dead source, " + source);
+                }
+                return false;
+            }
+            //Disconnect invalid sources
+            else if (!source.isStillValid())
+            {
+                if(source.hasActiveMapData())
                 {
-                    //Remove
-                    it.remove();
-                    onSourceRemoved(source);
-
                     if (AtomicScience.runningAsDev)
                     {
-                        AtomicScience.logger.info("MapDataSources#serverTick() - Removed dead source, " + source);
+                        AtomicScience.logger.info("MapDataSources#serverTick() - Disconnected map data, " + source);
                     }
+                    source.disconnectMapData();
+
+                    //Remove thread tracking
+                    waitingForThread.remove(source);
+
+                    //Remove info
+                    sourceInfo.remove(source);
                 }
-                //Disconnect invalid sources
-                else if (!source.isStillValid())
+            }
+            //Handle updates
+            else
+            {
+                MapSourceInfo info = sourceInfo.get(source);
+                if (info == null)
                 {
-                    if(source.hasActiveMapData())
-                    {
-                        if (AtomicScience.runningAsDev)
-                        {
-                            AtomicScience.logger.info("MapDataSources#serverTick() - Disconnected map data, " + source);
-                        }
-                        source.disconnectMapData();
+                    sourceInfo.put(source, info = new MapSourceInfo(source));
+                }
 
-                        //Remove thread tracking
-                        waitingForThread.remove(source);
+                //Update
+                source.update();
 
-                        //Remove info
-                        sourceInfo.remove(source);
-                    }
-                }
-                //Handle updates
-                else
+                //Track moving sources
+                index.update(source);
+
+                //Check if the source needs updating
+                if (!waitingForThread.contains(source) && !MapHandler.APPLY_QUEUE.isPending(source) && info.needsQueued())
                 {
-                    MapSourceInfo info = sourceInfo.get(source);
-                    if (info == null)
+                    //Reuse the field saved with the world if the source has not changed
+                    boolean restored = false;
+                    if (!info.restoreChecked)
                     {
-                        sourceInfo.put(source, info = new MapSourceInfo(source));
+                        info.restoreChecked = true;
+                        restored = restoreField(source);
                     }
 
-                    //Update
-                    source.update();
-
-                    //Check if the source needs updating
-                    if (!waitingForThread.contains(source) && info.needsQueued())
+                    if (restored)
+                    {
+                        if (AtomicScience.runningAsDev)
+                        {
+                            AtomicScience.logger.info("MapDataSources#serverTick() - Restored saved field, " + source);
+                        }
+                    }
+                    else
                     {
                         if (AtomicScience.runningAsDev)
                         {
@@ -95,18 +174,18 @@ public final class MapDataSources
 
                         //Queue to thread
                         source.getType().queueSourceForUpdate(source);
-
-                        //Log data about source so we know when it changes
-                        info.logState();
                     }
+
+                    //Log data about source so we know when it changes
+                    info.logState();
                 }
             }
-            catch (Exception e)
-            {
-                AtomicScience.logger.error("MapDataSources#serverTick() - Unexpected error while checking source, " + source, e);
-            }
         }
-
+        catch (Exception e)
+        {
+            AtomicScience.logger.error("MapDataSources#serverTick() - Unexpected error while checking source, " + source, e);
+        }
+        return true;
     }
 
     /**
@@ -119,13 +198,23 @@ public final class MapDataSources
      */
     public static void addSource(IDataMapSource source)
     {
-        if (source != null && !source.world().isRemote && source.doesSourceExist() && !sources.contains(source))
+        if (source != null && !source.world().isRemote && source.doesSourceExist()
+                && !polledSources.contains(source) && !trackedSources.contains(source))
         {
             if(AtomicScience.runningAsDev)
             {
                 AtomicScience.logger.info("MapDataSources#addSource(" + source + ")");
             }
-            sources.add(source);
+            if (source.isChangeTracked())
+            {
+                trackedSources.add(source);
+                dirtySources.add(source);
+            }
+            else
+            {
+                polledSources.add(source);
+            }
+            index.update(source);
         }
     }
 
@@ -143,10 +232,11 @@ public final class MapDataSources
      */
     public static void removeSource(IDataMapSource source)
     {
-        if (sources.contains(source))
+        if (polledSources.remove(source) || trackedSources.remove(source))
         {
-            //Remove
-            sources.remove(source);
+            //Source is gone from the world, saved field is no longer needed
+            MapHandler.FIELD_STORE.remove(source);
+
             onSourceRemoved(source);
 
             if(AtomicScience.runningAsDev)
@@ -164,11 +254,94 @@ public final class MapDataSources
         //Remove info
         sourceInfo.remove(source);
 
+        //Remove location
+        index.remove(source);
+
         //Callback fro removal
         source.onRemovedFromMap();
 
     }
 
+    /**
+     * Queues the field saved with the world to be applied to the source
+     *
+     * @param source - source
+     * @return true if a saved field matched the source
+     */
+    private static boolean restoreField(IDataMapSource source)
+    {
+        if (source instanceof MapNodeSource && ((MapNodeSource) source).getNodeCount() <= 0)
+        {
+            final HashMap<BlockPos, Integer> values = MapHandler.FIELD_STORE.restore((MapNodeSource) source);
+            if (values != null)
+            {
+                MapHandler.APPLY_QUEUE.queue(new MapNodeUpdate((MapNodeSource) source, values, true));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the fields of the sources in the world, called before the world saves
+     *
+     * @param world - world
+     */
+    public static void storeFields(World world)
+    {
+        if (ConfigServer.THREAD.PERSIST_FIELDS)
+        {
+            storeFields(world, polledSources);
+            storeFields(world, trackedSources);
+        }
+    }
+
+    private static void storeFields(World world, Set<IDataMapSource> sources)
+    {
+        for (IDataMapSource source : sources)
+        {
+            try
+            {
+                if (source instanceof MapNodeSource && source.doesSourceExist() && source.world() == world)
+                {
+                    //Only store fields that match the current state of the source
+                    final MapSourceInfo info = sourceInfo.get(source);
+                    if (((MapNodeSource) source).isConnected() && ((MapNodeSource) source).getNodeCount() > 0
+                            && !waitingForThread.contains(source) && !MapHandler.APPLY_QUEUE.isPending(source)
+                            && info != null && info.isStateCurrent())
+                    {
+                        MapHandler.FIELD_STORE.store((MapNodeSource) source);
+                    }
+                    //Field from an older save no longer matches, drop it rather than restore it later
+                    else
+                    {
+                        MapHandler.FIELD_STORE.remove(source);
+                    }
+                }
+            }
+            catch (Exception e)
+            {
+                AtomicScience.logger.error("MapDataSources#storeFields() - Unexpected error while storing field, " + source, e);
+            }
+        }
+    }
+
+    /**
+     * Collects the sources within a box around the block
+     * <p>
+     * Only call this from the main thread.
+     *
+     * @param world  - world
+     * @param pos    - block
+     * @param range  - distance on each axis, in blocks
+     * @param type   - type of source to collect, null for all
+     * @param output - list to add the sources to
+     */
+    public static void getSources(World world, BlockPos pos, int range, DataMapType type, List<IDataMapSource> output)
+    {
+        index.getSources(world.provider.getDimension(), pos.getX(), pos.getY(), pos.getZ(), range, type, output);
+    }
+
     public static void addSource(Entity entity)
     {
         //TODO implement
@@ -187,5 +360,25 @@ public final class MapDataSources
     public static void onRemovedFromThread(IDataMapSource source)
     {
         waitingForThread.remove(source);
+
+        //Check again in case it changed while queued
+        markDirty(source);
+    }
+
+    /**
+     * Called when a source changes value, moves or stops being valid,
+     * so it is checked at the end of the tick.
+     * <p>
+     * Only needed for sources that return true for {@link IDataMapSource#isChangeTracked()},
+     * other sources are checked every tick. Safe to call from any thread.
+     *
+     * @param source - source that changed
+     */
+    public static void markDirty(IDataMapSource source)
+    {
+        if (source != null && source.isChangeTracked())
+        {
+            dirtySources.add(source);
+        }
     }
 }
@@ -9,8 +9,10 @@ import com.builtbroken.atomic.map.data.IDataPoolObject;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  *
@@ -18,10 +20,61 @@ import java.util.Map;
  */
 public abstract class MapNodeSource<E, N extends IDataMapNode> implements IDataMapSource
 {
+    /** Handles used by nodes to find their source */
+    public static final SourceHandleTable<IDataMapSource> HANDLES = new SourceHandleTable();
+    /** Handles of sources not extending this class */
+    private static final Map<IDataMapSource, Integer> OTHER_HANDLES = Collections.synchronizedMap(new WeakHashMap());
+
     public HashMap<BlockPos, N> nodes;
 
     private boolean connected = false;
 
+    /** Handle of this source in {@link #HANDLES} */
+    private int handle = SourceHandleTable.NO_HANDLE;
+
+    /**
+     * Gets the handle of this source, registering if needed
+     *
+     * @return handle
+     */
+    public int getHandle()
+    {
+        if (!HANDLES.isHandleOf(handle, this))
+        {
+            handle = HANDLES.register(this);
+        }
+        return handle;
+    }
+
+    /**
+     * Gets the handle of the source, registering if needed
+     *
+     * @param source - source
+     * @return handle, see {@link #HANDLES}
+     */
+    public static int getHandle(IDataMapSource source)
+    {
+        if (source instanceof MapNodeSource)
+        {
+            return ((MapNodeSource) source).getHandle();
+        }
+        else if (source == null)
+        {
+            return SourceHandleTable.NO_HANDLE;
+        }
+        synchronized (OTHER_HANDLES)
+        {
+            final Integer handle = OTHER_HANDLES.get(source);
+            if (handle != null && HANDLES.isHandleOf(handle, source))
+            {
+                return handle;
+            }
+            final int newHandle = HANDLES.register(source);
+            OTHER_HANDLES.put(source, newHandle);
+            return newHandle;
+        }
+    }
+
     public HashMap<BlockPos, N> getCurrentNodes()
     {
         return nodes;
@@ -37,6 +90,40 @@ public abstract class MapNodeSource<E, N extends IDataMapNode> implements IDataM
         return nodes != null && !nodes.isEmpty();
     }
 
+    /**
+     * Checks if the nodes have been added to the map, may be true with no nodes
+     *
+     * @return true if connected
+     */
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * Creates a node owned by this source
+     *
+     * @param value - value of the node
+     * @return new node, not added to the map
+     */
+    public abstract N createNode(int value);
+
+    /**
+     * Gets the value of a node owned by this source
+     *
+     * @param node - node
+     * @return value
+     */
+    public abstract int getNodeValue(N node);
+
+    /**
+     * Sets the value of a node owned by this source
+     *
+     * @param node  - node
+     * @param value - new value
+     */
+    public abstract void setNodeValue(N node, int value);
+
     @Override
     public boolean isStillValid()
     {
@@ -93,15 +180,35 @@ public abstract class MapNodeSource<E, N extends IDataMapNode> implements IDataM
         }
     }
 
+    @Override
+    public void onRemovedFromMap()
+    {
+        disconnectMapData();
+        clearMapData();
+
+        //Nodes are cleared, free the handle for another source
+        HANDLES.release(handle);
+        handle = SourceHandleTable.NO_HANDLE;
+    }
+
     @Override
     public void disconnectMapData()
     {
         connected = false;
         if (getCurrentNodes() != null)
         {
-            for (BlockPos pos : getCurrentNodes().keySet())
+            //Batched so listeners get one change per chunk
+            MapHandler.GLOBAL_DATA_MAP.beginBatch();
+            try
+            {
+                for (BlockPos pos : getCurrentNodes().keySet())
+                {
+                    MapHandler.GLOBAL_DATA_MAP.removeData(world(), pos, this);
+                }
+            }
+            finally
             {
-                MapHandler.GLOBAL_DATA_MAP.removeData(world(), pos, this);
+                MapHandler.GLOBAL_DATA_MAP.endBatch();
             }
         }
     }
@@ -112,10 +219,7 @@ public abstract class MapNodeSource<E, N extends IDataMapNode> implements IDataM
         connected = true;
         if (getCurrentNodes() != null)
         {
-            for (Map.Entry<BlockPos, N> entry : getCurrentNodes().entrySet())
-            {
-                MapHandler.GLOBAL_DATA_MAP.addData(world(), entry.getKey(), entry.getValue());
-            }
+            MapHandler.GLOBAL_DATA_MAP.addData(world(), getCurrentNodes());
         }
     }
 
@@ -0,0 +1,212 @@
+package com.builtbroken.atomic.map.data.node;
+
+import com.builtbroken.atomic.api.map.IDataMapNode;
+import com.builtbroken.atomic.map.MapHandler;
+import com.builtbroken.atomic.map.data.IDataPoolObject;
+import com.builtbroken.atomic.map.data.storage.DataMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Result of a map thread waiting to be applied to the nodes of a source.
+ * <p>
+ * Applied by diffing against the current nodes of the source: nodes at positions still
+ * reached are updated in place, only positions no longer reached are removed and only new
+ * positions are added. Work is split so it can be spread over several ticks, the nodes of
+ * the source always match the map between ticks.
+ */
+public class MapNodeUpdate<N extends IDataMapNode>
+{
+    /** Number of positions applied between time checks */
+    private static final int TIME_CHECK_INTERVAL = 64;
+
+    public final MapNodeSource<?, N> source;
+
+    /** Position to value, -1 to remove */
+    private final HashMap<BlockPos, Integer> values;
+    /** True if values contains all positions, positions missing are removed */
+    private final boolean complete;
+
+    /** Checked before starting, return false to drop the update */
+    public BooleanSupplier startCheck;
+    /** Called once all values are applied */
+    public Runnable onComplete;
+    /** Called once the update leaves the queue, whether applied, dropped or failed */
+    public Runnable onDone;
+
+    /** Set if a newer complete update for the source replaced this update */
+    boolean replaced = false;
+    /** Update queued before this one for the same source */
+    MapNodeUpdate previous;
+
+    //Progress
+    private boolean started = false;
+    private List<BlockPos> removals;
+    private Iterator<Map.Entry<BlockPos, Integer>> iterator;
+
+    /**
+     * @param source   - source to apply the values to
+     * @param values   - position to value, -1 to remove
+     * @param complete - true if the values contain all positions of the source, positions missing are removed
+     */
+    public MapNodeUpdate(MapNodeSource<?, N> source, HashMap<BlockPos, Integer> values, boolean complete)
+    {
+        this.source = source;
+        this.values = values;
+        this.complete = complete;
+    }
+
+    /**
+     * Applies values until done or out of time
+     *
+     * @param deadline - {@link System#nanoTime()} to stop at
+     * @return true if done
+     */
+    public boolean apply(long deadline)
+    {
+        final World world = source.world();
+        if (replaced || world == null)
+        {
+            return true;
+        }
+        else if (!started)
+        {
+            if (startCheck != null && !startCheck.getAsBoolean())
+            {
+                return true;
+            }
+            start();
+        }
+        //Source was removed from the map while the update was spread over several ticks
+        else if (!source.isConnected())
+        {
+            return true;
+        }
+
+        final HashMap<BlockPos, N> nodes = source.getCurrentNodes();
+        final DataMap map = MapHandler.GLOBAL_DATA_MAP.getMap(world, true);
+
+        int count = 0;
+
+        //Remove positions no longer reached
+        while (!removals.isEmpty())
+        {
+            removeNode(map, nodes, removals.remove(removals.size() - 1));
+            if (++count % TIME_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+            {
+                return false;
+            }
+        }
+
+        //Update or add
+        while (iterator.hasNext())
+        {
+            final Map.Entry<BlockPos, Integer> entry = iterator.next();
+            final BlockPos pos = entry.getKey();
+            final int value = entry.getValue();
+            if (value < 0)
+            {
+                removeNode(map, nodes, pos);
+            }
+            else
+            {
+                final N node = nodes.get(pos);
+                if (node == null)
+                {
+                    final N newNode = source.createNode(value);
+                    nodes.put(pos, newNode);
+                    map.addData(pos, newNode);
+                }
+                else if (source.getNodeValue(node) != value)
+                {
+                    source.setNodeValue(node, value);
+                    map.onValueChanged(source.getType(), pos.getX(), pos.getY(), pos.getZ());
+                }
+            }
+
+            if (++count % TIME_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+            {
+                return false;
+            }
+        }
+
+        if (onComplete != null)
+        {
+            onComplete.run();
+        }
+
+        //Trigger source update
+        source.initMapData();
+        return true;
+    }
+
+    private void start()
+    {
+        started = true;
+
+        //Nodes are not in the map, start from nothing
+        if (!source.isConnected() || source.getCurrentNodes() == null)
+        {
+            source.disconnectMapData();
+            source.clearMapData();
+            if (source.getCurrentNodes() == null)
+            {
+                source.setCurrentNodes(new HashMap());
+            }
+            source.connectMapData();
+        }
+
+        removals = new ArrayList();
+        if (complete)
+        {
+            for (BlockPos pos : source.getCurrentNodes().keySet())
+            {
+                if (!values.containsKey(pos))
+                {
+                    removals.add(pos);
+                }
+            }
+        }
+        iterator = values.entrySet().iterator();
+    }
+
+    private void removeNode(DataMap map, HashMap<BlockPos, N> nodes, BlockPos pos)
+    {
+        final N node = nodes.remove(pos);
+        if (node != null)
+        {
+            map.removeData(pos, node);
+            if (node instanceof IDataPoolObject)
+            {
+                ((IDataPoolObject) node).dispose();
+            }
+        }
+    }
+
+    /**
+     * Checks if the update replaces all values of the source
+     *
+     * @return true if complete
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Number of positions in the update
+     *
+     * @return count
+     */
+    public int size()
+    {
+        return values.size();
+    }
+}
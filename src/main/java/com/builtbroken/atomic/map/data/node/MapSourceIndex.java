@@ -0,0 +1,171 @@
+package com.builtbroken.atomic.map.data.node;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Spatial index of map sources, sources are bucketed by the chunk they are in per dimension.
+ * <p>
+ * Used to find the sources near a block without checking every source. Only used from the
+ * main thread.
+ */
+public class MapSourceIndex
+{
+    /** Dimension to chunk to sources */
+    private final HashMap<Integer, HashMap<Long, List<IDataMapSource>>> dimensions = new HashMap();
+    /** Bucket each source was placed in */
+    private final HashMap<IDataMapSource, Bucket> buckets = new HashMap();
+
+    /**
+     * Adds the source, or moves it if it changed chunks since last added
+     *
+     * @param source - source
+     */
+    public void update(IDataMapSource source)
+    {
+        final int dim = source.world().provider.getDimension();
+        final long chunk = ChunkPos.asLong(source.xi() >> 4, source.zi() >> 4);
+
+        final Bucket bucket = buckets.get(source);
+        if (bucket != null)
+        {
+            if (bucket.dim == dim && bucket.chunk == chunk)
+            {
+                return;
+            }
+            remove(source);
+        }
+
+        buckets.put(source, new Bucket(dim, chunk));
+        dimensions.computeIfAbsent(dim, key -> new HashMap())
+                .computeIfAbsent(chunk, key -> new ArrayList(2))
+                .add(source);
+    }
+
+    /**
+     * Removes the source
+     *
+     * @param source - source
+     */
+    public void remove(IDataMapSource source)
+    {
+        final Bucket bucket = buckets.remove(source);
+        if (bucket != null)
+        {
+            final HashMap<Long, List<IDataMapSource>> chunks = dimensions.get(bucket.dim);
+            if (chunks != null)
+            {
+                final List<IDataMapSource> list = chunks.get(bucket.chunk);
+                if (list != null)
+                {
+                    list.remove(source);
+                    if (list.isEmpty())
+                    {
+                        chunks.remove(bucket.chunk);
+                        if (chunks.isEmpty())
+                        {
+                            dimensions.remove(bucket.dim);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the sources within a box around the block
+     *
+     * @param dim    - dimension
+     * @param x      - block
+     * @param y      - block
+     * @param z      - block
+     * @param range  - distance on each axis, in blocks
+     * @param type   - type of source to collect, null for all
+     * @param output - list to add the sources to
+     */
+    public void getSources(int dim, int x, int y, int z, int range, DataMapType type, List<IDataMapSource> output)
+    {
+        final HashMap<Long, List<IDataMapSource>> chunks = dimensions.get(dim);
+        if (chunks == null)
+        {
+            return;
+        }
+
+        final int minChunkX = (x - range) >> 4;
+        final int maxChunkX = (x + range) >> 4;
+        final int minChunkZ = (z - range) >> 4;
+        final int maxChunkZ = (z + range) >> 4;
+
+        //Few sources spread over a large range, checking each bucket is cheaper than each chunk
+        if ((long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > chunks.size())
+        {
+            for (List<IDataMapSource> list : chunks.values())
+            {
+                collect(list, x, y, z, range, type, output);
+            }
+            return;
+        }
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
+        {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++)
+            {
+                final List<IDataMapSource> list = chunks.get(ChunkPos.asLong(chunkX, chunkZ));
+                if (list != null)
+                {
+                    collect(list, x, y, z, range, type, output);
+                }
+            }
+        }
+    }
+
+    private void collect(List<IDataMapSource> list, int x, int y, int z, int range, DataMapType type, List<IDataMapSource> output)
+    {
+        for (IDataMapSource source : list)
+        {
+            if ((type == null || source.getType() == type)
+                    && Math.abs(source.xi() - x) <= range
+                    && Math.abs(source.yi() - y) <= range
+                    && Math.abs(source.zi() - z) <= range)
+            {
+                output.add(source);
+            }
+        }
+    }
+
+    /**
+     * Number of sources in the index
+     *
+     * @return count
+     */
+    public int size()
+    {
+        return buckets.size();
+    }
+
+    /**
+     * Removes all sources
+     */
+    public void clear()
+    {
+        dimensions.clear();
+        buckets.clear();
+    }
+
+    private static final class Bucket
+    {
+        final int dim;
+        final long chunk;
+
+        Bucket(int dim, long chunk)
+        {
+            this.dim = dim;
+            this.chunk = chunk;
+        }
+    }
+}
@@ -13,6 +13,9 @@ class MapSourceInfo
 
     private NBTTagCompound saveState;
 
+    /** Set once the field saved with the world was checked for the source */
+    public boolean restoreChecked = false;
+
     public MapSourceInfo(IDataMapSource source)
     {
         this.source = source;
@@ -28,4 +31,15 @@ class MapSourceInfo
     {
         return source.shouldQueueForUpdate(saveState);
     }
+
+    /**
+     * Checks if the source is in the same state as when last queued
+     *
+     * @return true if not changed
+     */
+    public boolean isStateCurrent()
+    {
+        final NBTTagCompound current = source.getSaveState();
+        return saveState != null ? saveState.equals(current) : current == null;
+    }
 }
@@ -0,0 +1,185 @@
+package com.builtbroken.atomic.map.data.node;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table handing out int handles for objects, used so nodes can point at their source
+ * without each node holding its own {@link WeakReference}.
+ * <p>
+ * Each handle is a slot index tagged with the generation of the slot. Slots are reused once
+ * released or once the object is garbage collected, and reuse moves the generation forward so
+ * old handles resolve to null rather than to the new object. Objects are held weakly, only
+ * one reference per object rather than per node.
+ * <p>
+ * Lookups do not lock. Registering and releasing are synchronized. The generation is stored in the
+ * slot object and the slot is published with a single reference write, so a lookup never sees a new
+ * object paired with an old generation. Released slots are cleared so a lookup on a table array
+ * replaced by a resize can't resolve them either.
+ */
+public class SourceHandleTable<T>
+{
+    /** Handle that never resolves */
+    public static final int NO_HANDLE = 0;
+
+    private static final int SLOT_BITS = 20;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (32 - SLOT_BITS)) - 1;
+
+    /** Object per slot */
+    private volatile AtomicReferenceArray<Slot<T>> slots = new AtomicReferenceArray(64);
+    /** Last generation per slot, starts at 1 so a handle is never {@link #NO_HANDLE}, guarded by the lock */
+    private int[] generations = new int[64];
+
+    /** Released slots waiting to be reused */
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    /** Next slot never used */
+    private int nextSlot = 0;
+
+    /** Slots of collected objects */
+    private final ReferenceQueue<T> collected = new ReferenceQueue();
+
+    /**
+     * Registers the object
+     *
+     * @param object - object to register
+     * @return handle
+     */
+    public synchronized int register(T object)
+    {
+        reclaimCollected();
+
+        final int slot;
+        if (freeCount > 0)
+        {
+            slot = freeSlots[--freeCount];
+        }
+        else
+        {
+            if (nextSlot > SLOT_MASK)
+            {
+                throw new IllegalStateException("SourceHandleTable: out of slots, " + nextSlot + " objects registered");
+            }
+            slot = nextSlot++;
+            if (slot >= slots.length())
+            {
+                final AtomicReferenceArray<Slot<T>> grown = new AtomicReferenceArray(slots.length() * 2);
+                for (int i = 0; i < slots.length(); i++)
+                {
+                    grown.set(i, slots.get(i));
+                }
+                generations = Arrays.copyOf(generations, grown.length());
+                slots = grown;
+            }
+        }
+
+        int generation = (generations[slot] + 1) & GENERATION_MASK;
+        if (generation == 0)
+        {
+            generation = 1;
+        }
+        generations[slot] = generation;
+        slots.set(slot, new Slot(object, slot, generation, collected));
+        return generation << SLOT_BITS | slot;
+    }
+
+    /**
+     * Releases the handle so its slot can be reused. Does nothing if the handle is no longer valid.
+     *
+     * @param handle - handle
+     */
+    public synchronized void release(int handle)
+    {
+        final int slot = handle & SLOT_MASK;
+        if (get(handle) != null)
+        {
+            slots.get(slot).clear();
+            slots.set(slot, null);
+            free(slot);
+        }
+    }
+
+    /**
+     * Gets the object for the handle
+     *
+     * @param handle - handle
+     * @return object, or null if released, collected or never registered
+     */
+    public T get(int handle)
+    {
+        final int slot = handle & SLOT_MASK;
+        final AtomicReferenceArray<Slot<T>> slots = this.slots;
+        if (handle == NO_HANDLE || slot >= slots.length())
+        {
+            return null;
+        }
+
+        final Slot<T> ref = slots.get(slot);
+        if (ref == null || ref.generation != handle >>> SLOT_BITS)
+        {
+            return null;
+        }
+        return ref.get();
+    }
+
+    /**
+     * Checks if the handle still points to the object
+     *
+     * @param handle - handle
+     * @param object - object
+     * @return true if valid
+     */
+    public boolean isHandleOf(int handle, T object)
+    {
+        return object != null && get(handle) == object;
+    }
+
+    /**
+     * Number of slots in use, including slots of collected objects not yet reclaimed
+     *
+     * @return count
+     */
+    public synchronized int size()
+    {
+        return nextSlot - freeCount;
+    }
+
+    private void reclaimCollected()
+    {
+        Slot ref;
+        while ((ref = (Slot) collected.poll()) != null)
+        {
+            //Only free if the slot was not already released and reused
+            if (slots.get(ref.slot) == ref)
+            {
+                slots.set(ref.slot, null);
+                free(ref.slot);
+            }
+        }
+    }
+
+    private void free(int slot)
+    {
+        if (freeCount == freeSlots.length)
+        {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private static class Slot<T> extends WeakReference<T>
+    {
+        final int slot;
+        final int generation;
+
+        Slot(T referent, int slot, int generation, ReferenceQueue<T> queue)
+        {
+            super(referent, queue);
+            this.slot = slot;
+            this.generation = generation;
+        }
+    }
+}
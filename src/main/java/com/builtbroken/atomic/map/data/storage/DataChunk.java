@@ -7,9 +7,18 @@ import com.builtbroken.atomic.api.map.IDataMapSource;
 import com.builtbroken.atomic.map.data.MapValueConsumer;
 
 import java.util.ArrayList;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Single chunk of data
+ * <p>
+ * Layers are stored in sections of 16 layers that are only created once a layer in them is used,
+ * as fields tend to cover a few Y levels of each chunk they touch. A bit mask of the created
+ * sections lets scans skip empty parts of the chunk without touching the arrays.
+ * <p>
+ * Changes are made from the main thread only. Values can be read from any thread with
+ * {@link #readValue(int, int, int, DataMapType)}, which validates the read against an
+ * optimistic stamp and retries under a read lock if a change happened during the read.
  *
  *
  * Created by Dark(DarkGuardsman, Robert) on 4/24/2018.
@@ -27,20 +36,34 @@ public class DataChunk
     /** Number of world ticks this chunk has been in the unload queue */
     public int unloadTick = 0;
 
-    /** Last time this chunk was scanned for issues */
-    public Long lastScanTime = System.currentTimeMillis();
+    /** Changed since the world chunk was last marked to save, see {@link DataMap#markWorldChunks()} */
+    protected boolean dirty = false;
 
-    /** Array of active layers, modified by yStart */
-    protected DataLayer[] layers = new DataLayer[256];
+    /** Last time this chunk was scanned for issues, see {@link DataMapMaintenance} */
+    public long lastScanTime = System.currentTimeMillis();
 
-    /** Starting point of the layer array as a Y level */
+    /** Sections of 16 layers, index is (y - yStart) >> 4. Sections are created on first use */
+    protected final DataLayer[][] sections;
+
+    /** Bit set for each section that exists, limits the chunk to 64 sections */
+    protected long sectionMask = 0;
+
+    /** Starting point of the layers as a Y level */
     protected int yStart;
 
+    /** Guards changes against reads from other threads */
+    private final StampedLock lock = new StampedLock();
+    /** Stamp of the current write, main thread only */
+    private long writeStamp;
+    /** Depth of nested writes, main thread only */
+    private int writeDepth = 0;
+
     public DataChunk(int dimension, int xPosition, int zPosition)
     {
         this.dimension = dimension;
         this.xPosition = xPosition;
         this.zPosition = zPosition;
+        this.sections = new DataLayer[(getChunkHeight() + 15) >> 4][];
     }
 
     protected int getChunkHeight()
@@ -61,7 +84,15 @@ public class DataChunk
         //Keep inside of chunk
         if (y >= 0 && y < getChunkHeight())
         {
-            getLayer(y).addData(cx, cz, node);
+            beginWrite();
+            try
+            {
+                getLayer(y).addData(cx, cz, node);
+            }
+            finally
+            {
+                endWrite();
+            }
         }
         else if (AtomicScience.runningAsDev)
         {
@@ -80,9 +111,17 @@ public class DataChunk
     public boolean removeData(int cx, int y, int cz, IDataMapNode node)
     {
         //Keep inside of chunk
-        if (y >= 0 && y < getChunkHeight())
+        if (y >= 0 && y < getChunkHeight() && hasLayer(y))
         {
-            return getLayer(y).removeData(cx, cz, node);
+            beginWrite();
+            try
+            {
+                return getLayer(y).removeData(cx, cz, node);
+            }
+            finally
+            {
+                endWrite();
+            }
         }
         else if (AtomicScience.runningAsDev)
         {
@@ -102,9 +141,17 @@ public class DataChunk
     public boolean removeData(int cx, int y, int cz, IDataMapSource source)
     {
         //Keep inside of chunk
-        if (y >= 0 && y < getChunkHeight())
+        if (y >= 0 && y < getChunkHeight() && hasLayer(y))
         {
-            return getLayer(y).removeData(cx, cz, source);
+            beginWrite();
+            try
+            {
+                return getLayer(y).removeData(cx, cz, source);
+            }
+            finally
+            {
+                endWrite();
+            }
         }
         else if (AtomicScience.runningAsDev)
         {
@@ -133,6 +180,197 @@ public class DataChunk
         return null;
     }
 
+    /**
+     * Gets the combined value of the type from the chunk
+     *
+     * @param cx   - location (0-15)
+     * @param y    - location (0-255)
+     * @param cz   - location (0-15)
+     * @param type - type of value
+     * @return value stored
+     */
+    public int getValue(int cx, int y, int cz, DataMapType type)
+    {
+        if (y >= 0 && y < getChunkHeight() && hasLayer(y))
+        {
+            return getLayer(y).getValue(cx, cz, type);
+        }
+        return 0;
+    }
+
+    /**
+     * Called after a node stored in the chunk changed its value in place
+     *
+     * @param cx - location (0-15)
+     * @param y  - location (0-255)
+     * @param cz - location (0-15)
+     */
+    public void onValueChanged(int cx, int y, int cz)
+    {
+        if (y >= 0 && y < getChunkHeight() && hasLayer(y))
+        {
+            beginWrite();
+            try
+            {
+                getLayer(y).onValueChanged(cx, cz);
+            }
+            finally
+            {
+                endWrite();
+            }
+        }
+    }
+
+    /**
+     * Gets the combined value of the type from the chunk, safe to call from any thread
+     *
+     * @param cx   - location (0-15)
+     * @param y    - location (0-255)
+     * @param cz   - location (0-15)
+     * @param type - type of value
+     * @return value stored
+     */
+    public int readValue(int cx, int y, int cz, DataMapType type)
+    {
+        long stamp = lock.tryOptimisticRead();
+        int value = readValueUnlocked(cx, y, cz, type);
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                value = readValueUnlocked(cx, y, cz, type);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reads the value without creating layers or failing if the chunk changes during the read
+     */
+    private int readValueUnlocked(int cx, int y, int cz, DataMapType type)
+    {
+        final int index = y - yStart;
+        if (index >= 0 && (index >> 4) < sections.length)
+        {
+            final DataLayer[] section = sections[index >> 4];
+            if (section != null)
+            {
+                final DataLayer layer = section[index & 15];
+                if (layer != null)
+                {
+                    return layer.getValue(cx, cz, type);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copies the values of the type inside the box into the array, safe to call from any thread
+     * <p>
+     * Each value is written to {@code out[offset + (y - minY) * strideY + (cz - minCZ) * strideZ + (cx - minCX)]},
+     * positions without a value are set to zero.
+     *
+     * @param minCX   - box start (0-15)
+     * @param minY    - box start
+     * @param minCZ   - box start (0-15)
+     * @param maxCX   - box end, inclusive (0-15)
+     * @param maxY    - box end, inclusive
+     * @param maxCZ   - box end, inclusive (0-15)
+     * @param type    - type of value
+     * @param out     - array to fill
+     * @param offset  - index in the array of the box start
+     * @param strideZ - array step per z
+     * @param strideY - array step per y
+     * @return sum of the values copied
+     */
+    public long readRegion(int minCX, int minY, int minCZ, int maxCX, int maxY, int maxCZ, DataMapType type,
+                           int[] out, int offset, int strideZ, int strideY)
+    {
+        long stamp = lock.tryOptimisticRead();
+        long sum = readRegionUnlocked(minCX, minY, minCZ, maxCX, maxY, maxCZ, type, out, offset, strideZ, strideY);
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                sum = readRegionUnlocked(minCX, minY, minCZ, maxCX, maxY, maxCZ, type, out, offset, strideZ, strideY);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+        return sum;
+    }
+
+    private long readRegionUnlocked(int minCX, int minY, int minCZ, int maxCX, int maxY, int maxCZ, DataMapType type,
+                                    int[] out, int offset, int strideZ, int strideY)
+    {
+        long sum = 0;
+        for (int y = minY; y <= maxY; y++)
+        {
+            final int rowStart = offset + (y - minY) * strideY;
+
+            //Resolve section and layer once per y level
+            final int index = y - yStart;
+            int[] values = null;
+            if (index >= 0 && (index >> 4) < sections.length)
+            {
+                final DataLayer[] section = sections[index >> 4];
+                if (section != null)
+                {
+                    final DataLayer layer = section[index & 15];
+                    if (layer != null)
+                    {
+                        values = layer.getValues(type);
+                    }
+                }
+            }
+
+            for (int cz = minCZ; cz <= maxCZ; cz++)
+            {
+                final int outIndex = rowStart + (cz - minCZ) * strideZ - minCX;
+                for (int cx = minCX; cx <= maxCX; cx++)
+                {
+                    final int value = values != null ? values[cx * 16 + cz] : 0;
+                    out[outIndex + cx] = value;
+                    sum += value;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Marks the start of a change, blocks reads from other threads until {@link #endWrite()}.
+     * <p>
+     * Main thread only, can be nested.
+     */
+    public void beginWrite()
+    {
+        if (writeDepth++ == 0)
+        {
+            writeStamp = lock.writeLock();
+        }
+    }
+
+    /**
+     * Marks the end of a change, see {@link #beginWrite()}
+     */
+    public void endWrite()
+    {
+        if (writeDepth > 0 && --writeDepth == 0)
+        {
+            lock.unlockWrite(writeStamp);
+        }
+    }
+
     /**
      * Checks if there is a layer for the y level
      *
@@ -141,7 +379,7 @@ public class DataChunk
      */
     protected boolean hasLayer(int y)
     {
-        return getLayers() != null && y >= getYStart() && y <= getLayerEnd() && getLayers()[getIndex(y)] != null;
+        return y >= getYStart() && y <= getLayerEnd() && getLayerAt(getIndex(y)) != null;
     }
 
     /**
@@ -151,7 +389,7 @@ public class DataChunk
      */
     public int getLayerEnd()
     {
-        return getYStart() + getLayers().length - 1;
+        return getYStart() + sections.length * 16 - 1;
     }
 
     /**
@@ -162,26 +400,130 @@ public class DataChunk
     protected void removeLayer(int y)
     {
         int index = getIndex(y);
-        if (index >= 0 && index < getLayers().length)
+        if (index >= 0 && (index >> 4) < sections.length)
+        {
+            beginWrite();
+            try
+            {
+                clearLayer(index);
+            }
+            finally
+            {
+                endWrite();
+            }
+        }
+    }
+
+    /**
+     * Removes the layer at the index, dropping its section if no layers are left in it
+     *
+     * @param index - layer index, see {@link #getIndex(int)}
+     */
+    private void clearLayer(int index)
+    {
+        final DataLayer[] section = sections[index >> 4];
+        if (section != null)
         {
-            getLayers()[index] = null;
+            section[index & 15] = null;
+            for (DataLayer layer : section)
+            {
+                if (layer != null)
+                {
+                    return;
+                }
+            }
+            sections[index >> 4] = null;
+            sectionMask &= ~(1L << (index >> 4));
         }
     }
 
     /**
-     * Called to get a layer
+     * Called to get a layer, creating it if missing
      *
      * @param y
      * @return
      */
     public DataLayer getLayer(int y)
     {
+        final int index = getIndex(y);
+
+        //If section is null, create section
+        DataLayer[] section = sections[index >> 4];
+        if (section == null)
+        {
+            section = sections[index >> 4] = new DataLayer[16];
+            sectionMask |= 1L << (index >> 4);
+        }
+
         //If layer is null, create layer
-        if (getLayers()[getIndex(y)] == null)
+        if (section[index & 15] == null)
         {
-            getLayers()[getIndex(y)] = new DataLayer(this, y);
+            section[index & 15] = new DataLayer(this, y);
         }
-        return getLayers()[getIndex(y)];
+        return section[index & 15];
+    }
+
+    /**
+     * Gets the layer at the index without creating it
+     *
+     * @param index - layer index, see {@link #getIndex(int)}
+     * @return layer or null if not created
+     */
+    public DataLayer getLayerAt(int index)
+    {
+        if (index >= 0 && (index >> 4) < sections.length)
+        {
+            final DataLayer[] section = sections[index >> 4];
+            if (section != null)
+            {
+                return section[index & 15];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the next layer that exists, skipping sections that were never created
+     *
+     * @param from - layer index to start at, inclusive
+     * @return layer index, or -1 if there are no more layers
+     */
+    public int nextLayerIndex(int from)
+    {
+        if (from < 0)
+        {
+            from = 0;
+        }
+
+        int sectionIndex = from >> 4;
+        while (sectionIndex < sections.length)
+        {
+            //Jump to the next section that exists
+            final long remaining = sectionMask & (-1L << sectionIndex);
+            if (remaining == 0)
+            {
+                return -1;
+            }
+            final int next = Long.numberOfTrailingZeros(remaining);
+            if (next != sectionIndex)
+            {
+                sectionIndex = next;
+                from = next << 4;
+            }
+
+            final DataLayer[] section = sections[sectionIndex];
+            for (int i = from & 15; i < 16; i++)
+            {
+                if (section[i] != null)
+                {
+                    return (sectionIndex << 4) | i;
+                }
+            }
+
+            sectionIndex++;
+            from = sectionIndex << 4;
+        }
+        return -1;
     }
 
     /**
@@ -195,11 +537,6 @@ public class DataChunk
         return y - getYStart();
     }
 
-    public DataLayer[] getLayers()
-    {
-        return layers;
-    }
-
     public int getYStart()
     {
         return yStart;
@@ -207,9 +544,9 @@ public class DataChunk
 
     public boolean hasData()
     {
-        for (DataLayer layer : getLayers())
+        for (int index = nextLayerIndex(0); index >= 0; index = nextLayerIndex(index + 1))
         {
-            if (layer != null && !layer.isEmpty())
+            if (!getLayerAt(index).isEmpty())
             {
                 return true;
             }
@@ -219,10 +556,38 @@ public class DataChunk
 
     public void checkForIssues()
     {
-        for (int i = 0; i < getLayers().length; i++)
+        beginWrite();
+        try
         {
-            DataLayer layer = getLayers()[i];
-            if (layer != null)
+            checkLayers();
+        }
+        finally
+        {
+            endWrite();
+        }
+    }
+
+    private void checkLayers()
+    {
+        for (int index = nextLayerIndex(0); index >= 0; index = nextLayerIndex(index + 1))
+        {
+            checkLayer(index);
+        }
+    }
+
+    /**
+     * Checks a single layer for issues, removing it if empty
+     *
+     * @param index - layer index, see {@link #getIndex(int)}
+     * @return bytes freed by removing the layer, 0 if the layer was kept or did not exist
+     */
+    public long checkLayer(int index)
+    {
+        final DataLayer layer = getLayerAt(index);
+        if (layer != null)
+        {
+            beginWrite();
+            try
             {
                 //Allow layer to free up data and correct problems
                 layer.checkForIssues();
@@ -230,32 +595,35 @@ public class DataChunk
                 //If layer is empty remove to save memory
                 if (layer.isEmpty())
                 {
-                    getLayers()[i] = null;
+                    clearLayer(index);
+                    return layer.getMemoryEstimate();
                 }
             }
+            finally
+            {
+                endWrite();
+            }
         }
+        return 0;
     }
 
     public final void forEachValue(MapValueConsumer consumer, DataMapType type)
     {
-        for (DataLayer layer : getLayers())
+        for (int index = nextLayerIndex(0); index >= 0; index = nextLayerIndex(index + 1))
         {
-            if (layer != null && layer.blocksUsed > 0)
+            final DataLayer layer = getLayerAt(index);
+            if (layer.blocksUsed > 0)
             {
                 for (int cx = 0; cx < 16; cx++)
                 {
                     for (int cz = 0; cz < 16; cz++)
                     {
-                        ArrayList<IDataMapNode> list = layer.getData(cx, cz);
-                        if (list != null && !list.isEmpty())
+                        int value = layer.getValue(cx, cz, type);
+                        if (value > 0)
                         {
-                            int value = type.getValue(list);
-                            if (value > 0)
-                            {
-                                int x = cx + xPosition * 16;
-                                int z = cz + xPosition * 16;
-                                consumer.accept(dimension, x, layer.y_index, z, value);
-                            }
+                            int x = cx + xPosition * 16;
+                            int z = cz + zPosition * 16;
+                            consumer.accept(dimension, x, layer.y_index, z, value);
                         }
                     }
                 }
@@ -4,13 +4,19 @@ import com.builtbroken.atomic.AtomicScience;
 import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.api.map.IDataMapNode;
 import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.map.data.node.DataMapNode;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Single Y level of data stores in the world
+ * <p>
+ * Values are stored summed per {@link DataMapType} in flat arrays, so reads never walk nodes. Nodes
+ * are only kept to remove them again by identity or source. Most positions hold a single node, so a
+ * slot stores that node directly and only switches to an array once a second node is added.
  *
  *
  * Created by Dark(DarkGuardsman, Robert) on 4/24/2018.
@@ -22,44 +28,99 @@ public class DataLayer
 
     public final DataChunk host;
 
-    /** Stored data in this layer */
-    private final ArrayList<IDataMapNode>[] data;
+    /** Nodes per slot, either a single {@link IDataMapNode} or an {@link IDataMapNode}[] when several share the slot. Created on first add */
+    private Object[] nodes;
 
-    /** Number of non-zero slots, used to track if layer is empty */
+    /** Packed sum of node values per {@link DataMapType#ordinal()}, each type array is only created once a value is set */
+    private final int[][] values = new int[DataMapType.values().length][];
+
+    /** Number of nodes stored, used to track if layer is empty */
     public int blocksUsed = 0;
 
     public DataLayer(DataChunk host, int y_index)
     {
         this.y_index = y_index;
         this.host = host;
-        this.data = new ArrayList[16 * 16];
+    }
+
+    /**
+     * Gets the combined value of all nodes of the type
+     * <p>
+     * Reads from the packed value array so no nodes are iterated
+     *
+     * @param x    - location
+     * @param z    - location
+     * @param type - type of value
+     * @return value, or zero if nothing is stored
+     */
+    public int getValue(int x, int z, DataMapType type)
+    {
+        final int index = index(x, z);
+        if (index >= 0)
+        {
+            final int[] typeValues = values[type.ordinal()];
+            if (typeValues != null)
+            {
+                return typeValues[index];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the packed values of the type, indexed by {@link #index(int, int)}
+     *
+     * @param type - type of value
+     * @return values, or null if no value of the type was ever set. Do not modify.
+     */
+    int[] getValues(DataMapType type)
+    {
+        return values[type.ordinal()];
     }
 
     /**
      * Gets the data from the layer
+     * <p>
+     * Nodes are not stored as a list, so a new list is created each call. Changes
+     * to the list are not stored.
      *
      * @param x - location
      * @param z - location
-     * @return value
+     * @return nodes, or null if none are stored
      */
     public ArrayList<IDataMapNode> getData(int x, int z)
     {
-        int index = index(x, z);
-        if (index >= 0)
+        final int index = index(x, z);
+        final Object slot = index >= 0 && nodes != null ? nodes[index] : null;
+        if (slot instanceof IDataMapNode)
+        {
+            final ArrayList<IDataMapNode> list = new ArrayList(1);
+            list.add((IDataMapNode) slot);
+            return list;
+        }
+        else if (slot != null)
         {
-            return data[index];
+            return new ArrayList(Arrays.asList((IDataMapNode[]) slot));
         }
         return null;
     }
 
     public void forEach(int x, int z, DataMapType type, Consumer<IDataMapNode> consumer)
     {
-        ArrayList<IDataMapNode> list = getData(x, z);
-        if (list != null)
+        final int index = index(x, z);
+        final Object slot = index >= 0 && nodes != null ? nodes[index] : null;
+        if (slot instanceof IDataMapNode)
         {
-            for (IDataMapNode node : list)
+            if (((IDataMapNode) slot).getType() == type)
+            {
+                consumer.accept((IDataMapNode) slot);
+            }
+        }
+        else if (slot != null)
+        {
+            for (IDataMapNode node : (IDataMapNode[]) slot)
             {
-                if (node != null && node.getType() == type)
+                if (node.getType() == type)
                 {
                     consumer.accept(node);
                 }
@@ -79,25 +140,27 @@ public class DataLayer
         int count = 0;
         for (int i = 0; i < 256; i++)
         {
-            count += removeData(source, data[i]);
+            count += removeNodes(i, node -> source.equals(node.getSource()));
         }
-        blocksUsed -= count;
         return count > 0;
     }
 
     /**
-     * Called to remove nodes from source at the position
+     * Called to remove nodes from source at the position, invalid nodes found are removed as well
      *
      * @param x      - location
      * @param z      - location
      * @param source - source of nodes
-     * @return true if a node was removed
+     * @return true if a node of the source was removed
      */
     public boolean removeData(int x, int z, IDataMapSource source)
     {
-        int count = removeData(source, getData(x, z));
-        blocksUsed -= count;
-        return count > 0;
+        final int index = index(x, z);
+        if (index >= 0)
+        {
+            return removeNodes(index, node -> source.equals(node.getSource())) > 0;
+        }
+        return false;
     }
 
     /**
@@ -110,36 +173,99 @@ public class DataLayer
      */
     public boolean removeData(int x, int z, IDataMapNode node)
     {
-        ArrayList<IDataMapNode> list = getData(x, z);
-        if (list != null && list.remove(node))
+        final int index = index(x, z);
+        if (index >= 0 && node != null)
         {
-            blocksUsed -= 1;
-            return true;
+            return removeNodes(index, node::equals) > 0;
         }
         return false;
     }
 
-    private int removeData(IDataMapSource source, ArrayList<IDataMapNode> list)
+    /**
+     * Removes nodes from the slot, invalid nodes found are removed as well
+     *
+     * @param index  - slot index
+     * @param filter - nodes to remove
+     * @return number of nodes removed that matched the filter
+     */
+    private int removeNodes(int index, Predicate<IDataMapNode> filter)
     {
-        int count = 0;
-        if (list != null && !list.isEmpty())
+        final Object slot = nodes != null ? nodes[index] : null;
+        if (slot == null)
+        {
+            return 0;
+        }
+
+        int matched = 0;
+        int removed = 0;
+        boolean recalculate = false;
+        if (slot instanceof IDataMapNode)
+        {
+            final IDataMapNode node = (IDataMapNode) slot;
+            if (filter.test(node))
+            {
+                matched++;
+                removed++;
+            }
+            else if (!node.isNodeValid())
+            {
+                removed++;
+            }
+
+            if (removed > 0)
+            {
+                nodes[index] = null;
+                recalculate = !removeValue(index, node);
+            }
+        }
+        else
         {
-            Iterator<IDataMapNode> it = list.iterator();
-            while (it.hasNext())
+            //Shift kept nodes to the front
+            final IDataMapNode[] list = (IDataMapNode[]) slot;
+            int kept = 0;
+            for (IDataMapNode node : list)
             {
-                IDataMapNode node = it.next();
-                if (node == null || !node.isNodeValid())
+                final boolean match = filter.test(node);
+                if (!match && node.isNodeValid())
                 {
-                    it.remove();
+                    list[kept++] = node;
                 }
-                else if (source.equals(node.getSource()))
+                else
                 {
-                    it.remove();
-                    count++;
+                    if (match)
+                    {
+                        matched++;
+                    }
+                    recalculate |= !removeValue(index, node);
                 }
             }
+
+            removed = list.length - kept;
+            if (kept == 0)
+            {
+                nodes[index] = null;
+            }
+            else if (kept == 1)
+            {
+                nodes[index] = list[0];
+            }
+            else if (removed > 0)
+            {
+                nodes[index] = Arrays.copyOf(list, kept);
+            }
+        }
+
+        if (removed > 0)
+        {
+            blocksUsed -= removed;
+
+            //Only needed for nodes that do not track their own value
+            if (recalculate)
+            {
+                recalculateValues(index);
+            }
         }
-        return count;
+        return matched;
     }
 
     /**
@@ -154,14 +280,37 @@ public class DataLayer
         final int index = index(x, z);
         if (index >= 0)
         {
-            //Check if array list is null, set if null
-            if (data[index] == null)
+            if (nodes == null)
+            {
+                nodes = new Object[16 * 16];
+            }
+
+            //Add data, slot only becomes an array once shared
+            final Object slot = nodes[index];
+            if (slot == null)
+            {
+                nodes[index] = node;
+            }
+            else if (slot instanceof IDataMapNode)
+            {
+                nodes[index] = new IDataMapNode[]{(IDataMapNode) slot, node};
+            }
+            else
             {
-                data[index] = new ArrayList();
+                final IDataMapNode[] list = (IDataMapNode[]) slot;
+                final IDataMapNode[] grown = Arrays.copyOf(list, list.length + 1);
+                grown[list.length] = node;
+                nodes[index] = grown;
             }
 
-            //Add data
-            data[index].add(node);
+            //Add value to packed storage
+            addValue(index, node.getType(), node.getType().getValue(node));
+
+            //Let node know where it is stored so it can push value changes
+            if (node instanceof DataMapNode)
+            {
+                ((DataMapNode) node).onAddedToLayer(this, index);
+            }
 
             //Increase block count
             blocksUsed++;
@@ -172,6 +321,76 @@ public class DataLayer
         }
     }
 
+    /**
+     * Called when a node at the position changed its value in place, so the packed values are summed again
+     * <p>
+     * Not needed for {@link DataMapNode}s as those push their own changes
+     *
+     * @param x - location
+     * @param z - location
+     */
+    public void onValueChanged(int x, int z)
+    {
+        final int index = index(x, z);
+        if (index >= 0 && nodes != null && nodes[index] != null)
+        {
+            recalculateValues(index);
+        }
+    }
+
+    /**
+     * Called by a {@link DataMapNode} stored in this layer when its value changes
+     *
+     * @param index - slot index, see {@link #index(int, int)}
+     * @param type  - type of value
+     * @param delta - change in value
+     */
+    public void onNodeValueChanged(int index, DataMapType type, int delta)
+    {
+        if (delta != 0)
+        {
+            host.beginWrite();
+            try
+            {
+                addValue(index, type, delta);
+            }
+            finally
+            {
+                host.endWrite();
+            }
+        }
+    }
+
+    private void addValue(int index, DataMapType type, int value)
+    {
+        if (values[type.ordinal()] == null)
+        {
+            if (value == 0)
+            {
+                return;
+            }
+            values[type.ordinal()] = new int[16 * 16];
+        }
+        values[type.ordinal()][index] += value;
+    }
+
+    /**
+     * Removes the value of the node from the packed storage
+     *
+     * @param index - slot index
+     * @param node  - node removed
+     * @return true if removed, false if the node does not track its value and the slot needs recalculated
+     */
+    private boolean removeValue(int index, IDataMapNode node)
+    {
+        if (node instanceof DataMapNode && ((DataMapNode) node).getLayer() == this)
+        {
+            addValue(index, node.getType(), -((DataMapNode) node).onRemovedFromLayer());
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Index of the x z location
      *
@@ -201,29 +420,84 @@ public class DataLayer
         return blocksUsed <= 0;
     }
 
-    public void checkForIssues()
+    /**
+     * Rough number of bytes used by the layer, assumes compressed references. Only
+     * used to report memory freed by the map scan.
+     *
+     * @return size in bytes
+     */
+    public long getMemoryEstimate()
     {
-        for (int i = 0; i < data.length; i++)
+        //Object headers, value array of arrays
+        long size = 16 + (16 + values.length * 4);
+        for (int[] typeValues : values)
         {
-            if (data[i] != null)
+            if (typeValues != null)
             {
-                //Clear bad nodes
-                Iterator<IDataMapNode> it = data[i].iterator();
-                while (it.hasNext())
-                {
-                    IDataMapNode node = it.next();
-                    if (!node.isNodeValid())
-                    {
-                        it.remove();
-                    }
-                }
+                size += 16 + typeValues.length * 4;
+            }
+        }
 
-                //If empty clear slot
-                if (data[i].size() <= 0)
+        //Slot array, plus an array for each slot shared by several nodes
+        if (nodes != null)
+        {
+            size += 16 + nodes.length * 4;
+            for (Object slot : nodes)
+            {
+                if (slot instanceof IDataMapNode[])
                 {
-                    data[i] = null;
+                    size += 16 + ((IDataMapNode[]) slot).length * 4;
                 }
             }
         }
+        return size;
+    }
+
+    public void checkForIssues()
+    {
+        if (nodes == null)
+        {
+            return;
+        }
+        for (int i = 0; i < nodes.length; i++)
+        {
+            //Clear bad nodes, empty slots are cleared with them
+            removeNodes(i, node -> false);
+        }
+    }
+
+    /**
+     * Rebuilds the packed values for the index from the stored nodes
+     * <p>
+     * Only used on removal of nodes that do not extend {@link DataMapNode}, as
+     * those can not report the value they added to the layer.
+     *
+     * @param index - slot index, see {@link #index(int, int)}
+     */
+    protected void recalculateValues(int index)
+    {
+        //Zero out current values
+        for (int[] typeValues : values)
+        {
+            if (typeValues != null)
+            {
+                typeValues[index] = 0;
+            }
+        }
+
+        //Sum remaining nodes
+        final Object slot = nodes != null ? nodes[index] : null;
+        if (slot instanceof IDataMapNode)
+        {
+            final IDataMapNode node = (IDataMapNode) slot;
+            addValue(index, node.getType(), node.getType().getValue(node));
+        }
+        else if (slot != null)
+        {
+            for (IDataMapNode node : (IDataMapNode[]) slot)
+            {
+                addValue(index, node.getType(), node.getType().getValue(node));
+            }
+        }
     }
 }
@@ -4,6 +4,7 @@ import com.builtbroken.atomic.AtomicScience;
 import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.api.map.IDataMapNode;
 import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.lib.collection.LongObjectMap;
 import com.builtbroken.atomic.map.MapSystem;
 import com.builtbroken.atomic.map.events.MapSystemEvent;
 import net.minecraft.util.math.BlockPos;
@@ -29,9 +30,28 @@ public class DataMap
     public final int dim;
 
     /** Chunks currently loaded and actively being used */
-    protected final HashMap<Long, DataChunk> chunksCurrentlyLoaded = new HashMap();
+    protected final LongObjectMap<DataChunk> chunksCurrentlyLoaded = new LongObjectMap(64);
     /** Chunks waiting to be unloaded from the map. Delayed to reduce memory churn and chunk loading spam */
-    protected final HashMap<Long, DataChunk> chunksWaitingToUnload = new HashMap();
+    protected final LongObjectMap<DataChunk> chunksWaitingToUnload = new LongObjectMap();
+
+    /** Last chunk found in {@link #chunksCurrentlyLoaded}, most lookups in a row hit the same chunk */
+    protected volatile DataChunk lastChunk;
+
+    /** Copy of {@link #chunksCurrentlyLoaded} for reads from other threads, replaced rather than changed */
+    protected volatile LongObjectMap<DataChunk> chunksForRead = new LongObjectMap();
+    /** Set when {@link #chunksCurrentlyLoaded} changed since the copy was last published */
+    protected volatile boolean publishPending = false;
+    /** Guards changes to {@link #chunksCurrentlyLoaded} against reads from other threads while a publish is pending */
+    protected final Object loadedLock = new Object();
+
+    /** Positions changed during a batch, chunk index -> changes */
+    protected final LongObjectMap<ChunkChanges> batchChanges = new LongObjectMap();
+
+    /** Chunks changed since their world chunks were last marked to save, see {@link #markWorldChunks()} */
+    protected final List<DataChunk> dirtyChunks = new ArrayList();
+
+    /** Scans loaded chunks for issues a few layers each tick */
+    public final DataMapMaintenance maintenance = new DataMapMaintenance(this);
 
     public DataMap(MapSystem mapSystem, int dim)
     {
@@ -52,7 +72,7 @@ public class DataMap
      */
     public int getValue(@Nonnull BlockPos pos, @Nonnull DataMapType type)
     {
-        return type.getValue(getData(pos));
+        return getValue(pos.getX(), pos.getY(), pos.getZ(), type);
     }
 
     /**
@@ -66,11 +86,191 @@ public class DataMap
      */
     public int getValue(int x, int y, int z, @Nonnull DataMapType type)
     {
-        return type.getValue(getData(x, y, z));
+        DataChunk chunk = getChunkFromPosition(x, z, false);
+        if (chunk != null)
+        {
+            return chunk.getValue(x & 15, y, z & 15, type);
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the value of the stored nodes, safe to call from any thread
+     * <p>
+     * Chunk lookups use a copy of the loaded chunks that is published once per tick, see
+     * {@link #getChunkForRead(long)}, and values are read under {@link DataChunk#readValue(int, int, int, DataMapType)}.
+     * So reads never see a chunk or layer part way through a change.
+     *
+     * @param x    - location in world
+     * @param y    - location in world
+     * @param z    - location in world
+     * @param type - type of value
+     * @return value
+     */
+    public int readValue(int x, int y, int z, @Nonnull DataMapType type)
+    {
+        final DataChunk chunk = getChunkForRead(index(x >> 4, z >> 4));
+        if (chunk != null)
+        {
+            return chunk.readValue(x & 15, y, z & 15, type);
+        }
+        return 0;
+    }
+
+    /**
+     * Gets a loaded chunk, safe to call from any thread
+     * <p>
+     * Uses the published copy of the loaded chunks. While chunks changed since the last
+     * publish the live table is read under {@link #loadedLock} instead, so new chunks are
+     * seen before the next tick.
+     *
+     * @param index - chunk index, see {@link #index(int, int)}
+     * @return chunk or null if not loaded
+     */
+    protected DataChunk getChunkForRead(long index)
+    {
+        if (publishPending)
+        {
+            synchronized (loadedLock)
+            {
+                if (publishPending)
+                {
+                    return chunksCurrentlyLoaded.get(index);
+                }
+            }
+        }
+        return chunksForRead.get(index);
+    }
+
+    /**
+     * Copies the values inside the box into the array, safe to call from any thread
+     * <p>
+     * Chunks are resolved once per chunk column the box covers and layers once per y level, rather than
+     * once per position. Values are written x first, then z, then y:
+     * {@code out[((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX)]}. Positions without a value are set to zero.
+     *
+     * @param minX - box start
+     * @param minY - box start
+     * @param minZ - box start
+     * @param maxX - box end, inclusive
+     * @param maxY - box end, inclusive
+     * @param maxZ - box end, inclusive
+     * @param type - type of value
+     * @param out  - array to fill, at least the volume of the box
+     * @return sum of the values in the box
+     */
+    public long readRegion(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, @Nonnull DataMapType type, @Nonnull int[] out)
+    {
+        final int sizeX = maxX - minX + 1;
+        final int sizeZ = maxZ - minZ + 1;
+        final int strideY = sizeX * sizeZ;
+        checkRegion(sizeX, maxY - minY + 1, sizeZ, out);
+
+        long sum = 0;
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++)
+        {
+            final int startX = Math.max(minX, chunkX << 4);
+            final int endX = Math.min(maxX, (chunkX << 4) + 15);
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++)
+            {
+                final int startZ = Math.max(minZ, chunkZ << 4);
+                final int endZ = Math.min(maxZ, (chunkZ << 4) + 15);
+                final int offset = (startZ - minZ) * sizeX + (startX - minX);
+
+                final DataChunk chunk = getChunkForRead(index(chunkX, chunkZ));
+                if (chunk != null)
+                {
+                    sum += chunk.readRegion(startX & 15, minY, startZ & 15, endX & 15, maxY, endZ & 15, type, out, offset, sizeX, strideY);
+                }
+                else
+                {
+                    //No chunk, clear the part of the box it covers
+                    for (int y = 0; y <= maxY - minY; y++)
+                    {
+                        for (int z = 0; z <= endZ - startZ; z++)
+                        {
+                            final int start = offset + y * strideY + z * sizeX;
+                            Arrays.fill(out, start, start + endX - startX + 1, 0);
+                        }
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the values at each position, safe to call from any thread
+     * <p>
+     * Positions next to each other in the array that share a chunk only look up the chunk once,
+     * so sorting or grouping positions by chunk is faster.
+     *
+     * @param positions - packed positions, see {@link BlockPos#toLong()}
+     * @param count     - number of positions to read
+     * @param type      - type of value
+     * @param out       - array to fill, index matches the position index
+     * @return sum of the values
+     */
+    public long readValues(@Nonnull long[] positions, int count, @Nonnull DataMapType type, @Nonnull int[] out)
+    {
+        if (count > positions.length || count > out.length)
+        {
+            throw new IllegalArgumentException("DataMap#readValues(" + count + "): arrays are smaller than the count. " +
+                    "Positions: " + positions.length + ", Out: " + out.length);
+        }
+
+        DataChunk chunk = null;
+        long chunkIndex = 0;
+        long sum = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final long pos = positions[i];
+            final int x = unpackX(pos);
+            final int y = unpackY(pos);
+            final int z = unpackZ(pos);
+
+            final long index = index(x >> 4, z >> 4);
+            if (i == 0 || index != chunkIndex)
+            {
+                chunk = getChunkForRead(index);
+                chunkIndex = index;
+            }
+
+            out[i] = chunk != null ? chunk.readValue(x & 15, y, z & 15, type) : 0;
+            sum += out[i];
+        }
+        return sum;
+    }
+
+    private static void checkRegion(int sizeX, int sizeY, int sizeZ, int[] out)
+    {
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0 || (long) sizeX * sizeY * sizeZ > out.length)
+        {
+            throw new IllegalArgumentException("DataMap#readRegion: invalid box size or array too small. " +
+                    "Size: " + sizeX + "x" + sizeY + "x" + sizeZ + ", Out: " + out.length);
+        }
+    }
+
+    //Same bit layout as BlockPos#toLong, decoded here to avoid creating a BlockPos per position
+    private static int unpackX(long pos)
+    {
+        return (int) (pos << 64 - 38 - 26 >> 64 - 26);
+    }
+
+    private static int unpackY(long pos)
+    {
+        return (int) (pos << 64 - 26 - 12 >> 64 - 12);
+    }
+
+    private static int unpackZ(long pos)
+    {
+        return (int) (pos << 64 - 26 >> 64 - 26);
     }
 
     /**
      * Called to get all node stored for the location
+     * <p>
+     * Main thread only, the list is changed as nodes are added and removed
      *
      * @param pos - location in world
      * @return list of all nodes regardless of type
@@ -128,29 +328,71 @@ public class DataMap
         DataChunk chunk = getChunkFromPosition(x, z, true);
         if (chunk != null)
         {
-            final int prev = node.getType().getValue(getData(x, y, z));
-
-            //Fire change event for modification and to trigger exposure map update
-            MapSystemEvent.OnNodeAdded event = new MapSystemEvent.OnNodeAdded(this, node.getType(), x, y, z, prev, node); //TODO figure out if we need the block pos
-            if (MinecraftForge.EVENT_BUS.post(event) || event.node == null)
-            {
-                return;
-            }
-
-            //Add node
-            chunk.addData(x & 15, y, z & 15, event.node);
+            addData(chunk, x, y, z, node);
+        }
+    }
 
-            //if changed mark chunk so it saves
-            World world = DimensionManager.getWorld(dim);
-            if (world != null)
+    /**
+     * Adds all the nodes, such as the node set of a source
+     * <p>
+     * Runs as a batch so changes are delivered once per chunk, and the chunk is only looked
+     * up again when the position moves to a different chunk. {@link MapSystemEvent.OnNodeAdded}
+     * is still posted for each node.
+     *
+     * @param nodes - position to node
+     */
+    public <N extends IDataMapNode> void addData(@Nonnull Map<BlockPos, N> nodes)
+    {
+        mapSystem.beginBatch();
+        try
+        {
+            DataChunk chunk = null;
+            for (Map.Entry<BlockPos, N> entry : nodes.entrySet())
             {
-                Chunk worldChunk = world.getChunk(x >> 4, z >> 4);
-                if (worldChunk != null)
+                final BlockPos pos = entry.getKey();
+                final N node = entry.getValue();
+                if (node != null)
                 {
-                    worldChunk.setModified(true);
+                    final int x = pos.getX();
+                    final int z = pos.getZ();
+                    if (chunk == null || chunk.xPosition != x >> 4 || chunk.zPosition != z >> 4)
+                    {
+                        chunk = getChunk(x >> 4, z >> 4, true);
+                    }
+                    addData(chunk, x, pos.getY(), z, node);
                 }
             }
         }
+        finally
+        {
+            mapSystem.endBatch();
+        }
+    }
+
+    private void addData(@Nonnull DataChunk chunk, int x, int y, int z, @Nonnull IDataMapNode node)
+    {
+        final int prev = chunk.getValue(x & 15, y, z & 15, node.getType());
+
+        //Fire change event for modification and to trigger exposure map update
+        MapSystemEvent.OnNodeAdded event = new MapSystemEvent.OnNodeAdded(this, node.getType(), x, y, z, prev, node); //TODO figure out if we need the block pos
+        if (MinecraftForge.EVENT_BUS.post(event) || event.node == null)
+        {
+            return;
+        }
+
+        //Add node
+        chunk.addData(x & 15, y, z & 15, event.node);
+
+        //World chunk is marked to save on the next tick
+        markDirty(chunk, event.node);
+
+        //Batched changes are delivered once when the batch ends
+        if (mapSystem.isBatching())
+        {
+            recordChange(event.node.getType(), x, y, z);
+            return;
+        }
+        mapSystem.changes.dispatch(this, event.node.getType(), x, y, z);
     }
 
     /**
@@ -185,10 +427,10 @@ public class DataMap
             DataChunk chunk = getChunkFromPosition(x, z, false);
             if (chunk != null)
             {
-                int prev = node.getType().getValue(getData(x, y, z));
+                int prev = getValue(x, y, z, node.getType());
                 if (chunk.removeData(x & 15, y, z & 15, node))
                 {
-                    fireChangeEvent(node.getType(), x, y, z, prev);
+                    fireChangeEvent(chunk, node.getType(), x, y, z, prev);
                 }
             }
         }
@@ -239,21 +481,193 @@ public class DataMap
         final DataChunk chunk = getChunkFromPosition(x, z, false);
         if (chunk != null)
         {
-            int prev = source.getType().getValue(getData(x, y, z));
+            int prev = getValue(x, y, z, source.getType());
             if (chunk.removeData(x & 15, y, z & 15, source))
             {
-                fireChangeEvent(source.getType(), x, y, z, prev);
+                fireChangeEvent(chunk, source.getType(), x, y, z, prev);
             }
         }
         return false;
     }
 
-    private final void fireChangeEvent(@Nonnull DataMapType type, int x, int y, int z, int prev)
+    private final void fireChangeEvent(@Nonnull DataChunk chunk, @Nonnull DataMapType type, int x, int y, int z, int prev)
     {
-        int current = type.getValue(getData(x, y, z));
+        int current = getValue(x, y, z, type);
         if (prev != current)
         {
-            MinecraftForge.EVENT_BUS.post(new MapSystemEvent.OnNodeRemoved(this, type, x, y, z, prev, current));
+            markDirty(chunk);
+            if (mapSystem.isBatching())
+            {
+                recordChange(type, x, y, z);
+            }
+            else
+            {
+                MinecraftForge.EVENT_BUS.post(new MapSystemEvent.OnNodeRemoved(this, type, x, y, z, prev, current));
+                mapSystem.changes.dispatch(this, type, x, y, z);
+            }
+        }
+    }
+
+    /**
+     * Called when the value of a node already in the map was changed in place
+     * <p>
+     * Will fire an event, or record the change if batching
+     *
+     * @param type - type of data changed
+     * @param x    - location in world
+     * @param y    - location in world
+     * @param z    - location in world
+     */
+    public void onValueChanged(@Nonnull DataMapType type, int x, int y, int z)
+    {
+        final DataChunk chunk = getChunkFromPosition(x, z, false);
+        if (chunk != null)
+        {
+            //Keep packed values correct for nodes that can't push their own changes
+            chunk.onValueChanged(x & 15, y, z & 15);
+            markDirty(chunk);
+        }
+
+        if (mapSystem.isBatching())
+        {
+            recordChange(type, x, y, z);
+        }
+        else
+        {
+            //Event reports the current value as the value was already changed
+            MinecraftForge.EVENT_BUS.post(new MapSystemEvent.OnValueChanged(this, type, x, y, z, getValue(x, y, z, type)));
+            mapSystem.changes.dispatch(this, type, x, y, z);
+        }
+    }
+
+    ///----------------------------------------------------------------
+    ///-------- Batching
+    ///----------------------------------------------------------------
+
+    protected void recordChange(@Nonnull DataMapType type, int x, int y, int z)
+    {
+        final long index = index(x >> 4, z >> 4);
+        ChunkChanges changes = batchChanges.get(index);
+        if (changes == null)
+        {
+            batchChanges.put(index, changes = new ChunkChanges(x >> 4, z >> 4));
+        }
+        changes.mark(type, MapSystemEvent.OnChunkChanged.index(x, y, z));
+    }
+
+    /**
+     * Delivers changes recorded during a batch, once per chunk and type
+     */
+    public void flushChanges()
+    {
+        if (batchChanges.isEmpty())
+        {
+            return;
+        }
+
+        final List<ChunkChanges> changes = new ArrayList(batchChanges.values());
+        batchChanges.clear();
+
+        //Mark chunks so they save, only once per batch
+        markWorldChunks();
+
+        for (ChunkChanges chunkChanges : changes)
+        {
+            for (DataMapType type : DataMapType.values())
+            {
+                final BitSet positions = chunkChanges.byType[type.ordinal()];
+                if (positions != null)
+                {
+                    mapSystem.changes.dispatch(this, type, chunkChanges.chunkX, chunkChanges.chunkZ, positions);
+
+                    //Kept for listeners outside the mod
+                    MinecraftForge.EVENT_BUS.post(new MapSystemEvent.OnChunkChanged(this, type, chunkChanges.chunkX, chunkChanges.chunkZ, positions));
+                }
+            }
+        }
+    }
+
+    ///----------------------------------------------------------------
+    ///-------- Dirty tracking
+    ///----------------------------------------------------------------
+
+    /**
+     * Marks the chunk as changed if the node adds a value
+     *
+     * @param chunk - chunk the node was added to
+     * @param node  - node added
+     */
+    protected void markDirty(@Nonnull DataChunk chunk, @Nonnull IDataMapNode node)
+    {
+        if (node.getType().getValue(node) != 0)
+        {
+            markDirty(chunk);
+        }
+    }
+
+    /**
+     * Marks the chunk as changed, its world chunk is marked to save by {@link #markWorldChunks()}
+     *
+     * @param chunk - chunk changed
+     */
+    protected void markDirty(@Nonnull DataChunk chunk)
+    {
+        if (!chunk.dirty)
+        {
+            chunk.dirty = true;
+            dirtyChunks.add(chunk);
+        }
+    }
+
+    /**
+     * Marks the world chunk of each changed chunk so it saves, once per chunk. Called at the
+     * end of each batch and each world tick, rather than for every node changed.
+     */
+    public void markWorldChunks()
+    {
+        if (dirtyChunks.isEmpty())
+        {
+            return;
+        }
+
+        final World world = DimensionManager.getWorld(dim);
+        for (DataChunk chunk : dirtyChunks)
+        {
+            chunk.dirty = false;
+            if (world != null)
+            {
+                final Chunk worldChunk = world.getChunkProvider().getLoadedChunk(chunk.xPosition, chunk.zPosition);
+                if (worldChunk != null)
+                {
+                    worldChunk.setModified(true);
+                }
+            }
+        }
+        dirtyChunks.clear();
+    }
+
+    /**
+     * Positions changed in a chunk during a batch
+     */
+    protected static class ChunkChanges
+    {
+        public final int chunkX;
+        public final int chunkZ;
+        public final BitSet[] byType = new BitSet[DataMapType.values().length];
+
+        public ChunkChanges(int chunkX, int chunkZ)
+        {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        public void mark(DataMapType type, int index)
+        {
+            if (byType[type.ordinal()] == null)
+            {
+                byType[type.ordinal()] = new BitSet();
+            }
+            byType[type.ordinal()].set(index);
         }
     }
 
@@ -293,65 +707,97 @@ public class DataMap
 
     public void clearData()
     {
-        chunksCurrentlyLoaded.clear();
+        lastChunk = null;
+        synchronized (loadedLock)
+        {
+            chunksCurrentlyLoaded.clear();
+            publishPending = true;
+        }
+        dirtyChunks.clear();
+        maintenance.reset();
     }
 
     public void onWorldTick(World world)
     {
-        //Scan a single chunk for issues each tick
-        Long time = System.currentTimeMillis();
-        DataChunk chunkScaned = null;
-        for (DataChunk chunk : getLoadedChunks())
+        //Changes made outside of a batch
+        markWorldChunks();
+
+        //Scan a few layers of the loaded chunks for issues each tick
+        maintenance.tick(System.currentTimeMillis());
+
+        //Tick each chunk waiting to be unloaded, copied as the map can not be edited while iterating
+        if (!chunksWaitingToUnload.isEmpty())
         {
-            if (chunk.lastScanTime - time > 60000) //TODO add config for time
+            final List<DataChunk> waiting = new ArrayList(chunksWaitingToUnload.values());
+            for (DataChunk chunk : waiting)
             {
-                chunkScaned = chunk;
-                chunk.lastScanTime = time;
-                chunk.checkForIssues();
-                break;
+                final long index = index(chunk.xPosition, chunk.zPosition);
+
+                //Chunk is loaded, so we can re-add data. Empty chunks stay queued, they are recreated if needed
+                if (chunk.hasData() && world.getChunkProvider().getLoadedChunk(chunk.xPosition, chunk.zPosition) != null)
+                {
+                    chunksWaitingToUnload.remove(index);
+                    putLoaded(index, chunk);
+                    chunk.unloadTick = 0;
+                }
+                //Delay chunk remove to give a chance for chunk to reload
+                else if (chunk.unloadTick++ > 1000) //TODO move to config
+                {
+                    //Out of all tables before listeners are told
+                    chunksWaitingToUnload.remove(index);
+                    MinecraftForge.EVENT_BUS.post(new MapSystemEvent.RemoveChunk(this, chunk));
+                }
             }
         }
 
-        //If chunk scanned is empty, set to be unloaded to save memory
-        if (chunkScaned != null && !chunkScaned.hasData())
+        //Chunks changed this tick are published once
+        if (publishPending)
         {
-            chunksWaitingToUnload.put(index(chunkScaned.xPosition, chunkScaned.zPosition), chunkScaned);
+            publishChunks();
         }
+    }
 
-        //Tick each chunk waiting to be unloaded
-        Iterator<Map.Entry<Long, DataChunk>> it = chunksWaitingToUnload.entrySet().iterator();
-        while (it.hasNext())
+    /**
+     * Moves the empty chunk out of the loaded chunks to be removed later, see {@link #onWorldTick(World)}.
+     * Adding data before then moves it back.
+     *
+     * @param chunk - chunk with no data
+     */
+    protected void queueUnload(DataChunk chunk)
+    {
+        final long index = index(chunk.xPosition, chunk.zPosition);
+        final boolean removed;
+        synchronized (loadedLock)
         {
-            final Map.Entry<Long, DataChunk> entry = it.next();
-            final DataChunk chunk = entry.getValue();
-
-            //Should not happen but could
-            if (chunk == null)
-            {
-                it.remove();
-            }
-            //Chunk is loaded, so we can re-add data
-            else if (world.getChunkProvider().getLoadedChunk(chunk.xPosition, chunk.zPosition) != null)
-            {
-                chunksCurrentlyLoaded.put(entry.getKey(), chunk);
-                it.remove();
-            }
-            //Delay chunk remove to give a chance for chunk to reload
-            else if (entry.getValue().unloadTick++ > 1000) //TODO move to config
+            removed = chunksCurrentlyLoaded.remove(index) != null;
+            publishPending |= removed;
+        }
+        if (removed)
+        {
+            chunksWaitingToUnload.put(index, chunk);
+            if (lastChunk == chunk)
             {
-                MinecraftForge.EVENT_BUS.post(new MapSystemEvent.RemoveChunk(this, entry.getValue()));
-                it.remove();
+                lastChunk = null;
             }
         }
     }
 
     public void unloadChunk(Chunk chunk)
     {
-        long index = index(chunk);
-        if (chunksCurrentlyLoaded.containsKey(index))
+        final long index = index(chunk);
+        final DataChunk dataChunk;
+        synchronized (loadedLock)
         {
-            chunksWaitingToUnload.put(index, chunksCurrentlyLoaded.get(index));
-            chunksCurrentlyLoaded.remove(index);
+            dataChunk = chunksCurrentlyLoaded.remove(index);
+            publishPending |= dataChunk != null;
+        }
+        if (dataChunk != null)
+        {
+            chunksWaitingToUnload.put(index, dataChunk);
+            if (lastChunk == dataChunk)
+            {
+                lastChunk = null;
+            }
         }
     }
 
@@ -359,10 +805,44 @@ public class DataMap
     {
         long index = index(chunkX, chunkZ);
         DataChunk radiationChunk = new DataChunk(dim, chunkX, chunkZ);
-        chunksCurrentlyLoaded.put(index, radiationChunk);
+        putLoaded(index, radiationChunk);
         return radiationChunk;
     }
 
+    /**
+     * Adds a chunk to {@link #chunksCurrentlyLoaded}, the copy for reads is published on the next tick
+     *
+     * @param index - chunk index
+     * @param chunk - chunk
+     */
+    protected void putLoaded(long index, DataChunk chunk)
+    {
+        synchronized (loadedLock)
+        {
+            chunksCurrentlyLoaded.put(index, chunk);
+            publishPending = true;
+        }
+    }
+
+    /**
+     * Replaces the copy of loaded chunks used for reads from other threads. Called once per tick
+     * if {@link #chunksCurrentlyLoaded} changed, rather than copying the table on every change.
+     */
+    protected void publishChunks()
+    {
+        synchronized (loadedLock)
+        {
+            final LongObjectMap<DataChunk> copy = new LongObjectMap(chunksCurrentlyLoaded.size());
+            for (DataChunk chunk : chunksCurrentlyLoaded.values())
+            {
+                copy.put(index(chunk.xPosition, chunk.zPosition), chunk);
+            }
+            //Copy is set before the flag is cleared, so readers that skip the lock see it
+            chunksForRead = copy;
+            publishPending = false;
+        }
+    }
+
     ///----------------------------------------------------------------
     ///-------- Helpers
     ///----------------------------------------------------------------
@@ -384,7 +864,19 @@ public class DataMap
 
     protected DataChunk findChunk(int chunk_x, int chunk_z, boolean load)
     {
-        return findChunk(index(chunk_x, chunk_z), load);
+        //Read once, other threads may replace it
+        final DataChunk last = lastChunk;
+        if (last != null && last.xPosition == chunk_x && last.zPosition == chunk_z)
+        {
+            return last;
+        }
+
+        final DataChunk chunk = findChunk(index(chunk_x, chunk_z), load);
+        if (chunk != null)
+        {
+            lastChunk = chunk;
+        }
+        return chunk;
     }
 
     protected DataChunk findChunk(long index, boolean load)
@@ -392,11 +884,10 @@ public class DataMap
         DataChunk chunk = chunksCurrentlyLoaded.get(index);
         if (chunk == null && load)
         {
-            chunk = chunksWaitingToUnload.get(index);
+            chunk = chunksWaitingToUnload.remove(index);
             if (chunk != null)
             {
-                chunksWaitingToUnload.remove(index);
-                chunksCurrentlyLoaded.put(index, chunk);
+                putLoaded(index, chunk);
                 chunk.unloadTick = 0;
             }
         }
@@ -0,0 +1,157 @@
+package com.builtbroken.atomic.map.data.storage;
+
+import com.builtbroken.atomic.AtomicScience;
+import com.builtbroken.atomic.config.server.ConfigServer;
+
+/**
+ * Scans the chunks of a {@link DataMap} for issues a few layers at a time.
+ * <p>
+ * A cursor moves over a copy of the loaded chunk keys, each tick scanning layers until either
+ * {@link com.builtbroken.atomic.config.server.ConfigMap#SCAN_LAYERS_PER_TICK} layers were checked
+ * or {@link com.builtbroken.atomic.config.server.ConfigMap#SCAN_BUDGET} is used up. Scanning clears
+ * invalid nodes and removes empty layers, keeping memory bounded on long running servers. Chunks
+ * scanned within {@link com.builtbroken.atomic.config.server.ConfigMap#SCAN_INTERVAL} are skipped.
+ * <p>
+ * Main thread only.
+ */
+public class DataMapMaintenance
+{
+    public final DataMap map;
+
+    /** Chunk keys to scan this pass, refilled when the cursor reaches the end */
+    private long[] queue = new long[0];
+    /** Position in {@link #queue} */
+    private int chunkCursor = 0;
+    /** Next layer index to scan in the current chunk, -1 if the chunk has not been started */
+    private int layerCursor = -1;
+
+    //Stats, reported by the threads command
+    public long passes = 0;
+    public long chunksScanned = 0;
+    public long layersScanned = 0;
+    public long layersRemoved = 0;
+    public long bytesReclaimed = 0;
+
+    /** Bytes reclaimed during the current pass, logged in dev mode when the pass ends */
+    private long passBytesReclaimed = 0;
+
+    public DataMapMaintenance(DataMap map)
+    {
+        this.map = map;
+    }
+
+    /**
+     * Scans the next set of layers
+     *
+     * @param time - current time in milliseconds
+     */
+    public void tick(long time)
+    {
+        final int budget = ConfigServer.MAP.SCAN_LAYERS_PER_TICK;
+        final long deadline = System.nanoTime() + ConfigServer.MAP.SCAN_BUDGET * 1000L;
+        final long interval = ConfigServer.MAP.SCAN_INTERVAL * 1000L;
+
+        int work = 0;
+        boolean refilled = false;
+        while (work < budget && System.nanoTime() < deadline)
+        {
+            //End of pass, only start one new pass per tick so small maps are not rescanned in a loop
+            if (chunkCursor >= queue.length)
+            {
+                if (refilled || !startPass())
+                {
+                    return;
+                }
+                refilled = true;
+            }
+
+            final DataChunk chunk = map.chunksCurrentlyLoaded.get(queue[chunkCursor]);
+            if (chunk == null)
+            {
+                //Unloaded since the pass started
+                nextChunk();
+                continue;
+            }
+
+            if (layerCursor < 0)
+            {
+                if (time - chunk.lastScanTime < interval)
+                {
+                    //Counted as work so a map of recently scanned chunks is still walked in steps
+                    work++;
+                    nextChunk();
+                    continue;
+                }
+                layerCursor = 0;
+            }
+
+            //Scan layers that exist, missing sections are skipped by the chunk
+            int index;
+            while (work < budget && (index = chunk.nextLayerIndex(layerCursor)) >= 0)
+            {
+                final long freed = chunk.checkLayer(index);
+                if (freed > 0)
+                {
+                    layersRemoved++;
+                    bytesReclaimed += freed;
+                    passBytesReclaimed += freed;
+                }
+                layersScanned++;
+                work++;
+                layerCursor = index + 1;
+            }
+
+            if (chunk.nextLayerIndex(layerCursor) < 0)
+            {
+                chunk.lastScanTime = time;
+                chunksScanned++;
+
+                //If chunk scanned is empty, set to be unloaded to save memory
+                if (!chunk.hasData())
+                {
+                    map.queueUnload(chunk);
+                }
+                nextChunk();
+            }
+        }
+    }
+
+    /**
+     * Starts a new pass over the loaded chunks
+     *
+     * @return true if there are chunks to scan
+     */
+    private boolean startPass()
+    {
+        if (queue.length > 0)
+        {
+            passes++;
+            if (AtomicScience.runningAsDev && passBytesReclaimed > 0)
+            {
+                AtomicScience.logger.info("DataMapMaintenance[" + map.dim + "]: pass " + passes + " reclaimed ~" + passBytesReclaimed + " bytes");
+            }
+        }
+        passBytesReclaimed = 0;
+
+        queue = map.chunksCurrentlyLoaded.keys();
+        chunkCursor = 0;
+        layerCursor = -1;
+        return queue.length > 0;
+    }
+
+    private void nextChunk()
+    {
+        chunkCursor++;
+        layerCursor = -1;
+    }
+
+    /**
+     * Drops the current pass, called when the map is cleared
+     */
+    public void reset()
+    {
+        queue = new long[0];
+        chunkCursor = 0;
+        layerCursor = -1;
+    }
+}
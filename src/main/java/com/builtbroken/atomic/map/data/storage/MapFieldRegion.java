@@ -0,0 +1,478 @@
+package com.builtbroken.atomic.map.data.storage;
+
+import com.builtbroken.atomic.AtomicScience;
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Saved fields of the map sources in a 32x32 chunk region, for a single map type.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * int  magic, int version, int record count
+ * per record:
+ *   long source position, long fingerprint, int node count
+ *   per node: short dx, short y, short dz, int value
+ * </pre>
+ * Read and written in one go through a heap buffer. Files are not memory mapped, as a
+ * mapping keeps the file locked on Windows until collected and would break the move and
+ * delete below. Files are written to a temp file then moved into place so a crash during
+ * a save leaves the old file.
+ */
+public class MapFieldRegion
+{
+    public static final int MAGIC = 0x4153464D; //ASFM
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_BYTES = 20;
+    private static final int NODE_BYTES = 10;
+
+    public final File file;
+
+    /** Source position to saved field */
+    private final HashMap<Long, Record> records = new HashMap();
+
+    /** Records loaded from the file that no source has claimed yet, chunk of the source -> source positions */
+    private final HashMap<Long, Set<Long>> waiting = new HashMap();
+
+    /** Set when records changed since the last save */
+    private boolean dirty = false;
+
+    public MapFieldRegion(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Gets the saved field of the source
+     *
+     * @param sourcePos - position of the source, see {@link net.minecraft.util.math.BlockPos#toLong()}
+     * @return record, or null if not saved
+     */
+    public Record get(long sourcePos)
+    {
+        return records.get(sourcePos);
+    }
+
+    /**
+     * Gets the saved field of the source if it was loaded from the file and not claimed yet.
+     * Each record can only be claimed once, later calls return null.
+     *
+     * @param sourcePos - position of the source
+     * @return record, or null if not saved or already claimed
+     */
+    public Record claim(long sourcePos)
+    {
+        return removeFromWaiting(sourcePos) ? records.get(sourcePos) : null;
+    }
+
+    /**
+     * Removes records waiting to be claimed whose source is within range of the block
+     *
+     * @param x     - block location
+     * @param y     - block location
+     * @param z     - block location
+     * @param range - distance on each axis
+     */
+    public void removeWaiting(int x, int y, int z, int range)
+    {
+        removeWaiting(x - range, y - range, z - range, x + range, y + range, z + range);
+    }
+
+    /**
+     * Removes records waiting to be claimed whose source is inside the box
+     *
+     * @param minX - box corner, inclusive
+     * @param minY - box corner, inclusive
+     * @param minZ - box corner, inclusive
+     * @param maxX - box corner, inclusive
+     * @param maxY - box corner, inclusive
+     * @param maxZ - box corner, inclusive
+     */
+    public void removeWaiting(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+    {
+        if (waiting.isEmpty())
+        {
+            return;
+        }
+
+        final int minChunkX = minX >> 4;
+        final int maxChunkX = maxX >> 4;
+        final int minChunkZ = minZ >> 4;
+        final int maxChunkZ = maxZ >> 4;
+
+        //Few waiting chunks inside a large box, checking each bucket is cheaper than each chunk
+        if ((long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > waiting.size())
+        {
+            final Iterator<Set<Long>> it = waiting.values().iterator();
+            while (it.hasNext())
+            {
+                final Set<Long> sources = it.next();
+                removeInside(sources, minX, minY, minZ, maxX, maxY, maxZ);
+                if (sources.isEmpty())
+                {
+                    it.remove();
+                }
+            }
+            return;
+        }
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
+        {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++)
+            {
+                final long chunk = ChunkPos.asLong(chunkX, chunkZ);
+                final Set<Long> sources = waiting.get(chunk);
+                if (sources != null)
+                {
+                    removeInside(sources, minX, minY, minZ, maxX, maxY, maxZ);
+                    if (sources.isEmpty())
+                    {
+                        waiting.remove(chunk);
+                    }
+                }
+            }
+        }
+    }
+
+    private void removeInside(Set<Long> sources, int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+    {
+        final Iterator<Long> it = sources.iterator();
+        while (it.hasNext())
+        {
+            final long sourcePos = it.next();
+            final int x = getX(sourcePos);
+            final int y = getY(sourcePos);
+            final int z = getZ(sourcePos);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ)
+            {
+                it.remove();
+                records.remove(sourcePos);
+                dirty = true;
+            }
+        }
+    }
+
+    private void addToWaiting(long sourcePos)
+    {
+        waiting.computeIfAbsent(ChunkPos.asLong(getX(sourcePos) >> 4, getZ(sourcePos) >> 4), key -> new HashSet(2)).add(sourcePos);
+    }
+
+    private boolean removeFromWaiting(long sourcePos)
+    {
+        final long chunk = ChunkPos.asLong(getX(sourcePos) >> 4, getZ(sourcePos) >> 4);
+        final Set<Long> sources = waiting.get(chunk);
+        if (sources != null && sources.remove(sourcePos))
+        {
+            if (sources.isEmpty())
+            {
+                waiting.remove(chunk);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any loaded records are waiting to be claimed
+     *
+     * @return true if waiting
+     */
+    public boolean hasWaiting()
+    {
+        return !waiting.isEmpty();
+    }
+
+    /**
+     * Sets the saved field of the source
+     *
+     * @param sourcePos - position of the source
+     * @param record    - field
+     */
+    public void put(long sourcePos, Record record)
+    {
+        removeFromWaiting(sourcePos);
+        final Record prev = records.put(sourcePos, record);
+        dirty |= prev == null || !prev.equals(record);
+    }
+
+    /**
+     * Removes the saved field of the source
+     *
+     * @param sourcePos - position of the source
+     */
+    public void remove(long sourcePos)
+    {
+        removeFromWaiting(sourcePos);
+        dirty |= records.remove(sourcePos) != null;
+    }
+
+    public boolean isDirty()
+    {
+        return dirty;
+    }
+
+    /**
+     * Loads the records from the file, a missing or broken file loads as empty
+     */
+    public void load()
+    {
+        records.clear();
+        waiting.clear();
+        dirty = false;
+        if (!file.exists())
+        {
+            return;
+        }
+
+        try (FileInputStream stream = new FileInputStream(file);
+             FileChannel channel = stream.getChannel())
+        {
+            final long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+            {
+                throw new IOException("bad size " + size);
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    throw new IOException("file ended early");
+                }
+            }
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC)
+            {
+                throw new IOException("bad header");
+            }
+            if (buffer.getInt() != VERSION)
+            {
+                //Old format, fields are recalculated
+                return;
+            }
+
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++)
+            {
+                if (buffer.remaining() < RECORD_BYTES)
+                {
+                    throw new IOException("record " + i + " cut off");
+                }
+                final long sourcePos = buffer.getLong();
+                final long fingerprint = buffer.getLong();
+                final int nodes = buffer.getInt();
+                if (nodes < 0 || (long) nodes * NODE_BYTES > buffer.remaining())
+                {
+                    throw new IOException("record " + i + " has bad node count " + nodes);
+                }
+
+                final int[] positions = new int[nodes];
+                final int[] values = new int[nodes];
+                for (int n = 0; n < nodes; n++)
+                {
+                    final int dx = buffer.getShort();
+                    final int y = buffer.getShort();
+                    final int dz = buffer.getShort();
+                    positions[n] = pack(dx, y, dz);
+                    values[n] = buffer.getInt();
+                }
+                records.put(sourcePos, new Record(fingerprint, positions, values));
+                addToWaiting(sourcePos);
+            }
+        }
+        catch (IOException e)
+        {
+            AtomicScience.logger.warn("MapFieldRegion: Failed to load " + file + ", fields will be recalculated", e);
+            records.clear();
+            waiting.clear();
+        }
+    }
+
+    /**
+     * Writes the records to the file if changed
+     */
+    public void save()
+    {
+        if (!dirty)
+        {
+            return;
+        }
+        dirty = false;
+
+        if (records.isEmpty())
+        {
+            if (file.exists() && !file.delete())
+            {
+                AtomicScience.logger.warn("MapFieldRegion: Failed to delete empty region " + file);
+            }
+            return;
+        }
+
+        long size = HEADER_BYTES;
+        for (Record record : records.values())
+        {
+            size += RECORD_BYTES + (long) record.size() * NODE_BYTES;
+        }
+
+        if (size > Integer.MAX_VALUE)
+        {
+            AtomicScience.logger.warn("MapFieldRegion: Region " + file + " too large to save, size " + size);
+            return;
+        }
+
+        final File temp = new File(file.getPath() + ".tmp");
+        try
+        {
+            file.getParentFile().mkdirs();
+            try (FileOutputStream stream = new FileOutputStream(temp);
+                 FileChannel channel = stream.getChannel())
+            {
+                final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(records.size());
+                for (Map.Entry<Long, Record> entry : records.entrySet())
+                {
+                    final Record record = entry.getValue();
+                    buffer.putLong(entry.getKey());
+                    buffer.putLong(record.fingerprint);
+                    buffer.putInt(record.size());
+                    for (int n = 0; n < record.size(); n++)
+                    {
+                        final int pos = record.positions[n];
+                        buffer.putShort((short) unpackX(pos));
+                        buffer.putShort((short) unpackY(pos));
+                        buffer.putShort((short) unpackZ(pos));
+                        buffer.putInt(record.values[n]);
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            AtomicScience.logger.warn("MapFieldRegion: Failed to save " + file, e);
+            dirty = true;
+        }
+    }
+
+    //Source positions use the layout of BlockPos#toLong(), read without creating a BlockPos
+
+    public static int getX(long sourcePos)
+    {
+        return (int) (sourcePos >> 38);
+    }
+
+    public static int getY(long sourcePos)
+    {
+        return (int) (sourcePos << 26 >> 52);
+    }
+
+    public static int getZ(long sourcePos)
+    {
+        return (int) (sourcePos << 38 >> 38);
+    }
+
+    //Node position relative to the source in x and z, absolute in y
+
+    /**
+     * Checks if the offset fits in a packed position
+     *
+     * @param dx - x offset from the source
+     * @param y  - y level
+     * @param dz - z offset from the source
+     * @return true if it can be packed
+     */
+    public static boolean canPack(int dx, int y, int dz)
+    {
+        return dx >= -2048 && dx < 2048 && dz >= -2048 && dz < 2048 && y >= 0 && y < 256;
+    }
+
+    public static int pack(int dx, int y, int dz)
+    {
+        return (dx & 0xFFF) << 20 | (dz & 0xFFF) << 8 | (y & 0xFF);
+    }
+
+    public static int unpackX(int pos)
+    {
+        return pos >> 20;
+    }
+
+    public static int unpackY(int pos)
+    {
+        return pos & 0xFF;
+    }
+
+    public static int unpackZ(int pos)
+    {
+        return pos << 12 >> 20;
+    }
+
+    /**
+     * Saved field of a single source
+     */
+    public static final class Record
+    {
+        /** State of the source and settings the field was calculated with */
+        public final long fingerprint;
+        /** Packed node positions, see {@link #pack(int, int, int)} */
+        public final int[] positions;
+        /** Node values, matches positions */
+        public final int[] values;
+
+        public Record(long fingerprint, int[] positions, int[] values)
+        {
+            this.fingerprint = fingerprint;
+            this.positions = positions;
+            this.values = values;
+        }
+
+        public int size()
+        {
+            return positions.length;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (object instanceof Record)
+            {
+                final Record other = (Record) object;
+                return fingerprint == other.fingerprint
+                        && Arrays.equals(positions, other.positions)
+                        && Arrays.equals(values, other.values);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(fingerprint);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.builtbroken.atomic.map.data.storage;
+
+import com.builtbroken.atomic.AtomicScience;
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.api.map.IDataMapNode;
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.config.logic.ConfigLogic;
+import com.builtbroken.atomic.config.logic.ConfigRadiation;
+import com.builtbroken.atomic.config.server.ConfigServer;
+import com.builtbroken.atomic.map.data.node.MapNodeSource;
+import com.builtbroken.atomic.map.thermal.ThreadThermalAction;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.DimensionManager;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Saves the fields calculated for map sources so they can be reused after a restart,
+ * rather than running each source through its map thread again.
+ * <p>
+ * Fields are stored per dimension in region files of 32x32 chunks, see {@link MapFieldRegion}.
+ * Regions are loaded the first time a source in them asks for its field. Each field is saved
+ * with a fingerprint of the source state and map settings, a field is only reused if the
+ * fingerprint still matches.
+ * <p>
+ * Only fields loaded from disk are restored, and only the first time their source loads after
+ * startup. A source reloaded later in the session is recalculated, as blocks near it may have
+ * changed while it was unloaded. Saved fields are dropped when a block in range of their source
+ * changes before the source loads. Block changes never load a region, changes near regions that
+ * are not loaded yet are recorded by chunk and applied once the region loads.
+ * <p>
+ * Main thread only.
+ */
+public class MapFieldStore
+{
+    public static final String FOLDER = AtomicScience.DOMAIN + "/fields";
+
+    /** Dimension to region position to regions indexed by map type */
+    private final HashMap<Integer, HashMap<Long, MapFieldRegion[]>> dimensions = new HashMap();
+
+    /** Dimension to chunks with block changes near regions that were not loaded at the time */
+    private final HashMap<Integer, HashSet<Long>> changedChunks = new HashMap();
+
+    /**
+     * Gets the saved field of the source
+     *
+     * @param source - source
+     * @return position to value, or null if no field or the source changed since saved
+     */
+    public HashMap<BlockPos, Integer> restore(MapNodeSource source)
+    {
+        final MapFieldRegion region = getRegion(source);
+        if (region == null)
+        {
+            return null;
+        }
+
+        final MapFieldRegion.Record record = region.claim(sourceKey(source));
+        if (record == null || record.fingerprint != fingerprint(source))
+        {
+            return null;
+        }
+
+        final HashMap<BlockPos, Integer> values = new HashMap(record.size() * 4 / 3 + 1);
+        for (int i = 0; i < record.size(); i++)
+        {
+            final int pos = record.positions[i];
+            values.put(new BlockPos(
+                    source.xi() + MapFieldRegion.unpackX(pos),
+                    MapFieldRegion.unpackY(pos),
+                    source.zi() + MapFieldRegion.unpackZ(pos)), record.values[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Stores the current nodes of the source, written to disk on the next world save
+     *
+     * @param source - source with its nodes in the map
+     */
+    public <N extends IDataMapNode> void store(MapNodeSource<?, N> source)
+    {
+        final HashMap<BlockPos, N> nodes = source.getCurrentNodes();
+        if (nodes == null)
+        {
+            return;
+        }
+
+        //Sort by position so unchanged fields match the saved record
+        final long[] entries = new long[nodes.size()];
+        int count = 0;
+        for (Map.Entry<BlockPos, N> entry : nodes.entrySet())
+        {
+            final BlockPos pos = entry.getKey();
+            final int dx = pos.getX() - source.xi();
+            final int dz = pos.getZ() - source.zi();
+            if (!MapFieldRegion.canPack(dx, pos.getY(), dz))
+            {
+                return;
+            }
+            entries[count++] = (long) MapFieldRegion.pack(dx, pos.getY(), dz) << 32 | (source.getNodeValue(entry.getValue()) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(entries);
+
+        final int[] positions = new int[count];
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            positions[i] = (int) (entries[i] >> 32);
+            values[i] = (int) entries[i];
+        }
+
+        final MapFieldRegion region = getRegion(source);
+        if (region != null)
+        {
+            region.put(sourceKey(source), new MapFieldRegion.Record(fingerprint(source), positions, values));
+        }
+    }
+
+    /**
+     * Removes the saved field of the source, called when the source is removed from the world
+     *
+     * @param source - source
+     */
+    public void remove(IDataMapSource source)
+    {
+        final MapFieldRegion region = getRegion(source);
+        if (region != null)
+        {
+            region.remove(sourceKey(source));
+        }
+    }
+
+    /**
+     * Called when a block changes to drop saved fields that could reach it
+     *
+     * @param world - world
+     * @param pos   - block that changed
+     */
+    public void onBlockChanged(World world, BlockPos pos)
+    {
+        if (!ConfigServer.THREAD.PERSIST_FIELDS)
+        {
+            return;
+        }
+
+        final int dim = world.provider.getDimension();
+        final HashMap<Long, MapFieldRegion[]> regions = dimensions.get(dim);
+
+        boolean notLoaded = false;
+        for (DataMapType type : DataMapType.values())
+        {
+            final int range = getRange(type);
+            for (int regionX = (pos.getX() - range) >> 9; regionX <= (pos.getX() + range) >> 9; regionX++)
+            {
+                for (int regionZ = (pos.getZ() - range) >> 9; regionZ <= (pos.getZ() + range) >> 9; regionZ++)
+                {
+                    final MapFieldRegion[] byType = regions != null ? regions.get(ChunkPos.asLong(regionX, regionZ)) : null;
+                    final MapFieldRegion region = byType != null ? byType[type.ordinal()] : null;
+                    if (region == null)
+                    {
+                        notLoaded = true;
+                    }
+                    else if (region.hasWaiting())
+                    {
+                        region.removeWaiting(pos.getX(), pos.getY(), pos.getZ(), range);
+                    }
+                }
+            }
+        }
+
+        //Block changes must not load region files, the change is applied when the region loads
+        if (notLoaded)
+        {
+            changedChunks.computeIfAbsent(dim, key -> new HashSet()).add(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+        }
+    }
+
+    /**
+     * Drops records of a newly loaded region whose source is in range of a chunk that
+     * changed before the region loaded
+     *
+     * @param dim    - dimension
+     * @param region - region
+     * @param type   - map type of the region
+     */
+    private void applyChangedChunks(int dim, MapFieldRegion region, DataMapType type)
+    {
+        final HashSet<Long> chunks = changedChunks.get(dim);
+        if (chunks != null && region.hasWaiting())
+        {
+            final int range = getRange(type);
+            for (long chunk : chunks)
+            {
+                //Same layout as ChunkPos#asLong(int, int)
+                final int x = (int) chunk << 4;
+                final int z = (int) (chunk >> 32) << 4;
+                region.removeWaiting(x - range, -range, z - range, x + 15 + range, 255 + range, z + 15 + range);
+            }
+        }
+    }
+
+    /**
+     * Writes changed regions of the world to disk
+     *
+     * @param world - world being saved
+     */
+    public void save(World world)
+    {
+        final HashMap<Long, MapFieldRegion[]> regions = dimensions.get(world.provider.getDimension());
+        if (regions != null)
+        {
+            for (MapFieldRegion[] byType : regions.values())
+            {
+                for (MapFieldRegion region : byType)
+                {
+                    if (region != null)
+                    {
+                        region.save();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes and drops the regions of the world
+     *
+     * @param world - world being unloaded
+     */
+    public void onWorldUnload(World world)
+    {
+        save(world);
+        dimensions.remove(world.provider.getDimension());
+        changedChunks.remove(world.provider.getDimension());
+    }
+
+    /**
+     * Fingerprint of the state the field of the source depends on
+     *
+     * @param source - source
+     * @return fingerprint
+     */
+    public long fingerprint(IDataMapSource source)
+    {
+        final NBTTagCompound state = source.getSaveState();
+        long hash = MapFieldRegion.VERSION;
+        hash = hash * 31 + source.getType().ordinal();
+        hash = hash * 31 + sourceKey(source);
+        hash = hash * 31 + (state != null ? state.hashCode() : 0);
+
+        //Settings that change the shape of fields
+        if (source.getType() == DataMapType.RADIATION)
+        {
+            hash = hash * 31 + ConfigRadiation.MAX_UPDATE_RANGE;
+            hash = hash * 31 + Float.floatToIntBits(ConfigRadiation.RADIATION_DECAY_PER_BLOCK);
+            hash = hash * 31 + Float.floatToIntBits(ConfigRadiation.RADIATION_DECAY_PER_FLUID);
+            hash = hash * 31 + Float.floatToIntBits(ConfigRadiation.RADIATION_DECAY_METAL);
+            hash = hash * 31 + Float.floatToIntBits(ConfigRadiation.RADIATION_DECAY_STONE);
+        }
+        else if (source.getType() == DataMapType.THERMAL)
+        {
+            hash = hash * 31 + ThreadThermalAction.HEAT_SPREAD_RANGE;
+            hash = hash * 31 + ConfigLogic.THERMAL.SOLVER.ordinal();
+            hash = hash * 31 + ConfigLogic.THERMAL.TIMESTEP_TICKS;
+            hash = hash * 31 + ConfigLogic.THERMAL.TIME_SCALE;
+            hash = hash * 31 + Double.hashCode(ConfigLogic.THERMAL.HEAT_LOSS);
+            hash = hash * 31 + ConfigLogic.THERMAL.MIN_HEAT;
+        }
+        return hash;
+    }
+
+    /**
+     * Max distance a field of the type can reach from its source
+     *
+     * @param type - map type
+     * @return range in blocks
+     */
+    private static int getRange(DataMapType type)
+    {
+        return type == DataMapType.RADIATION ? ConfigRadiation.MAX_UPDATE_RANGE : ThreadThermalAction.HEAT_SPREAD_RANGE;
+    }
+
+    private static long sourceKey(IDataMapSource source)
+    {
+        return new BlockPos(source.xi(), source.yi(), source.zi()).toLong();
+    }
+
+    private MapFieldRegion getRegion(IDataMapSource source)
+    {
+        return getRegion(source.world(), source.xi() >> 9, source.zi() >> 9, source.getType());
+    }
+
+    private MapFieldRegion getRegion(World world, int regionX, int regionZ, DataMapType type)
+    {
+        final File saveFolder = DimensionManager.getCurrentSaveRootDirectory();
+        if (world == null || saveFolder == null || !ConfigServer.THREAD.PERSIST_FIELDS)
+        {
+            return null;
+        }
+
+        final int dim = world.provider.getDimension();
+
+        HashMap<Long, MapFieldRegion[]> regions = dimensions.get(dim);
+        if (regions == null)
+        {
+            dimensions.put(dim, regions = new HashMap());
+        }
+
+        MapFieldRegion[] byType = regions.get(ChunkPos.asLong(regionX, regionZ));
+        if (byType == null)
+        {
+            regions.put(ChunkPos.asLong(regionX, regionZ), byType = new MapFieldRegion[DataMapType.values().length]);
+        }
+
+        MapFieldRegion region = byType[type.ordinal()];
+        if (region == null)
+        {
+            //Missing files load as empty, kept so the disk is only checked once
+            final File folder = new File(saveFolder, FOLDER + "/dim" + dim);
+            region = new MapFieldRegion(new File(folder, "r." + regionX + "." + regionZ + "." + type.name().toLowerCase() + ".asf"));
+            region.load();
+            applyChangedChunks(dim, region, type);
+            byType[type.ordinal()] = region;
+        }
+        return region;
+    }
+}
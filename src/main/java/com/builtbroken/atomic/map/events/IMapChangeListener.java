@@ -0,0 +1,26 @@
+package com.builtbroken.atomic.map.events;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.map.data.storage.DataMap;
+
+import java.util.BitSet;
+
+/**
+ * Listener for value changes in the map, registered with {@link MapChangeDispatcher}
+ */
+public interface IMapChangeListener
+{
+    /**
+     * Called with the positions in a chunk whose value changed
+     * <p>
+     * Positions are only valid during the call, see {@link MapSystemEvent.OnChunkChanged#index(int, int, int)}
+     * for the index layout. Use {@link DataMap#getValue(int, int, int, DataMapType)} for the new value.
+     *
+     * @param map       - map changed
+     * @param type      - type of value changed
+     * @param chunkX    - chunk changed
+     * @param chunkZ    - chunk changed
+     * @param positions - changed positions in the chunk, do not modify
+     */
+    void onMapChanged(DataMap map, DataMapType type, int chunkX, int chunkZ, BitSet positions);
+}
@@ -0,0 +1,209 @@
+package com.builtbroken.atomic.map.events;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.lib.collection.IntObjectMap;
+import com.builtbroken.atomic.lib.collection.LongObjectMap;
+import com.builtbroken.atomic.map.data.storage.DataMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Delivers map value changes to listeners without going through the Forge event bus.
+ * <p>
+ * Listeners either register for every change of a {@link DataMapType}, or watch single positions
+ * such as a sensor watching its own block. Changes are delivered once per chunk, watchers are only
+ * called if a position they watch is part of the change. Watchers are indexed by chunk so a change
+ * to a chunk without watchers costs a single lookup.
+ * <p>
+ * Main thread only.
+ */
+public class MapChangeDispatcher
+{
+    /** Listeners for all changes of a type, index is {@link DataMapType#ordinal()} */
+    private final List<IMapChangeListener>[] typeListeners = new List[DataMapType.values().length];
+
+    /** Dimension -> chunk index -> watchers in the chunk */
+    private final IntObjectMap<LongObjectMap<List<Watch>>> watchers = new IntObjectMap();
+
+    /**
+     * Registers a listener for all changes of the type
+     *
+     * @param type     - type of value
+     * @param listener - listener
+     */
+    public void addListener(DataMapType type, IMapChangeListener listener)
+    {
+        List<IMapChangeListener> list = typeListeners[type.ordinal()];
+        if (list == null)
+        {
+            typeListeners[type.ordinal()] = list = new ArrayList();
+        }
+        if (!list.contains(listener))
+        {
+            list.add(listener);
+        }
+    }
+
+    public void removeListener(DataMapType type, IMapChangeListener listener)
+    {
+        final List<IMapChangeListener> list = typeListeners[type.ordinal()];
+        if (list != null)
+        {
+            list.remove(listener);
+        }
+    }
+
+    /**
+     * Registers a listener for changes of the type at a single position
+     *
+     * @param dim      - dimension
+     * @param pos      - position to watch
+     * @param type     - type of value
+     * @param listener - listener, called with the whole chunk change
+     */
+    public void watch(int dim, BlockPos pos, DataMapType type, IMapChangeListener listener)
+    {
+        LongObjectMap<List<Watch>> chunks = watchers.get(dim);
+        if (chunks == null)
+        {
+            watchers.put(dim, chunks = new LongObjectMap());
+        }
+
+        final long chunkIndex = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        List<Watch> list = chunks.get(chunkIndex);
+        if (list == null)
+        {
+            chunks.put(chunkIndex, list = new ArrayList(1));
+        }
+
+        final int index = MapSystemEvent.OnChunkChanged.index(pos.getX(), pos.getY(), pos.getZ());
+        for (Watch watch : list)
+        {
+            if (watch.matches(index, type, listener))
+            {
+                return;
+            }
+        }
+        list.add(new Watch(index, type, listener));
+    }
+
+    public void unwatch(int dim, BlockPos pos, DataMapType type, IMapChangeListener listener)
+    {
+        final LongObjectMap<List<Watch>> chunks = watchers.get(dim);
+        if (chunks != null)
+        {
+            final long chunkIndex = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+            final List<Watch> list = chunks.get(chunkIndex);
+            if (list != null)
+            {
+                final int index = MapSystemEvent.OnChunkChanged.index(pos.getX(), pos.getY(), pos.getZ());
+                list.removeIf(watch -> watch.matches(index, type, listener));
+                if (list.isEmpty())
+                {
+                    chunks.remove(chunkIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers a change of several positions in a chunk
+     *
+     * @param map       - map changed
+     * @param type      - type of value
+     * @param chunkX    - chunk
+     * @param chunkZ    - chunk
+     * @param positions - changed positions, see {@link MapSystemEvent.OnChunkChanged#index(int, int, int)}
+     */
+    public void dispatch(DataMap map, DataMapType type, int chunkX, int chunkZ, BitSet positions)
+    {
+        final List<IMapChangeListener> listeners = typeListeners[type.ordinal()];
+        if (listeners != null)
+        {
+            for (int i = 0; i < listeners.size(); i++)
+            {
+                listeners.get(i).onMapChanged(map, type, chunkX, chunkZ, positions);
+            }
+        }
+
+        final LongObjectMap<List<Watch>> chunks = watchers.get(map.dim);
+        if (chunks != null)
+        {
+            final List<Watch> list = chunks.get(ChunkPos.asLong(chunkX, chunkZ));
+            if (list != null)
+            {
+                //Copied as listeners may stop watching while being called
+                for (Watch watch : list.toArray(new Watch[list.size()]))
+                {
+                    if (watch.type == type && positions.get(watch.index))
+                    {
+                        watch.listener.onMapChanged(map, type, chunkX, chunkZ, positions);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers a change of a single position
+     *
+     * @param map  - map changed
+     * @param type - type of value
+     * @param x    - location in world
+     * @param y    - location in world
+     * @param z    - location in world
+     */
+    public void dispatch(DataMap map, DataMapType type, int x, int y, int z)
+    {
+        if (hasListeners(map.dim, type, x >> 4, z >> 4))
+        {
+            final BitSet positions = new BitSet();
+            positions.set(MapSystemEvent.OnChunkChanged.index(x, y, z));
+            dispatch(map, type, x >> 4, z >> 4, positions);
+        }
+    }
+
+    private boolean hasListeners(int dim, DataMapType type, int chunkX, int chunkZ)
+    {
+        final List<IMapChangeListener> listeners = typeListeners[type.ordinal()];
+        if (listeners != null && !listeners.isEmpty())
+        {
+            return true;
+        }
+        final LongObjectMap<List<Watch>> chunks = watchers.get(dim);
+        return chunks != null && chunks.containsKey(ChunkPos.asLong(chunkX, chunkZ));
+    }
+
+    /**
+     * Drops watchers of the dimension, listeners by type are kept
+     *
+     * @param dim - dimension unloaded
+     */
+    public void onWorldUnload(int dim)
+    {
+        watchers.remove(dim);
+    }
+
+    private static class Watch
+    {
+        final int index;
+        final DataMapType type;
+        final IMapChangeListener listener;
+
+        Watch(int index, DataMapType type, IMapChangeListener listener)
+        {
+            this.index = index;
+            this.type = type;
+            this.listener = listener;
+        }
+
+        boolean matches(int index, DataMapType type, IMapChangeListener listener)
+        {
+            return this.index == index && this.type == type && this.listener == listener;
+        }
+    }
+}
@@ -10,6 +10,8 @@ import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.fml.common.eventhandler.Cancelable;
 import net.minecraftforge.fml.common.eventhandler.Event;
 
+import java.util.BitSet;
+
 /**
  * Event set fired for any change or action take on the Radiation map
  *
@@ -142,6 +144,83 @@ public abstract class MapSystemEvent extends Event
         }
     }
 
+    /**
+     * Called once per chunk with all positions whose value changed while the map was applying
+     * a batch of results, see {@link com.builtbroken.atomic.map.MapSystem#beginBatch()}.
+     * <p>
+     * Replaces the per position {@link OnValueChanged} events for changes made during a batch.
+     * <p>
+     * Is fired on {@link net.minecraftforge.common.MinecraftForge#EVENT_BUS}
+     */
+    public static class OnChunkChanged extends MapSystemEvent
+    {
+        /** Type of data */
+        public final DataMapType type;
+
+        public final int chunkX;
+        public final int chunkZ;
+
+        /** Changed positions in the chunk, see {@link #index(int, int, int)} */
+        public final BitSet positions;
+
+        public OnChunkChanged(DataMap map, DataMapType type, int chunkX, int chunkZ, BitSet positions)
+        {
+            super(map);
+            this.type = type;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.positions = positions;
+        }
+
+        /**
+         * Gets the world position of a changed position
+         *
+         * @param index - index from {@link #positions}
+         * @return position
+         */
+        public BlockPos getPos(int index)
+        {
+            return getPos(chunkX, chunkZ, index);
+        }
+
+        /**
+         * Gets the world position of a changed position
+         *
+         * @param chunkX - chunk
+         * @param chunkZ - chunk
+         * @param index  - index, see {@link #index(int, int, int)}
+         * @return position
+         */
+        public static BlockPos getPos(int chunkX, int chunkZ, int index)
+        {
+            return new BlockPos((chunkX << 4) + (index & 15), index >> 8, (chunkZ << 4) + (index >> 4 & 15));
+        }
+
+        /**
+         * Gets the current value of a changed position
+         *
+         * @param index - index from {@link #positions}
+         * @return value of all data of the type added together
+         */
+        public int getNewValue(int index)
+        {
+            return map.getValue((chunkX << 4) + (index & 15), index >> 8, (chunkZ << 4) + (index >> 4 & 15), type);
+        }
+
+        /**
+         * Index of a position inside of the chunk
+         *
+         * @param x - world location
+         * @param y - world location
+         * @param z - world location
+         * @return index
+         */
+        public static int index(int x, int y, int z)
+        {
+            return y << 8 | (z & 15) << 4 | (x & 15);
+        }
+    }
+
     /**
      * Called when a new chunk is added to the map.
      * <p>
@@ -29,12 +29,7 @@ public class RadiationMap implements IRadiationExposureSystem
      */
     public int getRadLevel(World world, BlockPos pos)
     {
-        DataMap map = MapHandler.GLOBAL_DATA_MAP.getMap(world, false);
-        if (map != null)
-        {
-            return map.getValue(pos, DataMapType.RADIATION);
-        }
-        return 0;
+        return getRadLevel(world, pos.getX(), pos.getY(), pos.getZ());
     }
 
     /**
@@ -48,12 +43,8 @@ public class RadiationMap implements IRadiationExposureSystem
      */
     public int getRadLevel(World world, int x, int y, int z)
     {
-        DataMap map = MapHandler.GLOBAL_DATA_MAP.getMap(world, false);
-        if (map != null)
-        {
-            return map.getValue(x, y, z, DataMapType.RADIATION);
-        }
-        return 0;
+        //Safe from any thread
+        return MapHandler.GLOBAL_DATA_MAP.readValue(world.provider.getDimension(), x, y, z, DataMapType.RADIATION);
     }
 
     /**
@@ -64,16 +55,25 @@ public class RadiationMap implements IRadiationExposureSystem
      */
     public float getRemExposure(Entity entity)
     {
+        final DataMap map = MapHandler.GLOBAL_DATA_MAP.getMap(entity.world, false);
+        if (map == null)
+        {
+            return 0;
+        }
+
+        final int x = (int) Math.floor(entity.posX);
+        final int z = (int) Math.floor(entity.posZ);
+
         float value = 0;
 
         //Top point
-        value += getRadLevel(entity.world, (int) Math.floor(entity.posX), (int) Math.floor(entity.posY + entity.height), (int) Math.floor(entity.posZ));
+        value += map.getValue(x, (int) Math.floor(entity.posY + entity.height), z, DataMapType.RADIATION);
 
         //Mid point
-        value += getRadLevel(entity.world, (int) Math.floor(entity.posX), (int) Math.floor(entity.posY + (entity.height / 2)), (int) Math.floor(entity.posZ));
+        value += map.getValue(x, (int) Math.floor(entity.posY + (entity.height / 2)), z, DataMapType.RADIATION);
 
         //Bottom point
-        value += getRadLevel(entity.world, (int) Math.floor(entity.posX), (int) Math.floor(entity.posY), (int) Math.floor(entity.posZ));
+        value += map.getValue(x, (int) Math.floor(entity.posY), z, DataMapType.RADIATION);
 
         //Average TODO build alg to use body size (collision box)
         value /= 3f;
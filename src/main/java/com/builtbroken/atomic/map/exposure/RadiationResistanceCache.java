@@ -0,0 +1,342 @@
+package com.builtbroken.atomic.map.exposure;
+
+import com.builtbroken.atomic.lib.radiation.RadiationHandler;
+import com.builtbroken.atomic.map.MapHandler;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Cache of radiation resistance values per 16x16x16 chunk section.
+ * <p>
+ * Sections are built once from the chunk's block storage the first time a ray passes
+ * through them and then shared. Built arrays are never modified, a block change removes
+ * the section so it is rebuilt on next use. This lets the exposure thread read resistance
+ * values without locking and without touching the live world for every step of a ray.
+ * <p>
+ * Each section has a stamp that is bumped before it is removed. A build checks the stamp
+ * after storing its result and drops it if a change happened while it was reading the chunk,
+ * so a stale section can't stay cached.
+ * <p>
+ * Tiles are never touched from the thread. Resistance provided by tile capabilities is read
+ * on the main thread by {@link #onWorldTick(World)} for blocks a build asked about. If the tile
+ * changes the value the section is rebuilt and sources passing through the block are updated,
+ * until then the block's own value is used. If a tile changes its resistance without a block
+ * change the section will not update until the block changes or the chunk unloads.
+ */
+public class RadiationResistanceCache
+{
+    /** Shared section for empty storage, all air */
+    public static final float[] EMPTY_SECTION = new float[16 * 16 * 16];
+
+    /** Number of stamps per dimension, sections share stamps by key hash */
+    public static final int STAMP_COUNT = 4096;
+
+    /** Dimension -> cached data */
+    private final ConcurrentHashMap<Integer, DimCache> dimToCache = new ConcurrentHashMap();
+
+    /**
+     * Gets the resistance of the block
+     *
+     * @param world - world
+     * @param x     - location
+     * @param y     - location
+     * @param z     - location
+     * @return resistance between 0.0 and 1.0
+     */
+    public float getResistance(World world, int x, int y, int z)
+    {
+        final float[] section = getSection(world, x >> 4, y >> 4, z >> 4);
+        if (section != null)
+        {
+            return section[index(x, y, z)];
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the resistance values for the section, building if needed
+     *
+     * @param world - world
+     * @param sx    - section x (chunk x)
+     * @param sy    - section y (0-15)
+     * @param sz    - section z (chunk z)
+     * @return values indexed by {@link #index(int, int, int)}, or null if the chunk is not loaded
+     */
+    @Nullable
+    public float[] getSection(World world, int sx, int sy, int sz)
+    {
+        if (sy < 0 || sy >= 16)
+        {
+            return null;
+        }
+
+        final DimCache cache = getCache(world.provider.getDimension());
+        final long key = key(sx, sy, sz);
+
+        float[] section = cache.sections.get(key);
+        if (section == null)
+        {
+            final int stamp = cache.getStamp(key);
+            section = buildSection(world, cache, sx, sy, sz);
+            if (section != null)
+            {
+                //Keep first stored if another thread built at the same time
+                final float[] prev = cache.sections.putIfAbsent(key, section);
+                if (prev != null)
+                {
+                    return prev;
+                }
+
+                //Section changed while building, drop it so the next read rebuilds
+                if (cache.getStamp(key) != stamp)
+                {
+                    cache.sections.remove(key, section);
+                }
+            }
+        }
+        return section;
+    }
+
+    /**
+     * Builds the resistance values for the section from the chunk
+     *
+     * @param world - world
+     * @param cache - cache of the world
+     * @param sx    - section x (chunk x)
+     * @param sy    - section y (0-15)
+     * @param sz    - section z (chunk z)
+     * @return values, or null if the chunk is not loaded
+     */
+    @Nullable
+    protected float[] buildSection(World world, DimCache cache, int sx, int sy, int sz)
+    {
+        //Never load or generate chunks from the thread
+        final Chunk chunk = world.getChunkProvider().getLoadedChunk(sx, sz);
+        if (chunk == null)
+        {
+            return null;
+        }
+
+        final ExtendedBlockStorage storage = chunk.getBlockStorageArray()[sy];
+        if (storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty())
+        {
+            return EMPTY_SECTION;
+        }
+
+        final ConcurrentHashMap<Integer, Float> tiles = cache.tiles.get(key(sx, sy, sz));
+        final float[] section = new float[16 * 16 * 16];
+        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int y = 0; y < 16; y++)
+        {
+            for (int z = 0; z < 16; z++)
+            {
+                for (int x = 0; x < 16; x++)
+                {
+                    final IBlockState state = storage.get(x, y, z);
+                    final int index = index(x, y, z);
+                    pos.setPos((sx << 4) + x, (sy << 4) + y, (sz << 4) + z);
+
+                    //Tiles are read on the main thread, use the block value until then
+                    if (state.getBlock().hasTileEntity(state))
+                    {
+                        final Float value = tiles != null ? tiles.get(index) : null;
+                        if (value != null)
+                        {
+                            section[index] = value;
+                            continue;
+                        }
+                        cache.pendingTiles.add(pos.toLong());
+                    }
+                    section[index] = RadiationHandler.getReduceRadiationForBlock(world, pos, state, null);
+                }
+            }
+        }
+        return section;
+    }
+
+    ///----------------------------------------------------------------
+    ///--------Invalidation
+    ///----------------------------------------------------------------
+
+    /**
+     * Called when a block changes to clear the section containing it
+     *
+     * @param world - world
+     * @param pos   - location
+     */
+    public void onBlockChanged(World world, BlockPos pos)
+    {
+        final DimCache cache = dimToCache.get(world.provider.getDimension());
+        if (cache != null)
+        {
+            final long key = key(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+            final ConcurrentHashMap<Integer, Float> tiles = cache.tiles.get(key);
+            if (tiles != null)
+            {
+                tiles.remove(index(pos.getX(), pos.getY(), pos.getZ()));
+            }
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Called when a chunk unloads to clear all sections in the chunk
+     *
+     * @param world - world
+     * @param chunk - chunk
+     */
+    public void onChunkUnload(World world, Chunk chunk)
+    {
+        final DimCache cache = dimToCache.get(world.provider.getDimension());
+        if (cache != null)
+        {
+            for (int sy = 0; sy < 16; sy++)
+            {
+                final long key = key(chunk.x, sy, chunk.z);
+                cache.tiles.remove(key);
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Called when a world unloads to clear all sections in the world
+     *
+     * @param world - world
+     */
+    public void onWorldUnload(World world)
+    {
+        dimToCache.remove(world.provider.getDimension());
+    }
+
+    ///----------------------------------------------------------------
+    ///--------Main thread
+    ///----------------------------------------------------------------
+
+    /**
+     * Called each world tick on the main thread to read the tiles builds asked about
+     *
+     * @param world - world
+     */
+    public void onWorldTick(World world)
+    {
+        final DimCache cache = dimToCache.get(world.provider.getDimension());
+        if (cache == null || cache.pendingTiles.isEmpty())
+        {
+            return;
+        }
+
+        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        final Iterator<Long> it = cache.pendingTiles.iterator();
+        while (it.hasNext())
+        {
+            pos.setPos(BlockPos.fromLong(it.next()));
+            it.remove();
+
+            if (world.isBlockLoaded(pos))
+            {
+                final IBlockState state = world.getBlockState(pos);
+                final TileEntity tile = world.getTileEntity(pos);
+                final float blockValue = RadiationHandler.getReduceRadiationForBlock(world, pos, state, null);
+                final float value = tile != null ? RadiationHandler.getReduceRadiationForBlock(world, pos, state, tile) : blockValue;
+
+                final long key = key(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+                cache.tiles.computeIfAbsent(key, k -> new ConcurrentHashMap()).put(index(pos.getX(), pos.getY(), pos.getZ()), value);
+
+                //Only rebuild if the tile changed the value the section was built with
+                if (value != blockValue)
+                {
+                    cache.invalidate(key);
+                    if (MapHandler.THREAD_RAD_EXPOSURE != null)
+                    {
+                        MapHandler.THREAD_RAD_EXPOSURE.onBlockChanged(world, pos.toImmutable(), state, state);
+                    }
+                }
+            }
+        }
+    }
+
+    ///----------------------------------------------------------------
+    ///--------Helpers
+    ///----------------------------------------------------------------
+
+    private DimCache getCache(int dim)
+    {
+        return dimToCache.computeIfAbsent(dim, d -> new DimCache());
+    }
+
+    /**
+     * Index of the block inside of the section
+     *
+     * @param x - world or local location
+     * @param y - world or local location
+     * @param z - world or local location
+     * @return index 0-4095
+     */
+    public static int index(int x, int y, int z)
+    {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    /**
+     * Packs the section position into a single key
+     *
+     * @param sx - section x (chunk x)
+     * @param sy - section y
+     * @param sz - section z (chunk z)
+     * @return key
+     */
+    public static long key(int sx, int sy, int sz)
+    {
+        return ((long) sx & 0x3FFFFFF) << 34 | ((long) sz & 0x3FFFFFF) << 8 | (sy & 0xFF);
+    }
+
+    /**
+     * Cached data for a single dimension
+     */
+    protected static class DimCache
+    {
+        /** Section key -> resistance values */
+        public final ConcurrentHashMap<Long, float[]> sections = new ConcurrentHashMap();
+
+        /** Section key -> block index -> resistance read from the tile on the main thread */
+        public final ConcurrentHashMap<Long, ConcurrentHashMap<Integer, Float>> tiles = new ConcurrentHashMap();
+
+        /** Block positions with tiles waiting to be read on the main thread */
+        public final Set<Long> pendingTiles = ConcurrentHashMap.newKeySet();
+
+        /** Bumped each time a section is removed, shared by key hash */
+        public final AtomicIntegerArray stamps = new AtomicIntegerArray(STAMP_COUNT);
+
+        public int getStamp(long key)
+        {
+            return stamps.get(slot(key));
+        }
+
+        /**
+         * Removes the section, bumping the stamp first so a build in progress drops its result
+         *
+         * @param key - section key
+         */
+        public void invalidate(long key)
+        {
+            stamps.incrementAndGet(slot(key));
+            sections.remove(key);
+        }
+
+        private static int slot(long key)
+        {
+            return Long.hashCode(key * 0x9E3779B97F4A7C15L) & (STAMP_COUNT - 1);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.builtbroken.atomic.map.exposure;
+
+import com.builtbroken.atomic.api.radiation.IRadiationNode;
+import com.builtbroken.atomic.lib.radiation.RadiationHandler;
+import com.builtbroken.atomic.map.MapHandler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Ray data from the last update of a radiation source. Stores the power of each ray at each block
+ * it passes through so later updates only need to redo what changed.
+ * <p>
+ * When only the strength of the source changes the stored values are scaled, as distance and block
+ * reductions are linear. Rays are only traced again if scaling would change where they stop, such as
+ * passing a block that would have stopped them. When a block changes only rays that reached the block
+ * are traced again, found using the paths stored in {@link RayDirectionTable}.
+ * <p>
+ * Only accessed by one thread at a time, with the exception of {@link #changedBlocks} and the
+ * fields marked as main thread.
+ */
+public class RadiationTrace
+{
+    /** Shared value for rays that reached nothing */
+    private static final float[] NO_POWER = new float[0];
+
+    public final int dim;
+    public final int cx;
+    public final int cy;
+    public final int cz;
+    public final int range;
+    public final RayDirectionTable table;
+
+    /** Radiation at the source */
+    public int rad;
+
+    /** Power after each block reached by each ray, only as long as the ray got */
+    private final float[][] power;
+    /** Lowest scale that keeps every block passed by the ray from stopping it */
+    private final double[] scaleMin;
+    /** Scale at which the ray would pass the block or power level that stopped it */
+    private final double[] scaleMax;
+
+    /** Reused while tracing a ray, sized to the longest ray */
+    private final float[] tracePower;
+
+    /** Blocks changed since the last update, added from the main thread */
+    public final ConcurrentLinkedQueue<BlockPos> changedBlocks = new ConcurrentLinkedQueue();
+
+    /** Main thread: node map the last result was applied to */
+    public HashMap<BlockPos, IRadiationNode> appliedNodes;
+    /** Set to false once the source's nodes no longer match the trace */
+    public volatile boolean valid = true;
+
+    public RadiationTrace(int dim, int cx, int cy, int cz, int rad, int range)
+    {
+        this.dim = dim;
+        this.cx = cx;
+        this.cy = cy;
+        this.cz = cz;
+        this.rad = rad;
+        this.range = range;
+        this.table = RayDirectionTable.get(range);
+        this.power = new float[table.size()][];
+        Arrays.fill(power, NO_POWER);
+        this.scaleMin = new double[table.size()];
+        this.scaleMax = new double[table.size()];
+
+        int longest = 0;
+        for (int ray = 0; ray < table.size(); ray++)
+        {
+            longest = Math.max(longest, table.pathLength(ray));
+        }
+        this.tracePower = new float[longest];
+    }
+
+    /**
+     * Checks if the trace can be reused for the source
+     *
+     * @param dim   - source location
+     * @param x     - source location
+     * @param y     - source location
+     * @param z     - source location
+     * @param range - range of the source at its current strength
+     * @return true if the same location and range
+     */
+    public boolean matches(int dim, int x, int y, int z, int range)
+    {
+        return this.dim == dim && cx == x && cy == y && cz == z && this.range == range;
+    }
+
+    /**
+     * Checks if the block could be reached by a ray
+     *
+     * @param pos - block
+     * @return true if inside the range of the trace
+     */
+    public boolean isInRange(BlockPos pos)
+    {
+        final int ox = pos.getX() - cx;
+        final int oy = pos.getY() - cy;
+        final int oz = pos.getZ() - cz;
+        return ox * ox + oy * oy + oz * oz <= (range + 2) * (range + 2);
+    }
+
+    /**
+     * Traces the ray out from the source, storing the power at each block
+     *
+     * @param world - world to pull block data from
+     * @param ray   - ray id
+     */
+    public void traceRay(World world, int ray)
+    {
+        final int start = table.pathStart[ray];
+        final int end = table.pathStart[ray + 1];
+
+        final int height = world.getHeight(); //TODO hook into config to allow increase for cubic chunk maps
+        final double rangeSQ = range * range;
+
+        //Last section read, rays tend to stay in the same section for several blocks
+        long sectionKey = Long.MIN_VALUE;
+        float[] section = null;
+
+        double power = rad;
+        double radDistance = 1;
+
+        double minScale = 0;
+        double maxScale = Double.POSITIVE_INFINITY;
+
+        int steps = 0;
+        for (int i = start; i < end; i++)
+        {
+            final int voxel = table.pathVoxel[i];
+            final int ox = RayDirectionTable.unpackX(voxel);
+            final int oy = RayDirectionTable.unpackY(voxel);
+            final int oz = RayDirectionTable.unpackZ(voxel);
+
+            final int x = cx + ox;
+            final int y = cy + oy;
+            final int z = cz + oz;
+
+            if (y < 0 || y >= height)
+            {
+                break;
+            }
+
+            //Reduce radiation for distance
+            final double distanceSQ = ox * ox + oy * oy + oz * oz;
+            final double distancePower = RadiationHandler.getRadForDistance(power, radDistance, distanceSQ);
+
+            //Get resistance of block from cache
+            final long key = RadiationResistanceCache.key(x >> 4, y >> 4, z >> 4);
+            if (key != sectionKey)
+            {
+                sectionKey = key;
+                section = MapHandler.RESISTANCE_CACHE.getSection(world, x >> 4, y >> 4, z >> 4);
+            }
+
+            //Reduce radiation, unloaded chunks are treated as air
+            final float resistance = section != null ? section[RadiationResistanceCache.index(x, y, z)] : 0;
+            power = RadiationHandler.reduceRadiation(resistance, distancePower);
+
+            tracePower[steps++] = (float) power;
+
+            //Track how far the power can be scaled before the block stops or lets through the ray
+            if (resistance > 0)
+            {
+                final double limit = resistance * 1000 / distancePower;
+                if (distancePower < resistance * 1000)
+                {
+                    maxScale = Math.min(maxScale, limit);
+                }
+                else
+                {
+                    minScale = Math.max(minScale, limit);
+                }
+            }
+
+            //Track last distance of radiation, as power is now measured from that position
+            radDistance = distanceSQ;
+
+            if (distanceSQ > rangeSQ)
+            {
+                break;
+            }
+            else if (power <= 1)
+            {
+                if (power > 0)
+                {
+                    maxScale = Math.min(maxScale, 1 / power);
+                }
+                break;
+            }
+        }
+
+        this.power[ray] = steps > 0 ? Arrays.copyOf(tracePower, steps) : NO_POWER;
+        scaleMin[ray] = minScale;
+        scaleMax[ray] = maxScale;
+    }
+
+    /**
+     * Changes the strength of the source. Rays are scaled where possible and traced again where not.
+     *
+     * @param world - world to pull block data from
+     * @param rad   - new radiation at the source
+     */
+    public void scale(World world, int rad)
+    {
+        final double scale = rad / (double) this.rad;
+        this.rad = rad;
+
+        for (int ray = 0; ray < table.size(); ray++)
+        {
+            if (scale >= scaleMin[ray] && scale < scaleMax[ray])
+            {
+                final float[] values = this.power[ray];
+                final int length = values.length;
+                for (int i = 0; i < length; i++)
+                {
+                    final double power = values[i] * scale;
+                    values[i] = (float) power;
+
+                    //Weaker ray stops sooner
+                    if (power <= 1 && i < length - 1)
+                    {
+                        this.power[ray] = Arrays.copyOf(values, i + 1);
+                        scaleMax[ray] = power > 0 ? 1 / power : Double.POSITIVE_INFINITY;
+                        break;
+                    }
+                }
+
+                //Limits are relative to the stored power
+                scaleMin[ray] /= scale;
+                if (this.power[ray].length == length)
+                {
+                    scaleMax[ray] /= scale;
+                }
+            }
+            else
+            {
+                traceRay(world, ray);
+            }
+        }
+    }
+
+    /**
+     * Traces again all rays that reached a block in {@link #changedBlocks}
+     *
+     * @param world - world to pull block data from
+     * @return blocks with changed values, -1 if no longer reached
+     */
+    public HashMap<BlockPos, Integer> updateChangedBlocks(World world)
+    {
+        //Collect rays that reached a changed block
+        final boolean[] marked = new boolean[table.size()];
+        final int[] rays = new int[table.size()];
+        final int[] rayCount = new int[1];
+
+        BlockPos pos;
+        while ((pos = changedBlocks.poll()) != null)
+        {
+            final int ox = pos.getX() - cx;
+            final int oy = pos.getY() - cy;
+            final int oz = pos.getZ() - cz;
+            final int step = RayDirectionTable.getStep(ox, oy, oz);
+            if (step >= 0 && isInRange(pos))
+            {
+                table.forEachRayThrough(ox, oy, oz, ray ->
+                {
+                    if (step < power[ray].length && !marked[ray])
+                    {
+                        marked[ray] = true;
+                        rays[rayCount[0]++] = ray;
+                    }
+                });
+            }
+        }
+
+        //Trace again, tracking blocks the ray now gives a different value
+        final HashSet<Integer> changedVoxels = new HashSet();
+        for (int r = 0; r < rayCount[0]; r++)
+        {
+            final int ray = rays[r];
+            final int start = table.pathStart[ray];
+
+            //Tracing replaces the array, old values stay as they were
+            final float[] oldPower = power[ray];
+            traceRay(world, ray);
+            final float[] newPower = power[ray];
+
+            for (int s = 0; s < Math.max(oldPower.length, newPower.length); s++)
+            {
+                if (s >= oldPower.length || s >= newPower.length || (int) Math.floor(oldPower[s]) != (int) Math.floor(newPower[s]))
+                {
+                    changedVoxels.add(table.pathVoxel[start + s]);
+                }
+            }
+        }
+
+        //Recalculate value of each changed block from all rays
+        final HashMap<BlockPos, Integer> data = new HashMap();
+        for (int voxel : changedVoxels)
+        {
+            final int ox = RayDirectionTable.unpackX(voxel);
+            final int oy = RayDirectionTable.unpackY(voxel);
+            final int oz = RayDirectionTable.unpackZ(voxel);
+            data.put(new BlockPos(cx + ox, cy + oy, cz + oz), getValue(ox, oy, oz));
+        }
+        return data;
+    }
+
+    /**
+     * Value of the block, highest value of any ray reaching it
+     *
+     * @param ox - offset from source
+     * @param oy - offset from source
+     * @param oz - offset from source
+     * @return value, -1 if not reached
+     */
+    public int getValue(int ox, int oy, int oz)
+    {
+        final int step = RayDirectionTable.getStep(ox, oy, oz);
+        final int[] value = {-1};
+        table.forEachRayThrough(ox, oy, oz, ray ->
+        {
+            if (step < power[ray].length)
+            {
+                value[0] = Math.max(value[0], (int) Math.floor(power[ray][step]));
+            }
+        });
+        return value[0];
+    }
+
+    /**
+     * Collects the value of every block reached
+     *
+     * @return map of position to value
+     */
+    public HashMap<BlockPos, Integer> collect()
+    {
+        final HashMap<BlockPos, Integer> data = new HashMap();
+        for (int ray = 0; ray < table.size(); ray++)
+        {
+            final int start = table.pathStart[ray];
+            final float[] values = power[ray];
+            for (int s = 0; s < values.length; s++)
+            {
+                final int voxel = table.pathVoxel[start + s];
+                final BlockPos pos = new BlockPos(cx + RayDirectionTable.unpackX(voxel), cy + RayDirectionTable.unpackY(voxel), cz + RayDirectionTable.unpackZ(voxel));
+
+                //Keep highest value if several rays hit the block
+                data.merge(pos, (int) Math.floor(values[s]), Math::max);
+            }
+        }
+        return data;
+    }
+}
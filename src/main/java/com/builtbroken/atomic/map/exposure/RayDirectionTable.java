@@ -0,0 +1,345 @@
+package com.builtbroken.atomic.map.exposure;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Cached table of unit ray directions used to trace radiation out from a source.
+ * <p>
+ * Directions are generated by rotating yaw and pitch in equal steps, with the
+ * step count picked so the gap between rays at the edge of the range is about a block.
+ * Duplicate directions (poles and overlapping rotations) are removed so each ray is only traced once.
+ * <p>
+ * The blocks each ray passes through are also stored, as they only depend on the direction. Each
+ * step of a ray moves a single block on one axis, so the step a ray enters a block is always the
+ * manhattan distance of the block minus one. Combined with a grid of rays by direction this allows
+ * finding every ray passing through a block without walking the rays.
+ */
+public final class RayDirectionTable
+{
+    private static final ConcurrentHashMap<Integer, RayDirectionTable> CACHE = new ConcurrentHashMap();
+
+    /** Cells per axis of the direction grid */
+    private static final int GRID_SIZE = 32;
+
+    /** Distance from the center of a block to a corner */
+    private static final double HALF_DIAGONAL = Math.sqrt(3) / 2;
+
+    /** Offset added to each axis when packing a block offset */
+    private static final int OFFSET_BIAS = 512;
+
+    /** Range the table was generated for */
+    public final int range;
+
+    /** Unit direction, index is the ray id */
+    public final double[] x;
+    public final double[] y;
+    public final double[] z;
+
+    /** Start of each ray in {@link #pathVoxel}, last entry is the total size */
+    public final int[] pathStart;
+    /** Blocks passed through by each ray in order, stored as offsets from the source, see {@link #pack(int, int, int)} */
+    public final int[] pathVoxel;
+
+    /** Start of each grid cell in {@link #cellRays}, last entry is the total size */
+    private final int[] cellStart;
+    /** Rays sorted by grid cell */
+    private final int[] cellRays;
+
+    private RayDirectionTable(int range, double[] x, double[] y, double[] z)
+    {
+        this.range = range;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+
+        //Walk each ray to get the blocks it passes through
+        this.pathStart = new int[x.length + 1];
+        int[] path = new int[x.length * range * 2];
+        int pathSize = 0;
+        for (int ray = 0; ray < x.length; ray++)
+        {
+            pathStart[ray] = pathSize;
+            while (path.length - pathSize < range * 3 + 6)
+            {
+                path = Arrays.copyOf(path, path.length * 2 + 16);
+            }
+            pathSize = walk(x[ray], y[ray], z[ray], range, path, pathSize);
+        }
+        pathStart[x.length] = pathSize;
+        this.pathVoxel = Arrays.copyOf(path, pathSize);
+
+        //Sort rays into the direction grid
+        this.cellStart = new int[GRID_SIZE * GRID_SIZE * GRID_SIZE + 1];
+        this.cellRays = new int[x.length];
+        for (int ray = 0; ray < x.length; ray++)
+        {
+            cellStart[cell(x[ray], y[ray], z[ray]) + 1]++;
+        }
+        for (int i = 1; i < cellStart.length; i++)
+        {
+            cellStart[i] += cellStart[i - 1];
+        }
+        final int[] fill = Arrays.copyOf(cellStart, cellStart.length - 1);
+        for (int ray = 0; ray < x.length; ray++)
+        {
+            cellRays[fill[cell(x[ray], y[ray], z[ray])]++] = ray;
+        }
+    }
+
+    /**
+     * Number of rays in the table
+     *
+     * @return count
+     */
+    public int size()
+    {
+        return x.length;
+    }
+
+    /**
+     * Number of blocks the ray passes through before leaving the range
+     *
+     * @param ray - ray id
+     * @return count
+     */
+    public int pathLength(int ray)
+    {
+        return pathStart[ray + 1] - pathStart[ray];
+    }
+
+    /**
+     * Calls the consumer for each ray passing through the block
+     *
+     * @param ox       - offset of the block from the source
+     * @param oy       - offset of the block from the source
+     * @param oz       - offset of the block from the source
+     * @param consumer - given the ray id, the block is at {@link #getStep(int, int, int)} of the ray
+     */
+    public void forEachRayThrough(int ox, int oy, int oz, IntConsumer consumer)
+    {
+        final int step = getStep(ox, oy, oz);
+        if (step < 0)
+        {
+            return;
+        }
+        final int voxel = pack(ox, oy, oz);
+
+        //Any ray passing through the block points at most this far from the center of the block
+        final double length = Math.sqrt(ox * ox + oy * oy + oz * oz);
+        final double sin = Math.min(1, HALF_DIAGONAL / length);
+        final double chord = Math.sqrt(2 - 2 * Math.sqrt(1 - sin * sin)) + 0.001;
+
+        final double nx = ox / length;
+        final double ny = oy / length;
+        final double nz = oz / length;
+
+        final int minX = cellIndex(nx - chord);
+        final int maxX = cellIndex(nx + chord);
+        final int minY = cellIndex(ny - chord);
+        final int maxY = cellIndex(ny + chord);
+        final int minZ = cellIndex(nz - chord);
+        final int maxZ = cellIndex(nz + chord);
+
+        for (int cx = minX; cx <= maxX; cx++)
+        {
+            for (int cy = minY; cy <= maxY; cy++)
+            {
+                for (int cz = minZ; cz <= maxZ; cz++)
+                {
+                    final int cell = (cx * GRID_SIZE + cy) * GRID_SIZE + cz;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++)
+                    {
+                        //Grid is only a rough filter, check the ray's path to be exact
+                        final int ray = cellRays[i];
+                        if (step < pathLength(ray) && pathVoxel[pathStart[ray] + step] == voxel)
+                        {
+                            consumer.accept(ray);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Step of a ray that enters the block
+     *
+     * @param ox - offset of the block from the source
+     * @param oy - offset of the block from the source
+     * @param oz - offset of the block from the source
+     * @return step, -1 for the source block itself
+     */
+    public static int getStep(int ox, int oy, int oz)
+    {
+        return Math.abs(ox) + Math.abs(oy) + Math.abs(oz) - 1;
+    }
+
+    /**
+     * Packs an offset from the source into an int, each axis must be within +-511
+     *
+     * @param ox - offset
+     * @param oy - offset
+     * @param oz - offset
+     * @return packed value
+     */
+    public static int pack(int ox, int oy, int oz)
+    {
+        return (ox + OFFSET_BIAS) << 20 | (oy + OFFSET_BIAS) << 10 | (oz + OFFSET_BIAS);
+    }
+
+    public static int unpackX(int voxel)
+    {
+        return (voxel >> 20 & 1023) - OFFSET_BIAS;
+    }
+
+    public static int unpackY(int voxel)
+    {
+        return (voxel >> 10 & 1023) - OFFSET_BIAS;
+    }
+
+    public static int unpackZ(int voxel)
+    {
+        return (voxel & 1023) - OFFSET_BIAS;
+    }
+
+    /**
+     * Gets the table for the range, generating it if needed
+     *
+     * @param range - edit range in blocks
+     * @return table
+     */
+    public static RayDirectionTable get(int range)
+    {
+        return CACHE.computeIfAbsent(range, RayDirectionTable::create);
+    }
+
+    private static RayDirectionTable create(int range)
+    {
+        //How many steps to go per rotation
+        final int steps = (int) Math.ceil(Math.PI / Math.atan(1.0D / Math.max(1, range)));
+
+        final HashSet<Long> seen = new HashSet();
+        final double[] x = new double[4 * steps * steps];
+        final double[] y = new double[x.length];
+        final double[] z = new double[x.length];
+        int count = 0;
+
+        for (int phi_n = 0; phi_n < 2 * steps; phi_n++)
+        {
+            for (int theta_n = 0; theta_n < 2 * steps; theta_n++)
+            {
+                //Get angles for rotation steps
+                final double yaw = Math.PI * 2 / steps * phi_n;
+                final double pitch = Math.PI * 2 / steps * theta_n;
+
+                final double dx = Math.sin(pitch) * Math.cos(yaw);
+                final double dy = Math.cos(pitch);
+                final double dz = Math.sin(pitch) * Math.sin(yaw);
+
+                //Skip directions we already have
+                if (seen.add(key(dx, dy, dz)))
+                {
+                    x[count] = dx;
+                    y[count] = dy;
+                    z[count] = dz;
+                    count++;
+                }
+            }
+        }
+
+        return new RayDirectionTable(range, trim(x, count), trim(y, count), trim(z, count));
+    }
+
+    /**
+     * Walks the ray using a voxel walk (Amanatides & Woo) so each block the ray passes
+     * through is visited exactly once, in order of distance along the ray.
+     *
+     * @param dx     - unit direction
+     * @param dy     - unit direction
+     * @param dz     - unit direction
+     * @param range  - range to stop at, the first block outside the range is included
+     * @param path   - array to store packed offsets into
+     * @param offset - index to start storing at
+     * @return index after the last stored block
+     */
+    private static int walk(double dx, double dy, double dz, int range, int[] path, int offset)
+    {
+        //Direction to step on each axis
+        final int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        final int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        final int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+
+        //Distance along the ray to cross a full block on each axis
+        final double deltaX = stepX != 0 ? Math.abs(1 / dx) : Double.POSITIVE_INFINITY;
+        final double deltaY = stepY != 0 ? Math.abs(1 / dy) : Double.POSITIVE_INFINITY;
+        final double deltaZ = stepZ != 0 ? Math.abs(1 / dz) : Double.POSITIVE_INFINITY;
+
+        //Distance along the ray to the next block edge, ray starts at the center so half a block
+        double nextX = deltaX * 0.5;
+        double nextY = deltaY * 0.5;
+        double nextZ = deltaZ * 0.5;
+
+        final int rangeSQ = range * range;
+
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        while (true)
+        {
+            //Move to next block
+            if (nextX < nextY && nextX < nextZ)
+            {
+                x += stepX;
+                nextX += deltaX;
+            }
+            else if (nextY < nextZ)
+            {
+                y += stepY;
+                nextY += deltaY;
+            }
+            else
+            {
+                z += stepZ;
+                nextZ += deltaZ;
+            }
+
+            path[offset++] = pack(x, y, z);
+
+            if (x * x + y * y + z * z > rangeSQ)
+            {
+                return offset;
+            }
+        }
+    }
+
+    private static int cell(double dx, double dy, double dz)
+    {
+        return (cellIndex(dx) * GRID_SIZE + cellIndex(dy)) * GRID_SIZE + cellIndex(dz);
+    }
+
+    private static int cellIndex(double value)
+    {
+        return Math.max(0, Math.min(GRID_SIZE - 1, (int) Math.floor((value + 1) * 0.5 * GRID_SIZE)));
+    }
+
+    /**
+     * Packs a rounded direction into a key, rounding removes floating point noise between equal angles
+     */
+    private static long key(double dx, double dy, double dz)
+    {
+        final long rx = Math.round(dx * 1e5) + 100000;
+        final long ry = Math.round(dy * 1e5) + 100000;
+        final long rz = Math.round(dz * 1e5) + 100000;
+        return (rx << 40) | (ry << 20) | rz;
+    }
+
+    private static double[] trim(double[] array, int length)
+    {
+        final double[] out = new double[length];
+        System.arraycopy(array, 0, out, 0, length);
+        return out;
+    }
+}
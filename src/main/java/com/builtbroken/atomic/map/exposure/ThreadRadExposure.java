@@ -2,36 +2,40 @@ package com.builtbroken.atomic.map.exposure;
 
 import com.builtbroken.atomic.AtomicScience;
 import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.api.map.IDataMapSource;
 import com.builtbroken.atomic.api.radiation.IRadiationNode;
-import com.builtbroken.atomic.api.radiation.IRadiationSource;
 import com.builtbroken.atomic.config.logic.ConfigRadiation;
 import com.builtbroken.atomic.lib.radiation.RadiationHandler;
+import com.builtbroken.atomic.map.MapHandler;
 import com.builtbroken.atomic.map.data.DataChange;
-import com.builtbroken.atomic.map.data.DataPos;
 import com.builtbroken.atomic.map.data.ThreadDataChange;
+import com.builtbroken.atomic.map.data.node.MapDataSources;
+import com.builtbroken.atomic.map.data.node.MapNodeUpdate;
 import com.builtbroken.atomic.map.data.storage.DataChunk;
 import com.builtbroken.atomic.map.exposure.node.RadSourceMap;
-import com.builtbroken.atomic.map.exposure.node.RadiationNode;
+import com.builtbroken.atomic.map.exposure.node.RadiationSource;
 import com.builtbroken.jlib.lang.StringHelpers;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.DimensionManager;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import static java.lang.Math.cos;
-import static java.lang.Math.sin;
+import java.util.*;
 
 /**
  * Handles updating the radiation map
+ * <p>
+ * Keeps the ray data of each source, see {@link RadiationTrace}, so changes in
+ * strength and nearby blocks only update the rays and nodes affected.
  *
  *
  * Created by Dark(DarkGuardsman, Robert) on 4/28/2018.
  */
 public class ThreadRadExposure extends ThreadDataChange
 {
+    /** Ray data from the last update of each source, weak as map sources are not tracked for removal */
+    private final Map<IDataMapSource, RadiationTrace> traces = Collections.synchronizedMap(new WeakHashMap());
+
     public ThreadRadExposure()
     {
         super("ThreadRadExposure");
@@ -45,63 +49,61 @@ public class ThreadRadExposure extends ThreadDataChange
         final World world = DimensionManager.getWorld(change.dim());
         if (world != null) //TODO check if world is loaded
         {
-            final HashMap<BlockPos, Integer> collectedData = updateValue(world, change.xi(), change.yi(), change.zi(), change.value);
-            if (shouldRun)
+            final int rad = RadiationHandler.getRadFromMaterial(change.value);
+            final int edit_range = getEditRange(rad);
+
+            //Try to reuse data from the last update
+            final RadiationTrace lastTrace = ConfigRadiation.ENABLE_INCREMENTAL_UPDATES ? traces.get(change.source) : null;
+            if (lastTrace != null && lastTrace.valid && change.value > 0 && edit_range > 1
+                    && lastTrace.matches(change.dim(), change.xi(), change.yi(), change.zi(), edit_range))
             {
-                //TODO convert to method or class
-                ((WorldServer) world).addScheduledTask(() ->
+                final HashMap<BlockPos, Integer> collectedData;
+                final boolean complete;
+                if (lastTrace.rad != rad)
                 {
-                    if (change.source instanceof IRadiationSource)
-                    {
-                        final IRadiationSource source = ((IRadiationSource) change.source);
-                        //Get data
-                        final HashMap<BlockPos, IRadiationNode> oldMap = source.getCurrentNodes();
-                        final HashMap<BlockPos, IRadiationNode> newMap = new HashMap();
-
-                        //Remove old data from map
-                        source.disconnectMapData();
-
-                        //Add new data, recycle old nodes to reduce memory churn
-                        for (Map.Entry<BlockPos, Integer> entry : collectedData.entrySet()) //TODO move this to source to give full control over data structure
-                        {
-                            final int value = entry.getValue();
-                            final BlockPos pos = entry.getKey();
-
-                            if (oldMap != null && oldMap.containsKey(pos))
-                            {
-                                final IRadiationNode node = oldMap.get(pos);
-                                if (node != null)
-                                {
-                                    //Update value
-                                    node.setRadiationValue(value);
-
-                                    //Store in new map
-                                    newMap.put(pos, node);
-                                }
-
-                                //Remove from old map
-                                oldMap.remove(pos);
-                            }
-                            else
-                            {
-                                newMap.put(pos, RadiationNode.get(source, value));
-                            }
-                        }
-
-                        //Clear old data
-                        source.disconnectMapData();
-                        source.clearMapData();
+                    lastTrace.scale(world, rad);
+                    lastTrace.updateChangedBlocks(world);
+                    collectedData = lastTrace.collect();
+                    complete = true;
+                }
+                else
+                {
+                    collectedData = lastTrace.updateChangedBlocks(world);
+                    complete = false;
+                }
 
-                        //Set new data
-                        source.setCurrentNodes(newMap);
+                if (shouldRun)
+                {
+                    applyChanges(change.source, lastTrace, collectedData, complete);
+                }
+            }
+            else
+            {
+                traces.remove(change.source);
 
-                        //Tell the source to connect to the map
-                        source.connectMapData();
+                RadiationTrace trace = null;
+                if (change.value > 0 && edit_range > 1)
+                {
+                    trace = trace(world, change.xi(), change.yi(), change.zi(), rad, edit_range);
+                    if (ConfigRadiation.ENABLE_INCREMENTAL_UPDATES && shouldRun)
+                    {
+                        traces.put(change.source, trace);
+                    }
+                }
 
-                        //Trigger source update
-                        source.initMapData();
+                final HashMap<BlockPos, Integer> collectedData = trace != null ? trace.collect() : new HashMap();
+                final RadiationTrace newTrace = trace;
+                if (shouldRun && change.source instanceof RadiationSource)
+                {
+                    final RadiationSource source = (RadiationSource) change.source;
+                    final MapNodeUpdate<IRadiationNode> update = new MapNodeUpdate(source, collectedData, true);
+                    if (newTrace != null)
+                    {
+                        //Track nodes so later changes can be applied directly
+                        update.onComplete = () -> newTrace.appliedNodes = source.getCurrentNodes();
                     }
-                });
+                    MapHandler.APPLY_QUEUE.queue(update);
+                }
             }
 
             if (AtomicScience.runningAsDev)
@@ -119,134 +121,129 @@ public class ThreadRadExposure extends ThreadDataChange
     }
 
     /**
-     * Removes the old value from the map
+     * Queues the result of an incremental update to be applied to the nodes of the source.
+     * <p>
+     * Nodes are updated in place, only blocks no longer reached are removed
+     * and only newly reached blocks are added.
      *
-     * @param value - value to remove
-     * @param cx    - change location
-     * @param cy    - change location
-     * @param cz    - change location
-     * @return map of position to edit
+     * @param host     - source
+     * @param trace    - trace used to generate the data
+     * @param data     - changed values, -1 if no longer reached
+     * @param complete - true if the data contains all blocks reached, blocks missing from the data are removed
      */
-    protected HashMap<BlockPos, Integer> updateValue(World world, int cx, int cy, int cz, int value)
+    protected void applyChanges(IDataMapSource host, RadiationTrace trace, HashMap<BlockPos, Integer> data, boolean complete)
     {
-        if (value > 0)
+        if (host instanceof RadiationSource)
         {
-            //Track data, also used to prevent editing same tiles (first pos is location, second stores data)
-            final HashMap<BlockPos, Integer> radiationData = new HashMap();
-
-            final int rad = RadiationHandler.getRadFromMaterial(value);
-            final int edit_range = Math.min(ConfigRadiation.MAX_UPDATE_RANGE, (int) Math.floor(RadiationHandler.getDecayRange(rad)));
-
-            if (edit_range > 1)
+            final RadiationSource source = (RadiationSource) host;
+            final MapNodeUpdate<IRadiationNode> update = new MapNodeUpdate(source, data, complete);
+            update.startCheck = () ->
             {
-                //How many steps to go per rotation
-                final int steps = (int) Math.ceil(Math.PI / Math.atan(1.0D / edit_range));
-
-                for (int phi_n = 0; phi_n < 2 * steps; phi_n++)
+                //Nodes were changed outside of the thread, do a full update instead
+                final HashMap<BlockPos, IRadiationNode> nodes = source.getCurrentNodes();
+                if (!trace.valid || nodes == null || nodes != trace.appliedNodes || !source.hasActiveMapData())
                 {
-                    for (int theta_n = 0; theta_n < 2 * steps; theta_n++)
-                    {
-                        //Get angles for rotation steps
-                        double yaw = Math.PI * 2 / steps * phi_n;
-                        double pitch = Math.PI * 2 / steps * theta_n;
-
-                        //Figure out vector to move for trace (cut in half to improve trace skipping blocks)
-                        double dx = sin(pitch) * cos(yaw) * 0.5;
-                        double dy = cos(pitch) * 0.5;
-                        double dz = sin(pitch) * sin(yaw) * 0.5;
-
-                        path(radiationData, world,
-                                cx + 0.5, cy + 0.5, cz + 0.5,
-                                dx, dy, dz,
-                                rad, edit_range);
-                    }
+                    trace.valid = false;
+                    traces.remove(host, trace);
+                    source.getType().queueSourceForUpdate(source);
+                    return false;
                 }
-            }
-            return radiationData;
+                return true;
+            };
+            MapHandler.APPLY_QUEUE.queue(update);
         }
-        return new HashMap();
     }
 
-    protected void path(HashMap<BlockPos, Integer> radiationData, World world,
-                        final double center_x, final double center_y, final double center_z,
-                        final double dx, final double dy, final double dz,
-                        double power, double edit_range)
+    /**
+     * Called from the main thread when a block changes. Marks the block on
+     * each source that reaches it and queues the source for an update.
+     *
+     * @param world    - world
+     * @param pos      - block changed
+     * @param oldState - block before the change
+     * @param newState - block after the change
+     */
+    public void onBlockChanged(World world, BlockPos pos, IBlockState oldState, IBlockState newState)
     {
-        final int cx = (int) Math.floor(center_x);
-        final int cy = (int) Math.floor(center_y);
-        final int cz = (int) Math.floor(center_z);
-
-        //Position
-        double x = center_x;
-        double y = center_y;
-        double z = center_z;
-
-        double distanceSQ = 1;
-        double radDistance = 1;
-
-        DataPos prevPos = null;
-
-        do
+        if (!ConfigRadiation.ENABLE_INCREMENTAL_UPDATES)
         {
-            if (!shouldRun)
-            {
-                return;
-            }
+            return;
+        }
 
-            //Convert double position to int position
-            int xi = (int) Math.floor(x);
-            int yi = (int) Math.floor(y);
-            int zi = (int) Math.floor(z);
+        //Skip changes that keep the same resistance, tiles may provide resistance through capabilities so are always checked
+        if (!oldState.getBlock().hasTileEntity(oldState) && !newState.getBlock().hasTileEntity(newState)
+                && RadiationHandler.getReduceRadiationForBlock(world, pos, oldState, null) == RadiationHandler.getReduceRadiationForBlock(world, pos, newState, null))
+        {
+            return;
+        }
 
-            if(y < 0 || y > world.getHeight()) //TODO hook into config to allow increase for cubic chunk maps
-            {
-                return;
-            }
+        //Only sources near the block can reach it, no source has a range over the max
+        final int dim = world.provider.getDimension();
+        final List<IDataMapSource> nearby = new ArrayList();
+        MapDataSources.getSources(world, pos, ConfigRadiation.MAX_UPDATE_RANGE, DataMapType.RADIATION, nearby);
+        if (nearby.isEmpty())
+        {
+            return;
+        }
 
-            //Ignore center block
-            if (!(xi == cx && yi == cy && zi == cz))
+        final List<IDataMapSource> sources = new ArrayList();
+        synchronized (traces)
+        {
+            for (IDataMapSource source : nearby)
             {
-
-                //Get distance to center of block from center
-                double distanceX = center_x - (xi + 0.5);
-                double distanceY = center_y - (yi + 0.5);
-                double distanceZ = center_z - (zi + 0.5);
-                distanceSQ = distanceX * distanceX + distanceZ * distanceZ + distanceY * distanceY;
-
-                DataPos pos = DataPos.get(xi, yi, zi);
-
-                //Only do action one time per block (not a perfect solution, but solves double hit on the same block in the same line)
-                if (prevPos != pos)
+                final RadiationTrace trace = traces.get(source);
+                if (trace != null && trace.dim == dim && trace.isInRange(pos))
                 {
-                    //Reduce radiation for distance
-                    power = RadiationHandler.getRadForDistance(power, radDistance, distanceSQ);
-
-                    //Reduce radiation
-                    power = RadiationHandler.reduceRadiationForBlock(world, xi, yi, zi, power);
-
-
-                    //Store change
-                    int change = (int) Math.floor(power);
-                    radiationData.put(pos.disposeReturnBlockPos(), change);
-
-                    //Note previous block
-                    prevPos = pos;
-
-                    //Track last distance of radiation, as power is now measured from that position
-                    radDistance = distanceSQ;
+                    trace.changedBlocks.add(pos.toImmutable());
+                    sources.add(source);
                 }
-                else
+                //Field restored from the save has no rays yet, trace it again if it reaches the block
+                else if (trace == null && source instanceof RadiationSource
+                        && ((RadiationSource) source).getCurrentNodes() != null
+                        && ((RadiationSource) source).getCurrentNodes().containsKey(pos))
                 {
-                    pos.dispose();
+                    sources.add(source);
                 }
             }
+        }
+
+        //Queue outside of lock, as queuing locks the thread's change tracking
+        for (IDataMapSource source : sources)
+        {
+            source.getType().queueSourceForUpdate(source);
+        }
+    }
+
+    /**
+     * Range of a source
+     *
+     * @param rad - radiation at the source
+     * @return range in blocks
+     */
+    protected int getEditRange(int rad)
+    {
+        return Math.min(ConfigRadiation.MAX_UPDATE_RANGE, (int) Math.floor(RadiationHandler.getDecayRange(rad)));
+    }
 
-            //Move forward
-            x += dx;
-            y += dy;
-            z += dz;
+    /**
+     * Traces all rays out from the source
+     *
+     * @param world      - world to pull block data from
+     * @param cx         - source block
+     * @param cy         - source block
+     * @param cz         - source block
+     * @param rad        - radiation at the source
+     * @param edit_range - max range of the rays
+     * @return trace containing the results
+     */
+    protected RadiationTrace trace(World world, int cx, int cy, int cz, int rad, int edit_range)
+    {
+        final RadiationTrace trace = new RadiationTrace(world.provider.getDimension(), cx, cy, cz, rad, edit_range);
+        for (int ray = 0; ray < trace.table.size() && shouldRun; ray++)
+        {
+            trace.traceRay(world, ray);
         }
-        while ((distanceSQ <= edit_range * edit_range) && power > 1);
+        return trace;
     }
 
     /**
@@ -69,7 +69,7 @@ public class RadSourceMap extends RadiationSource<BlockPos>
     @Override
     public boolean isStillValid()
     {
-        return world() != null && world().isBlockLoaded(getHost()) && value == getType().getValue(MapHandler.GLOBAL_DATA_MAP.getData(world(), getHost()));
+        return world() != null && world().isBlockLoaded(getHost()) && value == MapHandler.GLOBAL_DATA_MAP.getValue(world(), getHost(), getType());
     }
 
     @Override
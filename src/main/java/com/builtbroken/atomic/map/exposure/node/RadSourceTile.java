@@ -1,5 +1,7 @@
 package com.builtbroken.atomic.map.exposure.node;
 
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.map.data.node.MapDataSources;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.World;
 
@@ -15,14 +17,26 @@ public class RadSourceTile<E extends TileEntity> extends RadiationSource<E>
 {
     private final IntSupplier radFunction;
     private final BooleanSupplier activeFunction;
+    /** Set if the host reports changes itself */
+    private final boolean changeTracked;
 
     private final WeakReference<E> hostReference;
 
     public RadSourceTile(E host, IntSupplier radFunction, BooleanSupplier activeFunction)
+    {
+        this(host, radFunction, activeFunction, false);
+    }
+
+    /**
+     * @param changeTracked - true if the host calls {@link MapDataSources#markDirty(IDataMapSource)}
+     *                      when the value or active state changes, see {@link #isChangeTracked()}
+     */
+    public RadSourceTile(E host, IntSupplier radFunction, BooleanSupplier activeFunction, boolean changeTracked)
     {
         hostReference = new WeakReference(host);
         this.radFunction = radFunction;
         this.activeFunction = activeFunction;
+        this.changeTracked = changeTracked;
     }
 
     @Override
@@ -37,6 +51,12 @@ public class RadSourceTile<E extends TileEntity> extends RadiationSource<E>
         return radFunction.getAsInt();
     }
 
+    @Override
+    public boolean isChangeTracked()
+    {
+        return changeTracked;
+    }
+
     @Override
     public boolean doesSourceExist()
     {
@@ -1,30 +1,24 @@
 package com.builtbroken.atomic.map.exposure.node;
 
 import com.builtbroken.atomic.api.map.DataMapType;
-import com.builtbroken.atomic.api.map.IDataMapSource;
 import com.builtbroken.atomic.api.radiation.IRadiationNode;
 import com.builtbroken.atomic.api.radiation.IRadiationSource;
 import com.builtbroken.atomic.map.data.DataPool;
-import com.builtbroken.atomic.map.data.IDataPoolObject;
-
-import javax.annotation.Nullable;
-import java.lang.ref.WeakReference;
+import com.builtbroken.atomic.map.data.node.DataMapNode;
+import com.builtbroken.atomic.map.data.node.MapNodeSource;
+import com.builtbroken.atomic.map.data.node.SourceHandleTable;
 
 /**
  * Created by Dark(DarkGuardsman, Robert) on 9/21/2018.
  */
-public class RadiationNode implements IRadiationNode, IDataPoolObject
+public class RadiationNode extends DataMapNode implements IRadiationNode
 {
-    private static final DataPool<RadiationNode> RADIATION_NODE_POOL = new DataPool(400000); //TODO add config
-
-    private WeakReference<IRadiationSource> source;
-
-    private int value;
+    private static final DataPool<RadiationNode> RADIATION_NODE_POOL = new DataPool("RadiationNode", 400000); //TODO add config
 
     private RadiationNode(IRadiationSource source, int value)
     {
-        this.source = new WeakReference(source);
-        this.value = value;
+        super(value);
+        this.sourceHandle = MapNodeSource.getHandle(source);
     }
 
     @Override
@@ -36,7 +30,7 @@ public class RadiationNode implements IRadiationNode, IDataPoolObject
     @Override
     public void setRadiationValue(int value)
     {
-        this.value = value;
+        setValue(value);
     }
 
     @Override
@@ -45,17 +39,6 @@ public class RadiationNode implements IRadiationNode, IDataPoolObject
         return DataMapType.RADIATION;
     }
 
-    @Nullable
-    @Override
-    public IDataMapSource getSource()
-    {
-        if (source == null || source.get() == null)
-        {
-            return null;
-        }
-        return source.get();
-    }
-
     public static RadiationNode get(IRadiationSource source, int value)
     {
         if (RADIATION_NODE_POOL.has())
@@ -63,7 +46,7 @@ public class RadiationNode implements IRadiationNode, IDataPoolObject
             RadiationNode dataChange = RADIATION_NODE_POOL.get();
             if (dataChange != null)
             {
-                dataChange.source = new WeakReference(source);
+                dataChange.sourceHandle = MapNodeSource.getHandle(source);
                 dataChange.value = value;
                 return dataChange;
             }
@@ -74,7 +57,8 @@ public class RadiationNode implements IRadiationNode, IDataPoolObject
     @Override
     public void dispose()
     {
-        source = null;
+        sourceHandle = SourceHandleTable.NO_HANDLE;
+        resetLayer();
         RADIATION_NODE_POOL.dispose(this);
     }
 }
@@ -26,6 +26,24 @@ public abstract class RadiationSource<E> extends MapNodeSource<E, IRadiationNode
         return super.isStillValid() && isRadioactive();
     }
 
+    @Override
+    public IRadiationNode createNode(int value)
+    {
+        return RadiationNode.get(this, value);
+    }
+
+    @Override
+    public int getNodeValue(IRadiationNode node)
+    {
+        return node.getRadiationValue();
+    }
+
+    @Override
+    public void setNodeValue(IRadiationNode node, int value)
+    {
+        node.setRadiationValue(value);
+    }
+
     @Override
     public DataMapType getType()
     {
@@ -0,0 +1,353 @@
+package com.builtbroken.atomic.map.thermal;
+
+import com.builtbroken.atomic.lib.thermal.HeatSpreadDirection;
+import com.builtbroken.atomic.lib.thermal.ThermalHandler;
+import com.builtbroken.atomic.map.MapHandler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Dense grid used to calculate the spread of heat from a source.
+ * <p>
+ * Covers the box around the source with flat arrays indexed by position, so the pathfinder does not
+ * allocate per tile. Arrays are kept between calls and entries are marked with a generation stamp,
+ * so nothing needs to be cleared. Block properties are read once per position and cached for the call.
+ * <p>
+ * Not thread safe, a grid must only be used by one thread at a time.
+ */
+public class HeatSpreadGrid
+{
+    private static final HeatSpreadDirection[] DIRECTIONS = HeatSpreadDirection.values();
+
+    //Grid size
+    private int range;
+    private int size;
+    private int minX;
+    private int minY;
+    private int minZ;
+
+    /** Heat at each position, in kilo-joules */
+    private int[] heat;
+    /** Heat pulled from each position by its neighbors */
+    private int[] used;
+    /** Generation the position was last touched, see {@link #generation} */
+    private int[] stamp;
+    /** Cached heat transfer rate of the block */
+    private float[] rate;
+    /** Cached heat capacity of the block */
+    private float[] capacity;
+
+    /** Stamp for cached block data in the current call, +1 marks the position as pathed */
+    private int generation;
+
+    /** Positions pathed in order, doubles as the path queue */
+    private int[] tiles = new int[4096];
+    private int tileCount;
+
+    /** Temp storage for sorting */
+    private int[] sortTemp = new int[4096];
+    private int[] sortCount;
+
+    /** Positions to add to path queue after each loop */
+    private final int[] hold = new int[6];
+
+    private final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+    /**
+     * Calculates spread of heat from source.
+     * <p>
+     * Works by pathing all tiles and calculating heat movement towards current tile.
+     * In other words: Pulls heat towards tile instead of pushing heat.
+     * <p>
+     * Heat is not consumed for movement as would be expected with real world movement. Instead
+     * its assumed heat will constantly be generated. Thus migrating heat is not needed beyond
+     * estimating how much heat would be moved.
+     *
+     * @param world - map to pull data from
+     * @param cx    - center of heat
+     * @param cy    - center of heat
+     * @param cz    - center of heat
+     * @param heat  - amount of heat to move
+     * @param range - max distance on each axis, exclusive
+     * @return number of tiles pathed, see {@link #collect()}
+     */
+    public int spread(final World world, final int cx, final int cy, final int cz, final int heat, final int range)
+    {
+        setup(cx, cy, cz, range);
+
+        final int height = world.getHeight(); //TODO hook into config to allow increase for cubic chunk maps
+
+        //Add center point
+        final int center = index(cx, cy, cz);
+        load(world, center, cx, cy, cz);
+        addTile(center, heat);
+
+        //Add connected tiles, first 6 directions are the sides
+        for (int d = 0; d < 6; d++)
+        {
+            final HeatSpreadDirection direction = DIRECTIONS[d];
+            final int y = cy + direction.offsetY;
+            if (y >= 0 && y < height)
+            {
+                final int index = index(cx + direction.offsetX, y, cz + direction.offsetZ);
+                load(world, index, cx + direction.offsetX, y, cz + direction.offsetZ);
+                addTile(index, 0);
+            }
+        }
+
+        //Breadth first pathfinder, current queue is tiles[head, roundEnd) and next queue is tiles[roundEnd, tileCount)
+        int head = 1;
+        int roundEnd = tileCount;
+
+        while (head < tileCount)
+        {
+            if (head == roundEnd)
+            {
+                sortByDistance(roundEnd, tileCount);
+                roundEnd = tileCount;
+            }
+
+            //Get next
+            final int current = tiles[head++];
+            final int lx = current / (size * size);
+            final int ly = current / size % size;
+            final int lz = current % size;
+            final int x = minX + lx;
+            final int y = minY + ly;
+            final int z = minZ + lz;
+
+            //Calculate heat pushed from all sides & look for new tiles to path
+            int heatAtPosition = 0;
+
+            //Total heat transfer ratio, used to convert ratio to percentages when balancing heat flow
+            double heatRateTotal = 0;
+
+            //Find directions to spread heat and calculate max heat ratio
+            int spreadDirections = 0;
+            for (int d = 0; d < DIRECTIONS.length; d++)
+            {
+                final HeatSpreadDirection direction = DIRECTIONS[d];
+                final int nx = lx + direction.offsetX;
+                final int ny = ly + direction.offsetY;
+                final int nz = lz + direction.offsetZ;
+
+                //Check range to prevent infinite spread
+                if (inGrid(nx) && inGrid(ny) && inGrid(nz) && y + direction.offsetY >= 0 && y + direction.offsetY < height) //TODO check delta temp, ignore high heat values to improve heat spread
+                {
+                    spreadDirections |= 1 << d;
+
+                    //Increase heat spread ratio
+                    final int index = (nx * size + ny) * size + nz;
+                    load(world, index, x + direction.offsetX, y + direction.offsetY, z + direction.offsetZ);
+                    heatRateTotal += rate[index];
+                }
+            }
+
+            //Only loop values we had within range
+            int holdCount = 0;
+            int loaded = -1;
+            for (int d = 0; d < DIRECTIONS.length; d++)
+            {
+                if ((spreadDirections & 1 << d) != 0)
+                {
+                    final HeatSpreadDirection direction = DIRECTIONS[d];
+                    final int index = ((lx + direction.offsetX) * size + ly + direction.offsetY) * size + lz + direction.offsetZ;
+
+                    //If we have no path position add to queue
+                    if (stamp[index] != generation + 1)
+                    {
+                        //Only add if only sides, do not path corners. As it will result in low heat spread.
+                        if (d < 6)
+                        {
+                            hold[holdCount++] = index;
+                        }
+                    }
+                    //If we have data do heat movement
+                    else
+                    {
+                        //Convert ratio into percentage
+                        final double percentage = rate[index] / heatRateTotal;
+
+                        //Heat only moves into loaded blocks
+                        if (loaded == -1)
+                        {
+                            loaded = world.isBlockLoaded(pos.setPos(x, y, z)) ? 1 : 0;
+                        }
+
+                        //Calculate heat to move to current position from direction
+                        final int heatMoved = loaded == 1
+                                ? getHeatSpread(index, current, (int) Math.floor(this.heat[index] * (percentage * direction.percentage)))
+                                : this.heat[index];
+
+                        //Update direction position with heat moved
+                        used[index] += heatMoved;
+
+                        //Increase heat at position
+                        heatAtPosition += heatMoved;
+                    }
+                }
+            }
+
+            //Only add positions from hold if there is heat to move from current
+            if (heatAtPosition > 0)
+            {
+                for (int i = 0; i < holdCount; i++)
+                {
+                    addTile(hold[i], 0);
+                }
+            }
+
+            //Keep track of value
+            this.heat[current] = heatAtPosition;
+        }
+
+        return tileCount;
+    }
+
+    /**
+     * Checks how much heat should spread from one block to the next.
+     * <p>
+     * In theory each block should have a different spread value. As
+     * heat does not transfer evenly between sources.
+     * <p>
+     * As well heat travels differently between different types of blocks.
+     * Air blocks will use convection while solid blocks direct heat transfer.
+     *
+     * @param source - index of the source of heat
+     * @param target - index of where to move heat
+     * @param heat   - heat to transfer (some % of total heat), in kilo-joules
+     * @return heat to actually transfer, in kilo-joules
+     */
+    protected int getHeatSpread(int source, int target, int heat)
+    {
+        //We assume target is zero relative to source
+        final double deltaTemp = (this.heat[source] * 1000L) / (double) capacity[source]; //kj -> j
+        if (deltaTemp > 0)
+        {
+            final double heatMovementRate = rate[target] * deltaTemp;
+            return (int) Math.min(heatMovementRate * 20 * 60, heat);
+        }
+        return 0;
+    }
+
+    /**
+     * Collects the heat of each tile pathed in the last call
+     *
+     * @return map of position to heat
+     */
+    public HashMap<BlockPos, Integer> collect()
+    {
+        final HashMap<BlockPos, Integer> data = new HashMap();
+        for (int i = 0; i < tileCount; i++)
+        {
+            final int index = tiles[i];
+            data.put(new BlockPos(minX + index / (size * size), minY + index / size % size, minZ + index % size), heat[index] - used[index]);
+        }
+        return data;
+    }
+
+    private void setup(int cx, int cy, int cz, int range)
+    {
+        if (this.range != range)
+        {
+            this.range = range;
+            this.size = range * 2 - 1;
+
+            final int cells = size * size * size;
+            heat = new int[cells];
+            used = new int[cells];
+            stamp = new int[cells];
+            rate = new float[cells];
+            capacity = new float[cells];
+            sortCount = new int[3 * (range - 1) * (range - 1) + 2];
+            generation = 0;
+        }
+
+        minX = cx - range + 1;
+        minY = cy - range + 1;
+        minZ = cz - range + 1;
+        tileCount = 0;
+
+        //Move to next generation, reset if the stamp wraps
+        generation += 2;
+        if (generation <= 0)
+        {
+            Arrays.fill(stamp, 0);
+            generation = 2;
+        }
+    }
+
+    /**
+     * Loads block data for the position if not already loaded this call
+     */
+    private void load(World world, int index, int x, int y, int z)
+    {
+        if (stamp[index] < generation)
+        {
+            stamp[index] = generation;
+            pos.setPos(x, y, z);
+            rate[index] = (float) ThermalHandler.getHeatTransferRate(world, pos);
+            capacity[index] = MapHandler.THERMAL_MAP.getHeatCapacity(world, pos);
+        }
+    }
+
+    private void addTile(int index, int heat)
+    {
+        if (tileCount == tiles.length)
+        {
+            tiles = Arrays.copyOf(tiles, tiles.length * 2);
+        }
+        tiles[tileCount++] = index;
+        stamp[index] = generation + 1;
+        this.heat[index] = heat;
+        this.used[index] = 0;
+    }
+
+    /**
+     * Stable sort of the tiles by distance to the center, counting sort as distances are small
+     */
+    private void sortByDistance(int start, int end)
+    {
+        final int count = end - start;
+        if (sortTemp.length < count)
+        {
+            sortTemp = new int[Math.max(count, sortTemp.length * 2)];
+        }
+
+        Arrays.fill(sortCount, 0);
+        for (int i = start; i < end; i++)
+        {
+            sortCount[distanceSQ(tiles[i]) + 1]++;
+        }
+        for (int i = 1; i < sortCount.length; i++)
+        {
+            sortCount[i] += sortCount[i - 1];
+        }
+        for (int i = start; i < end; i++)
+        {
+            sortTemp[sortCount[distanceSQ(tiles[i])]++] = tiles[i];
+        }
+        System.arraycopy(sortTemp, 0, tiles, start, count);
+    }
+
+    private int distanceSQ(int index)
+    {
+        final int dx = index / (size * size) - (range - 1);
+        final int dy = index / size % size - (range - 1);
+        final int dz = index % size - (range - 1);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private int index(int x, int y, int z)
+    {
+        return ((x - minX) * size + (y - minY)) * size + (z - minZ);
+    }
+
+    private boolean inGrid(int local)
+    {
+        return local >= 0 && local < size;
+    }
+}
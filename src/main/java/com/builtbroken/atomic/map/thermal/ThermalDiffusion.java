@@ -0,0 +1,343 @@
+package com.builtbroken.atomic.map.thermal;
+
+import com.builtbroken.atomic.api.thermal.IThermalSource;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Time stepped heat diffusion for a single world.
+ * <p>
+ * Heat is stored per block in chunk sections and moved between neighboring blocks each step based
+ * on the difference in temperature and the heat transfer rate of the blocks. All sources add their
+ * heat into the same grid, so the cost of a step depends on the number of sections holding heat
+ * rather than the number of sources or their range. Sections without heat are dropped and only
+ * sections holding heat, or next to a section with heat on its edge, are stepped.
+ * <p>
+ * Sources are updated from any thread. Steps are run by a single thread at a time, with sections
+ * optionally split over a worker pool.
+ */
+public class ThermalDiffusion
+{
+    public final int dim;
+
+    /** Active sections by key */
+    private final ConcurrentHashMap<Long, ThermalDiffusionSection> sections = new ConcurrentHashMap();
+
+    /** Heat added each second by source, latest value from the source's last change */
+    private final Map<IThermalSource, BlockPos> sourcePositions = Collections.synchronizedMap(new WeakHashMap());
+    private final Map<IThermalSource, Integer> sourceHeat = Collections.synchronizedMap(new WeakHashMap());
+
+    /** Set while a step is queued, running or waiting to be applied */
+    public volatile boolean stepPending = false;
+
+    public ThermalDiffusion(int dim)
+    {
+        this.dim = dim;
+    }
+
+    ///----------------------------------------------------------------
+    ///--------Sources
+    ///----------------------------------------------------------------
+
+    /**
+     * Sets the heat generated by the source
+     *
+     * @param source - source
+     * @param pos    - location of the source
+     * @param heat   - heat generated per second in kilo-joules, 0 or less to remove
+     */
+    public void setSource(IThermalSource source, BlockPos pos, int heat)
+    {
+        synchronized (sourceHeat)
+        {
+            if (heat > 0)
+            {
+                sourcePositions.put(source, pos);
+                sourceHeat.put(source, heat);
+            }
+            else
+            {
+                sourcePositions.remove(source);
+                sourceHeat.remove(source);
+            }
+        }
+    }
+
+    /**
+     * Removes sources that are no longer valid, main thread only
+     */
+    public void removeInvalidSources()
+    {
+        synchronized (sourceHeat)
+        {
+            sourceHeat.keySet().removeIf(source -> !source.isStillValid());
+            sourcePositions.keySet().retainAll(sourceHeat.keySet());
+        }
+    }
+
+    public int getSourceCount()
+    {
+        return sourceHeat.size();
+    }
+
+    public int getSectionCount()
+    {
+        return sections.size();
+    }
+
+    ///----------------------------------------------------------------
+    ///--------Step
+    ///----------------------------------------------------------------
+
+    /**
+     * Advances heat by one step
+     *
+     * @param world     - world to pull block data from
+     * @param pool      - workers to split sections over, null to run on the calling thread
+     * @param seconds   - length of the step
+     * @param timeScale - conductance multiplier per second
+     * @param loss      - fraction of heat lost each step
+     * @param minHeat   - heat below which a block is cold
+     * @return blocks with a changed value, -1 if the block no longer has heat
+     */
+    public HashMap<BlockPos, Integer> step(World world, ExecutorService pool, float seconds, float timeScale, float loss, float minHeat) throws InterruptedException
+    {
+        final HashMap<BlockPos, Integer> changes = new HashMap();
+
+        //Drop sections that are no longer loaded
+        sections.values().removeIf(section ->
+        {
+            if (world.getChunkProvider().getLoadedChunk(section.sx, section.sz) == null)
+            {
+                clearPublished(section, changes);
+                return true;
+            }
+            return false;
+        });
+
+        //Add heat from sources
+        final HashMap<BlockPos, Integer> injection;
+        synchronized (sourceHeat)
+        {
+            injection = new HashMap();
+            for (Map.Entry<IThermalSource, Integer> entry : sourceHeat.entrySet())
+            {
+                final BlockPos pos = sourcePositions.get(entry.getKey());
+                if (pos != null)
+                {
+                    injection.merge(pos, entry.getValue(), Integer::sum);
+                }
+            }
+        }
+        for (Map.Entry<BlockPos, Integer> entry : injection.entrySet())
+        {
+            final BlockPos pos = entry.getKey();
+            final ThermalDiffusionSection section = getSection(world, pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+            if (section != null)
+            {
+                section.heat[ThermalDiffusionSection.index(pos.getX(), pos.getY(), pos.getZ())] += entry.getValue() * seconds;
+                section.activeCells = Math.max(1, section.activeCells);
+                section.edgeMask |= ThermalDiffusionSection.edgeBits(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+            }
+        }
+
+        //Add sections heat can move into, collect sections to step
+        final List<ThermalDiffusionSection> active = new ArrayList();
+        for (ThermalDiffusionSection section : new ArrayList(sections.values()))
+        {
+            if (section.activeCells > 0)
+            {
+                for (int side = 0; side < 6; side++)
+                {
+                    if ((section.edgeMask & 1 << side) != 0)
+                    {
+                        getSection(world, section.sx + offsetX(side), section.sy + offsetY(side), section.sz + offsetZ(side));
+                    }
+                }
+            }
+        }
+        for (ThermalDiffusionSection section : sections.values())
+        {
+            //Link neighbors, missing neighbors block heat flow
+            boolean edgeHeat = false;
+            for (int side = 0; side < 6; side++)
+            {
+                final ThermalDiffusionSection neighbor = sections.get(key(section.sx + offsetX(side), section.sy + offsetY(side), section.sz + offsetZ(side)));
+                section.neighbors[side] = neighbor;
+                edgeHeat |= neighbor != null && neighbor.activeCells > 0 && (neighbor.edgeMask & 1 << opposite(side)) != 0;
+            }
+
+            if (section.activeCells > 0 || edgeHeat)
+            {
+                if (section.propertiesDirty)
+                {
+                    section.loadProperties(world);
+                }
+                active.add(section);
+            }
+        }
+
+        //Step, sections only write to their own next values so can run in parallel
+        final float scale = timeScale * seconds * 1000; //kj -> j, matches temperature calculation of the pathfinder
+        final float keep = 1 - loss;
+        if (pool == null || active.size() < 2)
+        {
+            for (ThermalDiffusionSection section : active)
+            {
+                section.step(scale, keep, minHeat);
+            }
+        }
+        else
+        {
+            final List<Callable<Object>> tasks = new ArrayList();
+            for (ThermalDiffusionSection section : active)
+            {
+                tasks.add(() ->
+                {
+                    section.step(scale, keep, minHeat);
+                    return null;
+                });
+            }
+            pool.invokeAll(tasks);
+        }
+
+        //Apply step and find changed values
+        for (ThermalDiffusionSection section : active)
+        {
+            section.swap();
+            collectChanges(section, changes);
+        }
+
+        //Drop cold sections
+        sections.values().removeIf(ThermalDiffusionSection::isCold);
+        return changes;
+    }
+
+    private void collectChanges(ThermalDiffusionSection section, HashMap<BlockPos, Integer> changes)
+    {
+        int published = 0;
+        for (int index = 0; index < ThermalDiffusionSection.SIZE; index++)
+        {
+            final int value = (int) section.heat[index];
+            if (value != section.published[index])
+            {
+                section.published[index] = value;
+                changes.put(new BlockPos((section.sx << 4) + (index & 15), (section.sy << 4) + (index >> 8), (section.sz << 4) + (index >> 4 & 15)), value > 0 ? value : -1);
+            }
+            if (value != 0)
+            {
+                published++;
+            }
+        }
+        section.publishedCells = published;
+    }
+
+    private void clearPublished(ThermalDiffusionSection section, HashMap<BlockPos, Integer> changes)
+    {
+        for (int index = 0; index < ThermalDiffusionSection.SIZE; index++)
+        {
+            if (section.published[index] != 0)
+            {
+                changes.put(new BlockPos((section.sx << 4) + (index & 15), (section.sy << 4) + (index >> 8), (section.sz << 4) + (index >> 4 & 15)), -1);
+            }
+        }
+    }
+
+    /**
+     * Clears all heat, main thread only
+     *
+     * @return blocks that had a value in the thermal map, all set to -1
+     */
+    public HashMap<BlockPos, Integer> clear()
+    {
+        final HashMap<BlockPos, Integer> changes = new HashMap();
+        for (ThermalDiffusionSection section : sections.values())
+        {
+            clearPublished(section, changes);
+        }
+        sections.clear();
+        return changes;
+    }
+
+    ///----------------------------------------------------------------
+    ///--------Sections
+    ///----------------------------------------------------------------
+
+    /**
+     * Gets the section, creating it if the chunk is loaded
+     *
+     * @return section, or null if outside the world or not loaded
+     */
+    private ThermalDiffusionSection getSection(World world, int sx, int sy, int sz)
+    {
+        if (sy < 0 || sy >= world.getHeight() >> 4) //TODO hook into config to allow increase for cubic chunk maps
+        {
+            return null;
+        }
+
+        final long key = key(sx, sy, sz);
+        ThermalDiffusionSection section = sections.get(key);
+        if (section == null)
+        {
+            //Never load or generate chunks from the thread
+            final Chunk chunk = world.getChunkProvider().getLoadedChunk(sx, sz);
+            if (chunk != null)
+            {
+                section = new ThermalDiffusionSection(sx, sy, sz);
+                section.loadProperties(world);
+                sections.put(key, section);
+            }
+        }
+        return section;
+    }
+
+    /**
+     * Called when a block changes to read the properties of its section again
+     *
+     * @param pos - location
+     */
+    public void onBlockChanged(BlockPos pos)
+    {
+        final ThermalDiffusionSection section = sections.get(key(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+        if (section != null)
+        {
+            section.propertiesDirty = true;
+        }
+    }
+
+    private static int offsetX(int side)
+    {
+        return side == ThermalDiffusionSection.WEST ? -1 : side == ThermalDiffusionSection.EAST ? 1 : 0;
+    }
+
+    private static int offsetY(int side)
+    {
+        return side == ThermalDiffusionSection.DOWN ? -1 : side == ThermalDiffusionSection.UP ? 1 : 0;
+    }
+
+    private static int offsetZ(int side)
+    {
+        return side == ThermalDiffusionSection.NORTH ? -1 : side == ThermalDiffusionSection.SOUTH ? 1 : 0;
+    }
+
+    private static int opposite(int side)
+    {
+        return side ^ 1;
+    }
+
+    private static long key(int sx, int sy, int sz)
+    {
+        return ((long) sx & 0x3FFFFFF) << 34 | ((long) sz & 0x3FFFFFF) << 8 | (sy & 0xFF);
+    }
+}
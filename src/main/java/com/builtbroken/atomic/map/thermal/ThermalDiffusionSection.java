@@ -0,0 +1,198 @@
+package com.builtbroken.atomic.map.thermal;
+
+import com.builtbroken.atomic.lib.thermal.ThermalHandler;
+import com.builtbroken.atomic.map.MapHandler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Heat state of a 16x16x16 chunk section for {@link ThermalDiffusion}.
+ * <p>
+ * Heat is stored twice so a step can read the current values of this section and its
+ * neighbors while writing the next values, letting sections be stepped on different threads.
+ */
+public class ThermalDiffusionSection
+{
+    public static final int SIZE = 16 * 16 * 16;
+
+    //Sides, matches order of neighbors
+    public static final int DOWN = 0;
+    public static final int UP = 1;
+    public static final int NORTH = 2;
+    public static final int SOUTH = 3;
+    public static final int WEST = 4;
+    public static final int EAST = 5;
+
+    public final int sx;
+    public final int sy;
+    public final int sz;
+
+    /** Heat at each block in kilo-joules, above environment */
+    float[] heat = new float[SIZE];
+    /** Heat after the step being calculated */
+    float[] next = new float[SIZE];
+    /** Cached heat transfer rate of each block */
+    final float[] rate = new float[SIZE];
+    /** Cached heat capacity of each block */
+    final float[] capacity = new float[SIZE];
+    /** Value last applied to the thermal map */
+    final int[] published = new int[SIZE];
+
+    /** Neighbor sections by side, null if not active or not loaded */
+    final ThermalDiffusionSection[] neighbors = new ThermalDiffusionSection[6];
+
+    /** Number of blocks with heat above the min */
+    int activeCells;
+    /** Sides with heat on the edge, bit per side */
+    int edgeMask;
+    /** Number of blocks with a value in the thermal map */
+    int publishedCells;
+
+    /** Set when a block in the section changes so properties are read again */
+    volatile boolean propertiesDirty = true;
+
+    public ThermalDiffusionSection(int sx, int sy, int sz)
+    {
+        this.sx = sx;
+        this.sy = sy;
+        this.sz = sz;
+    }
+
+    /**
+     * Reads the heat properties of each block
+     *
+     * @param world - world the section is in, chunk must be loaded
+     */
+    void loadProperties(World world)
+    {
+        propertiesDirty = false;
+        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int index = 0; index < SIZE; index++)
+        {
+            pos.setPos((sx << 4) + (index & 15), (sy << 4) + (index >> 8), (sz << 4) + (index >> 4 & 15));
+            rate[index] = (float) ThermalHandler.getHeatTransferRate(world, pos);
+            capacity[index] = Math.max(1, MapHandler.THERMAL_MAP.getHeatCapacity(world, pos));
+        }
+    }
+
+    /**
+     * Calculates the next heat value of each block
+     *
+     * @param timeScale - conductance multiplier for the step
+     * @param keep      - fraction of heat kept after loss to the environment
+     * @param minHeat   - heat below which a block is cold
+     */
+    void step(float timeScale, float keep, float minHeat)
+    {
+        int active = 0;
+        int edges = 0;
+        for (int index = 0; index < SIZE; index++)
+        {
+            final int x = index & 15;
+            final int y = index >> 8;
+            final int z = index >> 4 & 15;
+
+            final float energy = heat[index] / capacity[index];
+            float value = heat[index];
+
+            //Exchange heat with each side, flow is only calculated from this side so neighbors get the same value
+            value += flow(index, energy, x > 0 ? this : neighbors[WEST], x > 0 ? index - 1 : index + 15, timeScale);
+            value += flow(index, energy, x < 15 ? this : neighbors[EAST], x < 15 ? index + 1 : index - 15, timeScale);
+            value += flow(index, energy, y > 0 ? this : neighbors[DOWN], y > 0 ? index - 256 : index + 3840, timeScale);
+            value += flow(index, energy, y < 15 ? this : neighbors[UP], y < 15 ? index + 256 : index - 3840, timeScale);
+            value += flow(index, energy, z > 0 ? this : neighbors[NORTH], z > 0 ? index - 16 : index + 240, timeScale);
+            value += flow(index, energy, z < 15 ? this : neighbors[SOUTH], z < 15 ? index + 16 : index - 240, timeScale);
+
+            value *= keep;
+            if (value < minHeat)
+            {
+                value = 0;
+            }
+            else
+            {
+                active++;
+                edges |= edgeBits(x, y, z);
+            }
+            next[index] = value;
+        }
+        activeCells = active;
+        edgeMask = edges;
+    }
+
+    /**
+     * Heat moving into the block from a neighbor block
+     *
+     * @param index     - block
+     * @param energy    - heat over capacity of the block
+     * @param section   - section of the neighbor, null blocks flow
+     * @param other     - index of the neighbor in its section
+     * @param timeScale - conductance multiplier for the step
+     * @return heat gained, negative if lost
+     */
+    private float flow(int index, float energy, ThermalDiffusionSection section, int other, float timeScale)
+    {
+        if (section == null)
+        {
+            return 0;
+        }
+        final float otherEnergy = section.heat[other] / section.capacity[other];
+        if (otherEnergy == energy)
+        {
+            return 0;
+        }
+
+        //Harmonic mean of transfer rates, a poor conductor on either side limits flow
+        final float rateA = rate[index];
+        final float rateB = section.rate[other];
+        final float conductance = rateA + rateB > 0 ? 2 * rateA * rateB / (rateA + rateB) * timeScale : 0;
+
+        //Cap so no block can give away more heat than it has across all six sides
+        final float coefficient = Math.min(conductance, Math.min(capacity[index], section.capacity[other]) / 7);
+        return coefficient * (otherEnergy - energy);
+    }
+
+    static int edgeBits(int x, int y, int z)
+    {
+        int bits = 0;
+        if (x == 0) bits |= 1 << WEST;
+        if (x == 15) bits |= 1 << EAST;
+        if (y == 0) bits |= 1 << DOWN;
+        if (y == 15) bits |= 1 << UP;
+        if (z == 0) bits |= 1 << NORTH;
+        if (z == 15) bits |= 1 << SOUTH;
+        return bits;
+    }
+
+    /**
+     * Moves the calculated values into place
+     */
+    void swap()
+    {
+        final float[] prev = heat;
+        heat = next;
+        next = prev;
+    }
+
+    /**
+     * Checks if the section has no heat and nothing in the thermal map
+     *
+     * @return true if it can be dropped
+     */
+    boolean isCold()
+    {
+        return activeCells == 0 && publishedCells == 0;
+    }
+
+    /**
+     * Index of the block inside of the section
+     *
+     * @param x - world location
+     * @param y - world location
+     * @param z - world location
+     * @return index 0-4095
+     */
+    public static int index(int x, int y, int z)
+    {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+}
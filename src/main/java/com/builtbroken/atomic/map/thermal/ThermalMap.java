@@ -9,16 +9,19 @@ import com.builtbroken.atomic.lib.MassHandler;
 import com.builtbroken.atomic.lib.thermal.ThermalHandler;
 import com.builtbroken.atomic.lib.vapor.VaporHandler;
 import com.builtbroken.atomic.map.MapHandler;
+import com.builtbroken.atomic.map.data.storage.DataMap;
+import com.builtbroken.atomic.map.events.IMapChangeListener;
 import com.builtbroken.atomic.map.events.MapSystemEvent;
 import com.builtbroken.atomic.network.netty.PacketSystem;
 import com.builtbroken.atomic.network.packet.client.PacketSpawnParticle;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
+import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
-import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -29,7 +32,7 @@ import java.util.Iterator;
  *
  * Created by Dark(DarkGuardsman, Robert) on 5/6/2018.
  */
-public class ThermalMap implements IThermalSystem
+public class ThermalMap implements IThermalSystem, IMapChangeListener
 {
     private HashMap<Integer, HashSet<BlockPos>> steamSources = new HashMap();
 
@@ -60,9 +63,16 @@ public class ThermalMap implements IThermalSystem
         return getStoredValue(world, pos) * 1000L; //Map stores heat in kilo-joules
     }
 
+    /**
+     * Gets the heat stored in the map, safe to call from any thread
+     *
+     * @param world - map to pull data from
+     * @param pos   - location
+     * @return heat in kilo-joules
+     */
     public int getStoredValue(World world, BlockPos pos)
     {
-        return DataMapType.THERMAL.getValue(MapHandler.GLOBAL_DATA_MAP.getData(world, pos));
+        return MapHandler.GLOBAL_DATA_MAP.readValue(world.provider.getDimension(), pos.getX(), pos.getY(), pos.getZ(), DataMapType.THERMAL);
     }
 
     public long getActualJoules(World world, BlockPos pos)
@@ -98,7 +108,19 @@ public class ThermalMap implements IThermalSystem
      */
     public double getTemperature(World world, BlockPos pos, double joules)
     {
-        return joules / (MassHandler.getMass(world, pos) * ThermalHandler.getSpecificHeat(world, pos) * 1000);
+        return joules / getHeatCapacity(world, pos);
+    }
+
+    /**
+     * Gets the energy needed to raise the temperature of the block by one Kelvin
+     *
+     * @param world - map to pull data from
+     * @param pos   - location
+     * @return joules per Kelvin
+     */
+    public float getHeatCapacity(World world, BlockPos pos)
+    {
+        return MassHandler.getMass(world, pos) * ThermalHandler.getSpecificHeat(world, pos) * 1000;
     }
 
     /**
@@ -144,13 +166,20 @@ public class ThermalMap implements IThermalSystem
         steamSources.clear();
     }
 
-    @SubscribeEvent(priority = EventPriority.LOWEST)
-    public void onHeatChanged(MapSystemEvent.OnValueChanged event)
+    /**
+     * Called with heat changes in the map, registered in {@link MapHandler#register()}
+     */
+    @Override
+    public void onMapChanged(DataMap map, DataMapType type, int chunkX, int chunkZ, BitSet positions)
     {
-        final World world = event.world();
-        if (world != null && !world.isRemote && event.type == DataMapType.THERMAL && world.isBlockLoaded(event.getPos()))
+        final World world = DimensionManager.getWorld(map.dim);
+        if (world != null && !world.isRemote && type == DataMapType.THERMAL && world.getChunkProvider().getLoadedChunk(chunkX, chunkZ) != null)
         {
-            checkForThermalChange(world, event.getPos(), event.getNewValue());
+            for (int index = positions.nextSetBit(0); index >= 0; index = positions.nextSetBit(index + 1))
+            {
+                final BlockPos pos = MapSystemEvent.OnChunkChanged.getPos(chunkX, chunkZ, index);
+                checkForThermalChange(world, pos, map.getValue(pos, type));
+            }
         }
     }
 
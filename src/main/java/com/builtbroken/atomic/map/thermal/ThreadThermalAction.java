@@ -2,31 +2,53 @@ package com.builtbroken.atomic.map.thermal;
 
 import com.builtbroken.atomic.AtomicScience;
 import com.builtbroken.atomic.api.thermal.IThermalSource;
-import com.builtbroken.atomic.lib.thermal.HeatSpreadDirection;
-import com.builtbroken.atomic.lib.thermal.ThermalHandler;
+import com.builtbroken.atomic.config.logic.ConfigLogic;
+import com.builtbroken.atomic.config.logic.ConfigThermal;
 import com.builtbroken.atomic.map.MapHandler;
 import com.builtbroken.atomic.map.data.DataChange;
-import com.builtbroken.atomic.map.data.DataPos;
 import com.builtbroken.atomic.map.data.ThreadDataChange;
-import com.builtbroken.atomic.api.thermal.IThermalNode;
-import com.builtbroken.atomic.map.thermal.node.ThermalNode;
+import com.builtbroken.atomic.map.data.node.MapNodeUpdate;
+import com.builtbroken.atomic.map.thermal.node.ThermalSource;
+import com.builtbroken.atomic.map.thermal.node.ThermalSourceDiffusion;
 import com.builtbroken.jlib.lang.StringHelpers;
-import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.DimensionManager;
 
-import java.util.*;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * Handles updating the radiation map
+ * Handles updating the thermal map
+ * <p>
+ * Heat is spread from each source using {@link HeatSpreadGrid} when the source changes, or if
+ * {@link ConfigThermal#SOLVER} is set to diffusion all sources are stepped together over time
+ * by {@link ThermalDiffusion}.
  *
  *
  * Created by Dark(DarkGuardsman, Robert) on 4/28/2018.
  */
 public class ThreadThermalAction extends ThreadDataChange
 {
+    /** Max range, hard coded until algs can be completed */
+    public static final int HEAT_SPREAD_RANGE = 50;
+
+    /**
+     * Grids not in use, each spread borrows one so workers never share a grid. Held soft as a grid
+     * is about 20MB at the current range, idle grids can be collected and are rebuilt on next use.
+     */
+    private final ConcurrentLinkedQueue<SoftReference<HeatSpreadGrid>> grids = new ConcurrentLinkedQueue();
+
+    /** Diffusion solver per dimension, only used if enabled in {@link ConfigThermal#SOLVER} */
+    private final ConcurrentHashMap<Integer, ThermalDiffusion> diffusion = new ConcurrentHashMap();
+    /** Dimensions waiting on a diffusion step */
+    private final ConcurrentLinkedQueue<Integer> stepQueue = new ConcurrentLinkedQueue();
+    /** Nodes created by the diffusion solver per dimension */
+    private final ConcurrentHashMap<Integer, ThermalSourceDiffusion> diffusionNodes = new ConcurrentHashMap();
+
     public ThreadThermalAction()
     {
         super("ThreadThermalAction");
@@ -42,297 +64,223 @@ public class ThreadThermalAction extends ThreadDataChange
         final int cy = change.yi();
         final int cz = change.zi();
 
-        if (world != null && change.source instanceof IThermalSource)
+        if (world != null && change.source instanceof IThermalSource && ConfigLogic.THERMAL.SOLVER == ConfigThermal.Solver.DIFFUSION)
+        {
+            //Solver picks up the new heat on its next step
+            diffusion.computeIfAbsent(change.dim(), ThermalDiffusion::new).setSource((IThermalSource) change.source, new BlockPos(cx, cy, cz), change.value);
+            return true;
+        }
+        else if (world != null && change.source instanceof IThermalSource)
         {
             //Collect data
-            HashMap<DataPos, DataPos> collectedData = calculateHeatSpread(world, cx, cy, cz, change.value); //TODO store data into heat source
+            final HashMap<BlockPos, Integer> collectedData = calculateHeatSpread(world, cx, cy, cz, change.value); //TODO store data into heat source
 
-            //TODO convert to method or class
-            ((WorldServer) world).addScheduledTask(() ->
+            if (shouldRun && change.source instanceof ThermalSource)
             {
-                if (change.source instanceof IThermalSource)
-                {
-                    final IThermalSource source = ((IThermalSource) change.source);
-                    //Get data
-                    final HashMap<BlockPos, IThermalNode> oldMap = source.getCurrentNodes();
-                    final HashMap<BlockPos, IThermalNode> newMap = new HashMap();
-
-                    //Remove old data from map
-                    source.disconnectMapData();
-
-                    //Add new data, recycle old nodes to reduce memory churn
-                    for (Map.Entry<DataPos, DataPos> entry : collectedData.entrySet()) //TODO move this to source to give full control over data structure
-                    {
-                        final BlockPos pos = entry.getKey().disposeReturnBlockPos();
-                        final int value = entry.getValue().x - entry.getValue().y;
-
-                        if (oldMap != null && oldMap.containsKey(pos))
-                        {
-                            final IThermalNode node = oldMap.get(pos);
-                            if (node != null)
-                            {
-                                //Update value
-                                node.setHeatValue(value);
-
-                                //Store in new map
-                                newMap.put(pos, node);
-                            }
-
-                            //Remove from old map
-                            oldMap.remove(pos);
-                        }
-                        else
-                        {
-                            newMap.put(pos, ThermalNode.get(source, value));
-                        }
-                    }
-
-                    //Clear old data
-                    source.disconnectMapData();
-                    source.clearMapData();
-
-                    //Set new data
-                    source.setCurrentNodes(newMap);
-
-                    //Tell the source to connect to the map
-                    source.connectMapData();
-
-                    //Trigger source update
-                    source.initMapData();
-                }
-            });
-
+                MapHandler.APPLY_QUEUE.queue(new MapNodeUpdate((ThermalSource) change.source, collectedData, true));
+            }
 
             return true;
         }
         return false;
     }
 
+    ///----------------------------------------------------------------
+    ///--------Diffusion
+    ///----------------------------------------------------------------
+
     /**
-     * Calculates spread of heat from source.
-     * <p>
-     * Works by pathing all tiles and calculating heat movement towards current tile.
-     * In other words: Pulls heat towards tile instead of pushing heat.
-     * <p>
-     * Heat is not consumed for movement as would be expected with real world movement. Instead
-     * its assumed heat will constantly be generated. Thus migrating heat is not needed beyond
-     * estimating how much heat would be moved.
+     * Called each tick of the world to queue diffusion steps, main thread only
      *
-     * @param world  - map to pull data from
-     * @param cx   - center of heat
-     * @param cy   - center of heat
-     * @param cz   - center of heat
-     * @param heat - amount of heat to move
-     * @return positions and changes (first pos is position, second is data (x -> heat, y -> heat used))
+     * @param world - world
      */
-    protected HashMap<DataPos, DataPos> calculateHeatSpread(final World world, final int cx, final int cy, final int cz, final int heat)
+    public void onWorldTick(World world)
     {
-        final DataPos center = DataPos.get(cx, cy, cz);
-        //TODO consider splitting over several threads
-        //TODO map fluid(water, air, lava, etc) pockets to allow convection currents
-        //TODO use fluid pockets to equalize heat levels
-
-        //Max range, hard coded until algs can be completed
-        final int range = 50;
-
-        //Track data, also used to prevent looping same tiles (first pos is location, second stores data)
-        final HashMap<DataPos, DataPos> heatSpreadData = new HashMap();
-
-        long time = System.nanoTime();
-        if (heat > 6)
+        final int dim = world.provider.getDimension();
+        final ThermalDiffusion solver = diffusion.get(dim);
+        if (solver != null)
         {
-            //Track tiles to path
-            final Queue<DataPos> currentPathQueue = new LinkedList();
-            final List<DataPos> nextPathQueue = new LinkedList();
-
-            //Add center point
-            heatSpreadData.put(DataPos.get(cx, cy, cz), DataPos.get(heat, 0, 0));
-
-            //Add connected tiles
-            for (EnumFacing direction : EnumFacing.VALUES)
-            {
-                DataPos pos = DataPos.get(cx, cy, cz, direction);
-                currentPathQueue.add(pos);
-                heatSpreadData.put(pos, DataPos.get(0, 0, 0));
-            }
-
-            //List of node to add to path queue after each loop
-            final ArrayList<DataPos> tempHold = new ArrayList(6);
-
-            //Breadth first pathfinder
-            while (!currentPathQueue.isEmpty() || !nextPathQueue.isEmpty())
+            if (ConfigLogic.THERMAL.SOLVER != ConfigThermal.Solver.DIFFUSION)
             {
-                if(currentPathQueue.isEmpty())
+                //Solver was turned off, clear its heat from the map
+                if (!solver.stepPending)
                 {
-                    Collections.sort(nextPathQueue, Comparator.comparingDouble(pos -> pos.distance(center)));
-                    currentPathQueue.addAll(nextPathQueue);
-
-                    nextPathQueue.clear();
+                    diffusion.remove(dim);
+                    MapHandler.APPLY_QUEUE.queue(new MapNodeUpdate(getDiffusionNodes(dim), solver.clear(), false));
+                    diffusionNodes.remove(dim);
                 }
-                //Get next
-                final DataPos currentPos = currentPathQueue.poll();
+            }
+            else if (!solver.stepPending && world.getTotalWorldTime() % ConfigLogic.THERMAL.TIMESTEP_TICKS == 0)
+            {
+                solver.removeInvalidSources();
+                solver.stepPending = true;
+                stepQueue.add(dim);
+            }
+        }
+    }
 
-                //Calculate heat pushed from all sides & look for new tiles to path
-                int heatAsPosition = 0;
+    /**
+     * Called when a block changes so the solver reads its heat properties again
+     *
+     * @param world - world
+     * @param pos   - location
+     */
+    public void onBlockChanged(World world, BlockPos pos)
+    {
+        final ThermalDiffusion solver = diffusion.get(world.provider.getDimension());
+        if (solver != null)
+        {
+            solver.onBlockChanged(pos);
+        }
+    }
 
-                //Total heat transfer ratio, used to convert ratio to percentages when balancing heat flow
-                double heatRateTotal = 0;
+    /**
+     * Called when a world unloads to drop its solver, nodes are removed with the map
+     *
+     * @param world - world
+     */
+    public void onWorldUnload(World world)
+    {
+        diffusion.remove(world.provider.getDimension());
+        diffusionNodes.remove(world.provider.getDimension());
+    }
 
-                //Find directions to spread heat and calculate max heat ratio
-                Set<HeatSpreadDirection> spreadDirections = new HashSet();
-                for (HeatSpreadDirection direction : HeatSpreadDirection.values())
+    @Override
+    protected void update()
+    {
+        Integer dim;
+        while ((dim = stepQueue.poll()) != null)
+        {
+            final ThermalDiffusion solver = diffusion.get(dim);
+            final World world = DimensionManager.getWorld(dim);
+            if (solver != null)
+            {
+                if (world instanceof WorldServer)
                 {
-                    //Check range to prevent infinite spread
-                    int x = currentPos.x + direction.offsetX;
-                    int y = currentPos.y + direction.offsetY;
-                    int z = currentPos.z + direction.offsetZ;
-                    if (inRange(cx, cy, cz, x, y, z, range) && y >= 0 && y < 256) //TODO check delta temp, ignore high heat values to improve heat spread
+                    try
                     {
-                        //Add to set
-                        spreadDirections.add(direction);
-
-                        //Increase heat spread ratio
-                        heatRateTotal += ThermalHandler.getHeatTransferRate(world, new BlockPos(x, y, z));
+                        step(solver, (WorldServer) world);
                     }
-                }
-
-                //Only loop values we had within range
-                for (HeatSpreadDirection direction : spreadDirections)
-                {
-                    final DataPos pos = DataPos.get(
-                            currentPos.x + direction.offsetX,
-                            currentPos.y + direction.offsetY,
-                            currentPos.z + direction.offsetZ);
-
-                    //If we have no path position add to queue
-                    if (!heatSpreadData.containsKey(pos))
+                    catch (InterruptedException e)
                     {
-                        //Only add if only sides, do not path corners. As it will result in low heat spread.
-                        if (direction.ordinal() < 6)
-                        {
-                            tempHold.add(pos);
-                        }
+                        solver.stepPending = false;
+                        return;
                     }
-                    //If we have data do heat movement
-                    else
+                    catch (Exception e)
                     {
-                        //Get heat from direction
-                        final int heatAtNext = heatSpreadData.get(pos).x;
-
-                        //Calculate spread ratio from direction
-                        double transferRate = ThermalHandler.getHeatTransferRate(world, new BlockPos(pos.x, pos.y, pos.z));   //TODO recycle block pos
-
-                        //Convert ratio into percentage
-                        double percentage = transferRate / heatRateTotal;
-
-                        //Calculate heat to move to current position from direction
-                        int heatMoved = getHeatToSpread(world, pos, currentPos, heatAtNext, percentage * direction.percentage, heatSpreadData);
-
-                        //Update direction position with heat moved
-                        heatSpreadData.get(pos).y += heatMoved;
-
-                        //Increase heat at position
-                        heatAsPosition += heatMoved;
-
-                        //Recycle
-                        pos.dispose();
+                        AtomicScience.logger.error("ThreadThermalAction: Unexpected error while stepping diffusion for dim " + dim, e);
+                        solver.stepPending = false;
                     }
                 }
-
-                //Only add positions from temp if there is heat to move from current
-                if (heatAsPosition > 0)
-                {
-                    //Add to path queue
-                    nextPathQueue.addAll(tempHold);
-
-                    //Add to map so we don't path over again and have init data to grab
-                    tempHold.forEach(e -> heatSpreadData.put(e, DataPos.get(0, 0, 0)));
-                }
                 else
                 {
-                    //Recycle objects
-                    tempHold.forEach(e -> e.dispose());
+                    solver.stepPending = false;
                 }
-                //Clear for next run
-                tempHold.clear();
-
-                //Keep track of value
-                heatSpreadData.get(currentPos).x = heatAsPosition;
             }
         }
+    }
+
+    private void step(ThermalDiffusion solver, WorldServer world) throws InterruptedException
+    {
+        long time = System.nanoTime();
+
+        final HashMap<BlockPos, Integer> changes = solver.step(world, getWorkers(),
+                ConfigLogic.THERMAL.TIMESTEP_TICKS / 20f,
+                ConfigLogic.THERMAL.TIME_SCALE,
+                (float) ConfigLogic.THERMAL.HEAT_LOSS,
+                ConfigLogic.THERMAL.MIN_HEAT);
+
+        final MapNodeUpdate update = new MapNodeUpdate(getDiffusionNodes(solver.dim), changes, false);
+        //Cleared however the update ends, a stuck flag would stop the solver for good
+        update.onDone = () -> solver.stepPending = false;
+        MapHandler.APPLY_QUEUE.queue(update);
 
         //Logging
         if (AtomicScience.runningAsDev)
         {
             time = System.nanoTime() - time;
-            AtomicScience.logger.info(String.format("%s: Spread heat %s | %s tiles | %s %s %s | in %s",
+            AtomicScience.logger.info(String.format("%s: Diffusion step dim %s | %s sources | %s sections | %s changes | in %s",
                     name,
-                    heat,
-                    heatSpreadData.size(),
-                    cx, cy, cz,
+                    solver.dim,
+                    solver.getSourceCount(),
+                    solver.getSectionCount(),
+                    changes.size(),
                     StringHelpers.formatNanoTime(time)));
         }
+    }
 
-        center.dispose();
-        return heatSpreadData;
+    private ThermalSourceDiffusion getDiffusionNodes(int dim)
+    {
+        return diffusionNodes.computeIfAbsent(dim, ThermalSourceDiffusion::new);
     }
 
+    ///----------------------------------------------------------------
+    ///--------Pathfinder
+    ///----------------------------------------------------------------
 
     /**
-     * Called to get the heat to spread to the target tile
+     * Calculates spread of heat from source, see {@link HeatSpreadGrid#spread(World, int, int, int, int, int)}
      *
-     * @param world          - world
-     * @param heatSource     - source of heat
-     * @param heatTarget     - target of heat
-     * @param heatToMove     - total heat to move
-     * @param heatSpreadData - data of current heat movement
-     * @return heat moved
+     * @param world - map to pull data from
+     * @param cx    - center of heat
+     * @param cy    - center of heat
+     * @param cz    - center of heat
+     * @param heat  - amount of heat to move
+     * @return positions and heat
      */
-    protected int getHeatToSpread(World world, DataPos heatSource, DataPos heatTarget, final int heatToMove, final double percentage, HashMap<DataPos, DataPos> heatSpreadData)
+    protected HashMap<BlockPos, Integer> calculateHeatSpread(final World world, final int cx, final int cy, final int cz, final int heat)
     {
-        if (world.isBlockLoaded(new BlockPos(heatTarget.x, heatTarget.y, heatTarget.z)))   //TODO recycle block pos
+        //TODO consider splitting over several threads
+        //TODO map fluid(water, air, lava, etc) pockets to allow convection currents
+        //TODO use fluid pockets to equalize heat levels
+
+        long time = System.nanoTime();
+
+        HashMap<BlockPos, Integer> heatSpreadData = new HashMap();
+        if (heat > 6)
         {
-            //Get heat actual movement (only move 25% of heat)
-            return getHeatSpread(world, heatSource, heatTarget, (int) Math.floor(heatToMove * percentage), heatSpreadData);
+            final HeatSpreadGrid grid = borrowGrid();
+            try
+            {
+                grid.spread(world, cx, cy, cz, heat, HEAT_SPREAD_RANGE);
+                heatSpreadData = grid.collect();
+            }
+            finally
+            {
+                grids.add(new SoftReference(grid));
+            }
         }
-        return heatToMove;
-    }
 
-    /**
-     * Checks how much heat should spread from one block to the next.
-     * <p>
-     * In theory each block should have a different spread value. As
-     * heat does not transfer evenly between sources.
-     * <p>
-     * As well heat travels differently between different types of blocks.
-     * Air blocks will use convection while solid blocks direct heat transfer.
-     *
-     * @param heatSource - source of heat
-     * @param heatTarget - where to move heat
-     * @param heat       - heat to transfer (some % of total heat), in kilo-joules
-     * @return heat to actually transfer, in kilo-joules
-     */
-    public int getHeatSpread(World world, DataPos heatSource, DataPos heatTarget, int heat, HashMap<DataPos, DataPos> heatSpreadData)
-    {
-        double deltaTemp = getTemperature(world, heatSource, heatSpreadData); //We assume target is zero relative to source
-        if (deltaTemp > 0)
+        //Logging
+        if (AtomicScience.runningAsDev)
         {
-            double heatMovementRate1 = ThermalHandler.getHeatTransferRate(world, new BlockPos(heatTarget.x, heatTarget.y, heatTarget.z)) * deltaTemp;
-            //double heatMovementRate2 = ThermalHandler.getHeatTransferRate(world, heatSource.x, heatSource.y, heatSource.z) * deltaTemp;
-            //double heatMovementRate = (heatMovementRate1 + heatMovementRate2) / 2;
-            return (int) Math.min(heatMovementRate1 * 20 * 60, heat);
+            time = System.nanoTime() - time;
+            AtomicScience.logger.info(String.format("%s: Spread heat %s | %s tiles | %s %s %s | in %s",
+                    name,
+                    heat,
+                    heatSpreadData.size(),
+                    cx, cy, cz,
+                    StringHelpers.formatNanoTime(time)));
         }
-        return 0;
+        return heatSpreadData;
     }
 
-    public double getTemperature(World world, DataPos pos, HashMap<DataPos, DataPos> heatSpreadData)
+    /**
+     * Takes a free grid, or creates one if none are left
+     *
+     * @return grid, return it to {@link #grids} when done
+     */
+    private HeatSpreadGrid borrowGrid()
     {
-        if (heatSpreadData.containsKey(pos))
+        SoftReference<HeatSpreadGrid> ref;
+        while ((ref = grids.poll()) != null)
         {
-            //TODO recycle block pos
-            return MapHandler.THERMAL_MAP.getTemperature(world, new BlockPos(pos.x, pos.y, pos.z), heatSpreadData.get(pos).x * 1000L); //kj -> j
+            final HeatSpreadGrid grid = ref.get();
+            if (grid != null)
+            {
+                return grid;
+            }
         }
-        return 0;
+        return new HeatSpreadGrid();
     }
-
 }
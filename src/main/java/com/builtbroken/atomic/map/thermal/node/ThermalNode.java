@@ -2,30 +2,24 @@ package com.builtbroken.atomic.map.thermal.node;
 
 import com.builtbroken.atomic.api.thermal.IThermalSource;
 import com.builtbroken.atomic.map.data.DataPool;
-import com.builtbroken.atomic.map.data.IDataPoolObject;
+import com.builtbroken.atomic.map.data.node.DataMapNode;
+import com.builtbroken.atomic.map.data.node.MapNodeSource;
+import com.builtbroken.atomic.map.data.node.SourceHandleTable;
 import com.builtbroken.atomic.api.map.DataMapType;
-import com.builtbroken.atomic.api.map.IDataMapSource;
 import com.builtbroken.atomic.api.thermal.IThermalNode;
 
-import javax.annotation.Nullable;
-import java.lang.ref.WeakReference;
-
 /**
  *
  * Created by Dark(DarkGuardsman, Robert) on 9/22/2018.
  */
-public class ThermalNode implements IThermalNode, IDataPoolObject
+public class ThermalNode extends DataMapNode implements IThermalNode
 {
-    private static final DataPool<ThermalNode> THERMAL_NODE_POOL = new DataPool(400000); //TODO add config
-
-    private WeakReference<IThermalSource> source;
-
-    private int value;
+    private static final DataPool<ThermalNode> THERMAL_NODE_POOL = new DataPool("ThermalNode", 400000); //TODO add config
 
     private ThermalNode(IThermalSource source, int value)
     {
-        this.source = new WeakReference(source);
-        this.value = value;
+        super(value);
+        this.sourceHandle = MapNodeSource.getHandle(source);
     }
 
     @Override
@@ -37,7 +31,7 @@ public class ThermalNode implements IThermalNode, IDataPoolObject
     @Override
     public void setHeatValue(int value)
     {
-        this.value = value;
+        setValue(value);
     }
 
     @Override
@@ -46,17 +40,6 @@ public class ThermalNode implements IThermalNode, IDataPoolObject
         return DataMapType.THERMAL;
     }
 
-    @Nullable
-    @Override
-    public IDataMapSource getSource()
-    {
-        if(source == null || source.get() == null)
-        {
-            return null;
-        }
-        return source.get();
-    }
-
     public static ThermalNode get(IThermalSource source, int value)
     {
         if (THERMAL_NODE_POOL.has())
@@ -64,7 +47,7 @@ public class ThermalNode implements IThermalNode, IDataPoolObject
             ThermalNode dataChange = THERMAL_NODE_POOL.get();
             if (dataChange != null)
             {
-                dataChange.source = new WeakReference(source);
+                dataChange.sourceHandle = MapNodeSource.getHandle(source);
                 dataChange.value = value;
                 return dataChange;
             }
@@ -75,7 +58,8 @@ public class ThermalNode implements IThermalNode, IDataPoolObject
     @Override
     public void dispose()
     {
-        source = null;
+        sourceHandle = SourceHandleTable.NO_HANDLE;
+        resetLayer();
         THERMAL_NODE_POOL.dispose(this);
     }
 }
@@ -3,6 +3,8 @@ package com.builtbroken.atomic.map.thermal.node;
 import com.builtbroken.atomic.api.map.DataMapType;
 import com.builtbroken.atomic.api.thermal.IThermalNode;
 import com.builtbroken.atomic.api.thermal.IThermalSource;
+import com.builtbroken.atomic.config.logic.ConfigLogic;
+import com.builtbroken.atomic.config.logic.ConfigThermal;
 import com.builtbroken.atomic.map.data.node.MapNodeSource;
 import net.minecraft.nbt.NBTTagCompound;
 
@@ -26,6 +28,24 @@ public abstract class ThermalSource<E> extends MapNodeSource<E, IThermalNode> im
         return super.isStillValid() && canGeneratingHeat();
     }
 
+    @Override
+    public IThermalNode createNode(int value)
+    {
+        return ThermalNode.get(this, value);
+    }
+
+    @Override
+    public int getNodeValue(IThermalNode node)
+    {
+        return node.getHeatValue();
+    }
+
+    @Override
+    public void setNodeValue(IThermalNode node, int value)
+    {
+        node.setHeatValue(value);
+    }
+
     @Override
     public DataMapType getType()
     {
@@ -44,7 +64,8 @@ public abstract class ThermalSource<E> extends MapNodeSource<E, IThermalNode> im
     public boolean shouldQueueForUpdate(NBTTagCompound saveState)
     {
         final int heat = getHeatGenerated();
-        if(heat > 0 && !hasNodes())
+        //Diffusion solver stores nodes on the world rather than the source
+        if(heat > 0 && !hasNodes() && ConfigLogic.THERMAL.SOLVER == ConfigThermal.Solver.PATHFINDER)
         {
             return true;
         }
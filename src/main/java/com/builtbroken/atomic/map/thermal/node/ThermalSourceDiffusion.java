@@ -0,0 +1,90 @@
+package com.builtbroken.atomic.map.thermal.node;
+
+import net.minecraft.world.World;
+import net.minecraftforge.common.DimensionManager;
+
+import java.util.HashMap;
+
+/**
+ * Holds the nodes created by the diffusion solver for a world. Heat from all sources is
+ * merged by the solver, so the nodes belong to the world rather than a single source.
+ * <p>
+ * Not added to {@link com.builtbroken.atomic.map.data.node.MapDataSources} as it is
+ * updated directly by the solver through {@link com.builtbroken.atomic.map.data.node.MapNodeUpdate}.
+ */
+public class ThermalSourceDiffusion extends ThermalSource<World>
+{
+    private final int dim;
+
+    public ThermalSourceDiffusion(int dim)
+    {
+        this.dim = dim;
+        this.nodes = new HashMap();
+    }
+
+    @Override
+    public int getHeatGenerated()
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isStillValid()
+    {
+        return doesSourceExist();
+    }
+
+    @Override
+    public double z()
+    {
+        return 0;
+    }
+
+    @Override
+    public double x()
+    {
+        return 0;
+    }
+
+    @Override
+    public double y()
+    {
+        return 0;
+    }
+
+    @Override
+    public int zi()
+    {
+        return 0;
+    }
+
+    @Override
+    public int xi()
+    {
+        return 0;
+    }
+
+    @Override
+    public int yi()
+    {
+        return 0;
+    }
+
+    @Override
+    public World world()
+    {
+        return DimensionManager.getWorld(dim);
+    }
+
+    @Override
+    public World getHost()
+    {
+        return world();
+    }
+
+    @Override
+    protected String getDebugName()
+    {
+        return "ThermalSourceDiffusion";
+    }
+}
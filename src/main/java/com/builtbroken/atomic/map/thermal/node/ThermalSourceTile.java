@@ -1,5 +1,7 @@
 package com.builtbroken.atomic.map.thermal.node;
 
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.map.data.node.MapDataSources;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.World;
 
@@ -15,14 +17,26 @@ public class ThermalSourceTile<E extends TileEntity> extends ThermalSource<E>
 {
     private final IntSupplier heatFunction;
     private final BooleanSupplier activeFunction;
+    /** Set if the host reports changes itself */
+    private final boolean changeTracked;
 
     private final WeakReference<E> hostReference;
 
     public ThermalSourceTile(E host, IntSupplier heatFunction, BooleanSupplier activeFunction)
+    {
+        this(host, heatFunction, activeFunction, false);
+    }
+
+    /**
+     * @param changeTracked - true if the host calls {@link MapDataSources#markDirty(IDataMapSource)}
+     *                      when the value or active state changes, see {@link #isChangeTracked()}
+     */
+    public ThermalSourceTile(E host, IntSupplier heatFunction, BooleanSupplier activeFunction, boolean changeTracked)
     {
         this.hostReference = new WeakReference(host);
         this.heatFunction = heatFunction;
         this.activeFunction = activeFunction;
+        this.changeTracked = changeTracked;
     }
 
     @Override
@@ -31,6 +45,12 @@ public class ThermalSourceTile<E extends TileEntity> extends ThermalSource<E>
         return getHeatGenerated() > 0 && activeFunction.getAsBoolean();
     }
 
+    @Override
+    public boolean isChangeTracked()
+    {
+        return changeTracked;
+    }
+
     @Override
     public boolean doesSourceExist()
     {
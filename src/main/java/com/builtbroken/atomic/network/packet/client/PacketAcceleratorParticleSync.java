@@ -7,63 +7,126 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumFacing;
 import net.minecraftforge.fml.common.network.ByteBufUtils;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
+ * Batch of particle updates for a single accelerator network, see
+ * {@link com.builtbroken.atomic.content.machines.accelerator.graph.AcceleratorNetworkSync}
+ * <p>
+ * Particles are keyed by {@link AcceleratorParticle#syncId}. The item is only included
+ * when the client has not seen it yet.
+ *
  * Created by Dark(DarkGuardsman, Robert) on 4/14/2019.
  */
 public class PacketAcceleratorParticleSync implements IPacket
 {
-    public UUID ID;
+    private static final int FLAG_ITEM = 1;
+
     public int dim;
-    public float cx, cy, cz;
-    public float speed;
 
-    public ItemStack renderItem = ItemStack.EMPTY;
+    /** Ticks between full updates, client extrapolates for this long */
+    public int interval;
+
+    public final List<Entry> entries = new ArrayList();
+    public final List<Integer> removed = new ArrayList();
 
     public PacketAcceleratorParticleSync()
     {
 
     }
 
-    public PacketAcceleratorParticleSync(AcceleratorParticle particle)
+    public PacketAcceleratorParticleSync(int dim, int interval)
+    {
+        this.dim = dim;
+        this.interval = interval;
+    }
+
+    public void add(AcceleratorParticle particle, boolean sendItem)
+    {
+        final Entry entry = new Entry();
+        entry.id = particle.syncId;
+        entry.cx = particle.xf();
+        entry.cy = particle.yf();
+        entry.cz = particle.zf();
+        entry.speed = particle.getVelocity();
+        entry.direction = particle.getMoveDirection();
+        entry.renderItem = sendItem ? particle.getItem() : null;
+        entries.add(entry);
+    }
+
+    public void remove(int id)
     {
-        ID = particle.unique_id;
-        dim = particle.dim();
-        cx = particle.xf();
-        cy = particle.yf();
-        cz = particle.zf();
-        speed = particle.getVelocity();
-        renderItem = particle.getItem();
+        removed.add(id);
+    }
+
+    public boolean isEmpty()
+    {
+        return entries.isEmpty() && removed.isEmpty();
     }
 
     @Override
     public void encodeInto(ChannelHandlerContext ctx, ByteBuf buffer)
     {
-        buffer.writeLong(ID.getMostSignificantBits());
-        buffer.writeLong(ID.getLeastSignificantBits());
         buffer.writeInt(dim);
-        buffer.writeFloat(cx);
-        buffer.writeFloat(cy);
-        buffer.writeFloat(cz);
-        buffer.writeFloat(speed);
-        ByteBufUtils.writeItemStack(buffer, renderItem);
+        buffer.writeByte(interval);
+
+        ByteBufUtils.writeVarInt(buffer, entries.size(), 5);
+        for (Entry entry : entries)
+        {
+            ByteBufUtils.writeVarInt(buffer, entry.id, 5);
+            buffer.writeByte((entry.renderItem != null ? FLAG_ITEM : 0) | entry.direction.ordinal() << 1);
+            buffer.writeFloat(entry.cx);
+            buffer.writeFloat(entry.cy);
+            buffer.writeFloat(entry.cz);
+            buffer.writeFloat(entry.speed);
+            if (entry.renderItem != null)
+            {
+                ByteBufUtils.writeItemStack(buffer, entry.renderItem);
+            }
+        }
+
+        ByteBufUtils.writeVarInt(buffer, removed.size(), 5);
+        for (int id : removed)
+        {
+            ByteBufUtils.writeVarInt(buffer, id, 5);
+        }
     }
 
     @Override
     public void decodeInto(ChannelHandlerContext ctx, ByteBuf buffer)
     {
-        ID = new UUID(buffer.readLong(), buffer.readLong());
         dim = buffer.readInt();
-        cx = buffer.readFloat();
-        cy = buffer.readFloat();
-        cz = buffer.readFloat();
-        speed = buffer.readFloat();
-        renderItem = ByteBufUtils.readItemStack(buffer);
+        interval = buffer.readUnsignedByte();
+
+        final int count = ByteBufUtils.readVarInt(buffer, 5);
+        for (int i = 0; i < count; i++)
+        {
+            final Entry entry = new Entry();
+            entry.id = ByteBufUtils.readVarInt(buffer, 5);
+            final int flags = buffer.readUnsignedByte();
+            entry.direction = EnumFacing.byIndex(flags >> 1);
+            entry.cx = buffer.readFloat();
+            entry.cy = buffer.readFloat();
+            entry.cz = buffer.readFloat();
+            entry.speed = buffer.readFloat();
+            if ((flags & FLAG_ITEM) != 0)
+            {
+                entry.renderItem = ByteBufUtils.readItemStack(buffer);
+            }
+            entries.add(entry);
+        }
+
+        final int removeCount = ByteBufUtils.readVarInt(buffer, 5);
+        for (int i = 0; i < removeCount; i++)
+        {
+            removed.add(ByteBufUtils.readVarInt(buffer, 5));
+        }
     }
 
     @SideOnly(Side.CLIENT)
@@ -72,4 +135,15 @@ public class PacketAcceleratorParticleSync implements IPacket
     {
         CommonProxy.NEW_PARTICLE_PACKETS.add(this);
     }
+
+    public static class Entry
+    {
+        public int id;
+        public float cx, cy, cz;
+        public float speed;
+        public EnumFacing direction;
+
+        /** Null if the client already has the item */
+        public ItemStack renderItem;
+    }
 }
@@ -0,0 +1,259 @@
+package com.builtbroken.test.as.accelerator.network;
+
+import com.builtbroken.atomic.content.machines.accelerator.data.TubeConnectionType;
+import com.builtbroken.atomic.content.machines.accelerator.graph.AcceleratorNetwork;
+import com.builtbroken.atomic.content.machines.accelerator.graph.AcceleratorNode;
+import com.builtbroken.atomic.content.machines.accelerator.graph.AcceleratorRoute;
+import com.builtbroken.atomic.content.machines.accelerator.particle.AcceleratorParticle;
+import com.builtbroken.test.as.accelerator.ATestTube;
+import com.builtbroken.test.as.accelerator.ATubeTestCommon;
+import com.builtbroken.test.as.world.FakeWorldAccess;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestRoute extends ATubeTestCommon
+{
+    @Test
+    public void testStraight()
+    {
+        FakeWorldAccess worldAccess = new FakeWorldAccess();
+        for (int i = -2; i <= 2; i++)
+        {
+            createTube(worldAccess, BlockPos.ORIGIN.north(i), EnumFacing.NORTH, TubeConnectionType.NORMAL);
+        }
+
+        AcceleratorNetwork network = new AcceleratorNetwork(0);
+        network.init(worldAccess, BlockPos.ORIGIN);
+
+        AcceleratorRoute route = network.getRoute();
+        Assertions.assertEquals(1, route.getSegmentCount());
+        Assertions.assertEquals(5, route.getSegmentLength(0));
+        Assertions.assertEquals(EnumFacing.NORTH, route.getSegmentDirection(0));
+    }
+
+    @Test
+    public void testBendSkipsCorner()
+    {
+        FakeWorldAccess worldAccess = new FakeWorldAccess();
+        createTube(worldAccess, BlockPos.ORIGIN, EnumFacing.NORTH, TubeConnectionType.CORNER_LEFT);
+        createTube(worldAccess, BlockPos.ORIGIN.west(1), EnumFacing.EAST, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.west(2), EnumFacing.EAST, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.north(1), EnumFacing.NORTH, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.north(2), EnumFacing.NORTH, TubeConnectionType.NORMAL);
+
+        AcceleratorNetwork network = new AcceleratorNetwork(0);
+        network.init(worldAccess, BlockPos.ORIGIN);
+
+        AcceleratorRoute route = network.getRoute();
+        Assertions.assertEquals(2, route.getSegmentCount());
+        Assertions.assertEquals(2, route.getSegmentLength(0));
+        Assertions.assertEquals(2, route.getSegmentLength(1));
+    }
+
+    @Test
+    public void testMoveAlongSegment()
+    {
+        FakeWorldAccess worldAccess = new FakeWorldAccess();
+        AcceleratorNode start = null;
+        for (int i = -2; i <= 2; i++)
+        {
+            ATestTube tube = createTube(worldAccess, BlockPos.ORIGIN.north(i), EnumFacing.NORTH, TubeConnectionType.NORMAL);
+            if (i == -2)
+            {
+                start = tube.getNode();
+            }
+        }
+
+        AcceleratorNetwork network = new AcceleratorNetwork(0);
+        network.init(worldAccess, BlockPos.ORIGIN);
+
+        //Start in the center of the first tube
+        AcceleratorParticle particle = new AcceleratorParticle(0, start.getPos(), EnumFacing.NORTH, 100);
+        particle.setPos(0.5f, 0.5f, 2.5f);
+        particle.setVelocity(2);
+        particle.setCurrentNode(start);
+
+        particle.update(0);
+
+        //Moved two tubes in one tick and was handed to the tube it ended in
+        Assertions.assertEquals(0.5f, particle.xf(), 0.0001f);
+        Assertions.assertEquals(0.5f, particle.zf(), 0.0001f);
+        Assertions.assertNotNull(particle.getCurrentNode());
+        Assertions.assertEquals(BlockPos.ORIGIN, particle.getCurrentNode().getPos());
+    }
+
+    @Test
+    public void testLapsSkipped()
+    {
+        FakeWorldAccess worldAccess = new FakeWorldAccess();
+
+        ATestTube first = createBox(worldAccess);
+
+        AcceleratorNetwork network = new AcceleratorNetwork(0);
+        network.init(worldAccess, BlockPos.ORIGIN);
+
+        //Start in the center of the first tube going around 5 times plus a quarter block
+        AcceleratorParticle particle = new AcceleratorParticle(0, first.getPos(), EnumFacing.NORTH, 100);
+        particle.setPos(0.5f, 0.5f, -0.5f);
+        particle.setVelocity(60.25f);
+        particle.setCurrentNode(first.getNode());
+
+        particle.update(0);
+
+        Assertions.assertEquals(EnumFacing.NORTH, particle.getMoveDirection());
+        Assertions.assertEquals(0.5f, particle.xf(), 0.001f);
+        Assertions.assertEquals(-0.75f, particle.zf(), 0.001f);
+        Assertions.assertEquals(first.getNode(), particle.getCurrentNode());
+    }
+
+    @Test
+    public void testLapsSkippedWithMagnet()
+    {
+        FakeWorldAccess worldAccess = new FakeWorldAccess();
+        ATestTube first = createBox(worldAccess);
+
+        //Acts like a powered tube, each move call adds the same velocity
+        first.getNode().onMoveCallback = p -> p.addVelocity(0.01f);
+        first.getNode().onMoveCallbackConstant = true;
+
+        AcceleratorNetwork network = new AcceleratorNetwork(0);
+        network.init(worldAccess, BlockPos.ORIGIN);
+
+        AcceleratorParticle particle = new AcceleratorParticle(0, first.getPos(), EnumFacing.NORTH, 100);
+        particle.setPos(0.5f, 0.5f, -0.5f);
+        particle.setVelocity(60.25f);
+        particle.setCurrentNode(first.getNode());
+
+        particle.update(0);
+
+        //Same position as without the magnet, distance is fixed at the start of the tick
+        Assertions.assertEquals(0.5f, particle.xf(), 0.001f);
+        Assertions.assertEquals(-0.75f, particle.zf(), 0.001f);
+
+        //Leaving the start: 2 calls, 4 full passes: 3 calls each, entering at the end: 2 calls
+        Assertions.assertEquals(60.25f + 16 * 0.01f, particle.getVelocity(), 0.001f);
+
+        //4 turns a lap for 5 laps, plus 1 for the tick
+        Assertions.assertEquals(100 - 21, particle.getEnergy(), 0.001f);
+    }
+
+    @Test
+    public void testLapsKeepSingleParticle()
+    {
+        FakeWorldAccess worldAccess = new FakeWorldAccess();
+        ATestTube first = createBox(worldAccess);
+
+        AcceleratorNetwork network = new AcceleratorNetwork(0);
+        network.init(worldAccess, BlockPos.ORIGIN);
+
+        //Passes through the first tube several times in one tick
+        AcceleratorParticle particle = new AcceleratorParticle(0, first.getPos(), EnumFacing.NORTH, 100);
+        particle.setPos(0.5f, 0.5f, -0.5f);
+        particle.setVelocity(60.25f);
+        first.getNode().addParticle(particle);
+
+        //Poll and move, then poll again without moving
+        first.getNode().update(null, 0);
+        first.getNode().update(null, 0);
+
+        Assertions.assertEquals(first.getNode(), particle.getCurrentNode());
+        Assertions.assertEquals(1, first.getNode().getParticles().size());
+    }
+
+    @Test
+    public void testLapsSkippedPoweredRing()
+    {
+        FakeWorldAccess worldAccess = new FakeWorldAccess();
+        ATestTube first = createBox(worldAccess);
+
+        //Every tube acts like a powered tube, each move call adds the same velocity and energy
+        for (TileEntity tile : worldAccess.tiles.values())
+        {
+            final AcceleratorNode node = ((ATestTube) tile).getNode();
+            node.onMoveCallback = p -> {
+                p.addVelocity(0.01f);
+                p.addEnergy(0.02f);
+            };
+            node.onMoveCallbackConstant = true;
+        }
+
+        AcceleratorNetwork network = new AcceleratorNetwork(0);
+        network.init(worldAccess, BlockPos.ORIGIN);
+
+        //Start in the center of the first tube going around 5 times plus a quarter block
+        AcceleratorParticle particle = new AcceleratorParticle(0, first.getPos(), EnumFacing.NORTH, 100);
+        particle.setPos(0.5f, 0.5f, -0.5f);
+        particle.setVelocity(60.25f);
+        first.getNode().addParticle(particle);
+
+        first.getNode().update(null, 0);
+
+        //Same position as an unpowered ring, distance is fixed at the start of the tick
+        Assertions.assertEquals(EnumFacing.NORTH, particle.getMoveDirection());
+        Assertions.assertEquals(0.5f, particle.xf(), 0.001f);
+        Assertions.assertEquals(-0.75f, particle.zf(), 0.001f);
+        Assertions.assertEquals(first.getNode(), particle.getCurrentNode());
+
+        //Leaving the start: 2 calls, 4 full laps of 12 tubes: 3 calls each, 11 tubes back to the start: 3 calls each, entering the start: 2 calls
+        final int calls = 2 + 4 * 12 * 3 + 11 * 3 + 2;
+        Assertions.assertEquals(60.25f + calls * 0.01f, particle.getVelocity(), 0.001f);
+
+        //4 turns a lap for 5 laps, plus 1 for the tick
+        Assertions.assertEquals(100 - 21 + calls * 0.02f, particle.getEnergy(), 0.001f);
+
+        //Every tube queued the particle as it passed, draining the queues leaves it only in the tube it ended in
+        for (TileEntity tile : worldAccess.tiles.values())
+        {
+            ((ATestTube) tile).getNode().update(null, 0);
+        }
+        for (TileEntity tile : worldAccess.tiles.values())
+        {
+            final AcceleratorNode node = ((ATestTube) tile).getNode();
+            if (node == first.getNode())
+            {
+                Assertions.assertEquals(1, node.getParticles().size());
+                Assertions.assertSame(particle, node.getParticles().get(0));
+            }
+            else
+            {
+                Assertions.assertTrue(node.getParticles().isEmpty(), "Particle left in " + node);
+            }
+        }
+
+        //Not moved again by the drain as it was already updated this tick
+        Assertions.assertEquals(-0.75f, particle.zf(), 0.001f);
+    }
+
+    /**
+     * Creates a 4x4 box ring, 12 blocks per lap
+     *
+     * @param worldAccess - world to add tubes to
+     * @return tube north of the origin, particles in it move north
+     */
+    public ATestTube createBox(FakeWorldAccess worldAccess)
+    {
+        createTube(worldAccess, BlockPos.ORIGIN, EnumFacing.NORTH, TubeConnectionType.CORNER_LEFT);
+        createTube(worldAccess, BlockPos.ORIGIN.west(1), EnumFacing.EAST, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.west(2), EnumFacing.EAST, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.west(3), EnumFacing.EAST, TubeConnectionType.CORNER_LEFT);
+        createTube(worldAccess, BlockPos.ORIGIN.west(3).north(1), EnumFacing.SOUTH, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.west(3).north(2), EnumFacing.SOUTH, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.west(3).north(3), EnumFacing.SOUTH, TubeConnectionType.CORNER_LEFT);
+        createTube(worldAccess, BlockPos.ORIGIN.west(1).north(3), EnumFacing.WEST, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.west(2).north(3), EnumFacing.WEST, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.north(3), EnumFacing.WEST, TubeConnectionType.CORNER_LEFT);
+        ATestTube first = createTube(worldAccess, BlockPos.ORIGIN.north(1), EnumFacing.NORTH, TubeConnectionType.NORMAL);
+        createTube(worldAccess, BlockPos.ORIGIN.north(2), EnumFacing.NORTH, TubeConnectionType.NORMAL);
+        return first;
+    }
+
+    public ATestTube createTube(FakeWorldAccess worldAccess, BlockPos pos, EnumFacing facing, TubeConnectionType type)
+    {
+        ATestTube tube = newTube(facing, pos, type);
+        worldAccess.addTile(pos, tube);
+        return tube;
+    }
+}
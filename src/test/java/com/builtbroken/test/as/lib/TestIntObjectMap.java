@@ -0,0 +1,76 @@
+package com.builtbroken.test.as.lib;
+
+import com.builtbroken.atomic.lib.collection.IntObjectMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+public class TestIntObjectMap
+{
+    @Test
+    public void testPutGetRemove()
+    {
+        IntObjectMap<String> map = new IntObjectMap();
+        Assertions.assertNull(map.put(0, "a"));
+        Assertions.assertNull(map.put(-1, "b"));
+        Assertions.assertNull(map.put(Integer.MIN_VALUE, "c"));
+        Assertions.assertEquals("a", map.put(0, "d"));
+
+        Assertions.assertEquals(3, map.size());
+        Assertions.assertEquals("d", map.get(0));
+        Assertions.assertEquals("b", map.get(-1));
+        Assertions.assertEquals("c", map.get(Integer.MIN_VALUE));
+        Assertions.assertNull(map.get(2));
+
+        Assertions.assertEquals("b", map.remove(-1));
+        Assertions.assertNull(map.remove(-1));
+        Assertions.assertFalse(map.containsKey(-1));
+        Assertions.assertEquals(2, map.size());
+
+        Assertions.assertThrows(NullPointerException.class, () -> map.put(5, null));
+    }
+
+    @Test
+    public void testMatchesHashMap()
+    {
+        //Small key range like dimension ids, so probe runs overlap
+        final Random random = new Random(42);
+        final IntObjectMap<Integer> map = new IntObjectMap();
+        final HashMap<Integer, Integer> expected = new HashMap();
+        for (int i = 0; i < 200000; i++)
+        {
+            final int key = random.nextInt(256) - 128;
+            if (random.nextInt(3) == 0)
+            {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            }
+            else
+            {
+                Assertions.assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+        {
+            Assertions.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Assertions.assertEquals(new HashSet(expected.values()), new HashSet(map.values()));
+
+        final HashSet<Integer> keys = new HashSet();
+        for (int key : map.keys())
+        {
+            keys.add(key);
+        }
+        Assertions.assertEquals(expected.keySet(), keys);
+
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertFalse(map.values().iterator().hasNext());
+        Assertions.assertEquals(0, map.keys().length);
+    }
+}
@@ -0,0 +1,73 @@
+package com.builtbroken.test.as.lib;
+
+import com.builtbroken.atomic.lib.collection.LongObjectMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+public class TestLongObjectMap
+{
+    @Test
+    public void testPutGetRemove()
+    {
+        LongObjectMap<String> map = new LongObjectMap();
+        Assertions.assertNull(map.put(1L, "a"));
+        Assertions.assertNull(map.put(-1L, "b"));
+        Assertions.assertNull(map.put(Long.MIN_VALUE, "c"));
+        Assertions.assertEquals("a", map.put(1L, "d"));
+
+        Assertions.assertEquals(3, map.size());
+        Assertions.assertEquals("d", map.get(1L));
+        Assertions.assertEquals("b", map.get(-1L));
+        Assertions.assertEquals("c", map.get(Long.MIN_VALUE));
+        Assertions.assertNull(map.get(2L));
+
+        Assertions.assertEquals("b", map.remove(-1L));
+        Assertions.assertNull(map.remove(-1L));
+        Assertions.assertFalse(map.containsKey(-1L));
+        Assertions.assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testMatchesHashMap()
+    {
+        //Keys close together like chunk positions, so probe runs overlap
+        final Random random = new Random(42);
+        final LongObjectMap<Long> map = new LongObjectMap();
+        final HashMap<Long, Long> expected = new HashMap();
+        for (int i = 0; i < 200000; i++)
+        {
+            final long key = ((long) (random.nextInt(64) - 32) << 32) | ((random.nextInt(64) - 32) & 0xFFFFFFFFL);
+            if (random.nextInt(3) == 0)
+            {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            }
+            else
+            {
+                Assertions.assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet())
+        {
+            Assertions.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Assertions.assertEquals(new HashSet(expected.values()), new HashSet(map.values()));
+
+        final HashSet<Long> keys = new HashSet();
+        for (long key : map.keys())
+        {
+            keys.add(key);
+        }
+        Assertions.assertEquals(expected.keySet(), keys);
+
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertFalse(map.values().iterator().hasNext());
+    }
+}
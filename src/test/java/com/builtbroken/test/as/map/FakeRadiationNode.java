@@ -0,0 +1,48 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.api.radiation.IRadiationNode;
+
+/**
+ * Radiation node without a source, always valid, used to fill maps in tests
+ */
+public class FakeRadiationNode implements IRadiationNode
+{
+    public int value;
+
+    public FakeRadiationNode(int value)
+    {
+        this.value = value;
+    }
+
+    @Override
+    public int getRadiationValue()
+    {
+        return value;
+    }
+
+    @Override
+    public void setRadiationValue(int value)
+    {
+        this.value = value;
+    }
+
+    @Override
+    public DataMapType getType()
+    {
+        return DataMapType.RADIATION;
+    }
+
+    @Override
+    public IDataMapSource getSource()
+    {
+        return null;
+    }
+
+    @Override
+    public boolean isNodeValid()
+    {
+        return true;
+    }
+}
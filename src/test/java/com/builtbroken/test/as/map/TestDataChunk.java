@@ -0,0 +1,117 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.map.data.storage.DataChunk;
+import com.builtbroken.atomic.map.exposure.node.RadiationNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the sparse layer sections of {@link DataChunk}
+ */
+public class TestDataChunk
+{
+    @Test
+    public void testEmpty()
+    {
+        final DataChunk chunk = new DataChunk(0, 0, 0);
+        Assertions.assertFalse(chunk.hasData());
+        Assertions.assertEquals(-1, chunk.nextLayerIndex(0));
+
+        final List<int[]> values = new ArrayList();
+        chunk.forEachValue((dim, x, y, z, value) -> values.add(new int[]{x, y, z, value}), DataMapType.RADIATION);
+        Assertions.assertTrue(values.isEmpty());
+    }
+
+    @Test
+    public void testLayersAcrossSections()
+    {
+        final DataChunk chunk = new DataChunk(0, -1, 2);
+
+        //Last layer of section 0, first of section 1 and one far up in section 6
+        chunk.addData(3, 15, 4, new FakeRadiationNode(10));
+        chunk.addData(5, 16, 6, new FakeRadiationNode(20));
+        chunk.addData(7, 100, 8, new FakeRadiationNode(30));
+        Assertions.assertTrue(chunk.hasData());
+
+        //Walk only visits layers that exist
+        Assertions.assertEquals(15, chunk.nextLayerIndex(0));
+        Assertions.assertEquals(16, chunk.nextLayerIndex(16));
+        Assertions.assertEquals(100, chunk.nextLayerIndex(17));
+        Assertions.assertEquals(-1, chunk.nextLayerIndex(101));
+        Assertions.assertNull(chunk.getLayerAt(17));
+
+        //Values come out in world coordinates, lowest layer first
+        final List<int[]> values = new ArrayList();
+        chunk.forEachValue((dim, x, y, z, value) -> values.add(new int[]{x, y, z, value}), DataMapType.RADIATION);
+        Assertions.assertEquals(3, values.size());
+        Assertions.assertArrayEquals(new int[]{-13, 15, 36, 10}, values.get(0));
+        Assertions.assertArrayEquals(new int[]{-11, 16, 38, 20}, values.get(1));
+        Assertions.assertArrayEquals(new int[]{-9, 100, 40, 30}, values.get(2));
+    }
+
+    @Test
+    public void testRemoveDropsSections()
+    {
+        final DataChunk chunk = new DataChunk(0, 0, 0);
+        final FakeRadiationNode low = new FakeRadiationNode(10);
+        final FakeRadiationNode mid = new FakeRadiationNode(20);
+        final FakeRadiationNode high = new FakeRadiationNode(30);
+        chunk.addData(0, 15, 0, low);
+        chunk.addData(0, 16, 0, mid);
+        chunk.addData(0, 100, 0, high);
+
+        //Emptied layer stays until checked
+        Assertions.assertTrue(chunk.removeData(0, 16, 0, mid));
+        Assertions.assertEquals(16, chunk.nextLayerIndex(16));
+        Assertions.assertTrue(chunk.checkLayer(16) > 0);
+        Assertions.assertNull(chunk.getLayerAt(16));
+
+        //Section 1 is gone, the walk jumps to section 6
+        Assertions.assertEquals(100, chunk.nextLayerIndex(16));
+        Assertions.assertEquals(15, chunk.nextLayerIndex(0));
+        Assertions.assertTrue(chunk.hasData());
+
+        //Empty but unchecked layers do not count as data
+        chunk.removeData(0, 15, 0, low);
+        chunk.removeData(0, 100, 0, high);
+        Assertions.assertFalse(chunk.hasData());
+
+        final List<int[]> values = new ArrayList();
+        chunk.forEachValue((dim, x, y, z, value) -> values.add(new int[]{x, y, z, value}), DataMapType.RADIATION);
+        Assertions.assertTrue(values.isEmpty());
+
+        chunk.checkForIssues();
+        Assertions.assertEquals(-1, chunk.nextLayerIndex(0));
+    }
+
+    @Test
+    public void testValueChanged()
+    {
+        final DataChunk chunk = new DataChunk(0, 0, 0);
+        final RadiationNode node = RadiationNode.get(null, 5);
+        final FakeRadiationNode fake = new FakeRadiationNode(10);
+        chunk.addData(1, 20, 2, node);
+        chunk.addData(1, 20, 2, fake);
+        Assertions.assertEquals(15, chunk.getValue(1, 20, 2, DataMapType.RADIATION));
+
+        //Map nodes push the change themselves
+        node.setRadiationValue(9);
+        Assertions.assertEquals(19, chunk.getValue(1, 20, 2, DataMapType.RADIATION));
+        Assertions.assertEquals(19, chunk.readValue(1, 20, 2, DataMapType.RADIATION));
+
+        //Other nodes are summed again when the map is told
+        fake.setRadiationValue(1);
+        chunk.onValueChanged(1, 20, 2);
+        Assertions.assertEquals(10, chunk.getValue(1, 20, 2, DataMapType.RADIATION));
+
+        //Only the changed slot is touched, missing layers are ignored
+        chunk.onValueChanged(0, 20, 0);
+        chunk.onValueChanged(1, 40, 2);
+        Assertions.assertEquals(0, chunk.getValue(0, 20, 0, DataMapType.RADIATION));
+        Assertions.assertNull(chunk.getLayerAt(40));
+    }
+}
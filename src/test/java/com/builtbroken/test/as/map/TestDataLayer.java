@@ -0,0 +1,121 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.api.map.IDataMapNode;
+import com.builtbroken.atomic.map.data.storage.DataChunk;
+import com.builtbroken.atomic.map.data.storage.DataLayer;
+import com.builtbroken.atomic.map.exposure.node.RadiationNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for the packed values and node slots of {@link DataLayer}
+ */
+public class TestDataLayer
+{
+    @Test
+    public void testEmpty()
+    {
+        final DataLayer layer = new DataLayer(new DataChunk(0, 0, 0), 0);
+        Assertions.assertTrue(layer.isEmpty());
+        Assertions.assertNull(layer.getData(0, 0));
+        Assertions.assertEquals(0, layer.getValue(0, 0, DataMapType.RADIATION));
+        Assertions.assertEquals(0, layer.getValue(-1, 0, DataMapType.RADIATION));
+    }
+
+    @Test
+    public void testSharedSlot()
+    {
+        final DataLayer layer = new DataLayer(new DataChunk(0, 0, 0), 0);
+        final FakeRadiationNode a = new FakeRadiationNode(10);
+        final FakeRadiationNode b = new FakeRadiationNode(20);
+        final FakeRadiationNode c = new FakeRadiationNode(30);
+
+        //Single node, then grows to share the slot
+        layer.addData(2, 3, a);
+        Assertions.assertEquals(10, layer.getValue(2, 3, DataMapType.RADIATION));
+        layer.addData(2, 3, b);
+        layer.addData(2, 3, c);
+        layer.addData(4, 5, new FakeRadiationNode(5));
+        Assertions.assertEquals(60, layer.getValue(2, 3, DataMapType.RADIATION));
+        Assertions.assertEquals(5, layer.getValue(4, 5, DataMapType.RADIATION));
+        Assertions.assertEquals(0, layer.getValue(2, 3, DataMapType.THERMAL));
+        Assertions.assertEquals(4, layer.blocksUsed);
+
+        final ArrayList<IDataMapNode> nodes = layer.getData(2, 3);
+        Assertions.assertEquals(3, nodes.size());
+        Assertions.assertSame(a, nodes.get(0));
+        Assertions.assertSame(b, nodes.get(1));
+        Assertions.assertSame(c, nodes.get(2));
+
+        //Returned list is a copy
+        nodes.clear();
+        Assertions.assertEquals(3, layer.getData(2, 3).size());
+
+        //Removing from the middle keeps the order and sum
+        Assertions.assertTrue(layer.removeData(2, 3, b));
+        Assertions.assertFalse(layer.removeData(2, 3, b));
+        Assertions.assertEquals(40, layer.getValue(2, 3, DataMapType.RADIATION));
+        Assertions.assertSame(a, layer.getData(2, 3).get(0));
+        Assertions.assertSame(c, layer.getData(2, 3).get(1));
+
+        //Back to a single node then empty
+        Assertions.assertTrue(layer.removeData(2, 3, a));
+        Assertions.assertEquals(30, layer.getValue(2, 3, DataMapType.RADIATION));
+        Assertions.assertEquals(1, layer.getData(2, 3).size());
+        Assertions.assertTrue(layer.removeData(2, 3, c));
+        Assertions.assertEquals(0, layer.getValue(2, 3, DataMapType.RADIATION));
+        Assertions.assertNull(layer.getData(2, 3));
+
+        Assertions.assertEquals(1, layer.blocksUsed);
+        Assertions.assertFalse(layer.isEmpty());
+    }
+
+    @Test
+    public void testValueChangedInPlace()
+    {
+        final DataChunk chunk = new DataChunk(0, 0, 0);
+        final FakeRadiationNode a = new FakeRadiationNode(10);
+        final FakeRadiationNode b = new FakeRadiationNode(20);
+        chunk.addData(1, 64, 1, a);
+        chunk.addData(1, 64, 1, b);
+        Assertions.assertEquals(30, chunk.getValue(1, 64, 1, DataMapType.RADIATION));
+
+        //Sum is only refreshed once told
+        a.setRadiationValue(100);
+        Assertions.assertEquals(30, chunk.getValue(1, 64, 1, DataMapType.RADIATION));
+        chunk.onValueChanged(1, 64, 1);
+        Assertions.assertEquals(120, chunk.getValue(1, 64, 1, DataMapType.RADIATION));
+
+        //Removal sums from the current node values
+        chunk.removeData(1, 64, 1, b);
+        Assertions.assertEquals(100, chunk.getValue(1, 64, 1, DataMapType.RADIATION));
+    }
+
+    @Test
+    public void testTrackedNode()
+    {
+        final DataLayer layer = new DataLayer(new DataChunk(0, 0, 0), 0);
+        final RadiationNode tracked = RadiationNode.get(null, 10);
+        final FakeRadiationNode untracked = new FakeRadiationNode(5);
+        layer.addData(7, 7, tracked);
+        layer.addData(7, 7, untracked);
+        Assertions.assertSame(layer, tracked.getLayer());
+        Assertions.assertEquals(15, layer.getValue(7, 7, DataMapType.RADIATION));
+
+        //Changes push into the layer without being told
+        tracked.setRadiationValue(40);
+        Assertions.assertEquals(45, layer.getValue(7, 7, DataMapType.RADIATION));
+
+        //Removal subtracts the current value and unlinks
+        Assertions.assertTrue(layer.removeData(7, 7, tracked));
+        Assertions.assertNull(tracked.getLayer());
+        Assertions.assertEquals(5, layer.getValue(7, 7, DataMapType.RADIATION));
+
+        //No longer stored so changes are ignored
+        tracked.setRadiationValue(100);
+        Assertions.assertEquals(5, layer.getValue(7, 7, DataMapType.RADIATION));
+    }
+}
@@ -0,0 +1,162 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.map.MapSystem;
+import com.builtbroken.atomic.map.data.storage.DataMap;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Tests for {@link DataMap#readRegion(int, int, int, int, int, int, DataMapType, int[])}
+ * and {@link DataMap#readValues(long[], int, DataMapType, int[])}
+ */
+public class TestDataMapRead
+{
+    /** Values spread over 4 chunks around the origin, chunk (-1, 1) is left missing */
+    private static final HashMap<BlockPos, Integer> VALUES = new HashMap();
+
+    static
+    {
+        VALUES.put(new BlockPos(-1, 10, -1), 5);
+        VALUES.put(new BlockPos(-16, 11, -3), 6);
+        VALUES.put(new BlockPos(0, 10, 0), 7);
+        VALUES.put(new BlockPos(15, 11, 16), 3);
+        VALUES.put(new BlockPos(16, 10, -1), 4);
+    }
+
+    private DataMap createMap()
+    {
+        final DataMap map = new DataMap(new MapSystem(), 0);
+        for (BlockPos pos : VALUES.keySet())
+        {
+            map.getChunkFromPosition(pos.getX(), pos.getZ(), true).addData(pos.getX() & 15, pos.getY(), pos.getZ() & 15, new FakeRadiationNode(VALUES.get(pos)));
+        }
+        return map;
+    }
+
+    private int expected(int x, int y, int z)
+    {
+        return VALUES.getOrDefault(new BlockPos(x, y, z), 0);
+    }
+
+    @Test
+    public void testRegionCrossingChunks()
+    {
+        final DataMap map = createMap();
+
+        final int minX = -17, minY = 9, minZ = -4;
+        final int maxX = 17, maxY = 12, maxZ = 17;
+        final int sizeX = maxX - minX + 1;
+        final int sizeZ = maxZ - minZ + 1;
+
+        //Filled with junk so missed positions show up
+        final int[] out = new int[sizeX * (maxY - minY + 1) * sizeZ];
+        Arrays.fill(out, -1);
+
+        final long sum = map.readRegion(minX, minY, minZ, maxX, maxY, maxZ, DataMapType.RADIATION, out);
+        Assertions.assertEquals(25, sum);
+
+        for (int y = minY; y <= maxY; y++)
+        {
+            for (int z = minZ; z <= maxZ; z++)
+            {
+                for (int x = minX; x <= maxX; x++)
+                {
+                    final int index = ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX);
+                    Assertions.assertEquals(expected(x, y, z), out[index], "Position " + x + ", " + y + ", " + z);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRegionNegativeSingleChunk()
+    {
+        final DataMap map = createMap();
+
+        //Box inside chunk (-1, -1) only
+        final int[] out = new int[4 * 2 * 4];
+        final long sum = map.readRegion(-4, 10, -4, -1, 11, -1, DataMapType.RADIATION, out);
+        Assertions.assertEquals(5, sum);
+
+        //x -1, y 10, z -1 is the last of the first y level
+        Assertions.assertEquals(5, out[15]);
+        Assertions.assertEquals(5, Arrays.stream(out).sum());
+    }
+
+    @Test
+    public void testRegionMissingChunkZeroFilled()
+    {
+        final DataMap map = createMap();
+
+        //Chunk (-1, 1) was never created
+        final int[] out = new int[16 * 3 * 16];
+        Arrays.fill(out, 99);
+        final long sum = map.readRegion(-16, 9, 16, -1, 11, 31, DataMapType.RADIATION, out);
+
+        Assertions.assertEquals(0, sum);
+        for (int value : out)
+        {
+            Assertions.assertEquals(0, value);
+        }
+    }
+
+    @Test
+    public void testRegionArrayTooSmall()
+    {
+        final DataMap map = createMap();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.readRegion(0, 0, 0, 1, 1, 1, DataMapType.RADIATION, new int[7]));
+    }
+
+    @Test
+    public void testValues()
+    {
+        final DataMap map = createMap();
+
+        final BlockPos[] positions = {
+                new BlockPos(-1, 10, -1),
+                new BlockPos(-16, 11, -3),
+                new BlockPos(-2, 10, -1), //Same chunk, no value
+                new BlockPos(0, 10, 0),
+                new BlockPos(-5, 10, 20), //Missing chunk
+                new BlockPos(15, 11, 16),
+                new BlockPos(16, 10, -1),
+                new BlockPos(16, 11, -1)
+        };
+
+        final long[] packed = new long[positions.length + 2];
+        for (int i = 0; i < positions.length; i++)
+        {
+            packed[i] = positions[i].toLong();
+        }
+
+        //Filled with junk so missed positions show up, entries past the count are left alone
+        final int[] out = new int[positions.length + 2];
+        Arrays.fill(out, -1);
+
+        final long sum = map.readValues(packed, positions.length, DataMapType.RADIATION, out);
+        Assertions.assertEquals(25, sum);
+        for (int i = 0; i < positions.length; i++)
+        {
+            Assertions.assertEquals(expected(positions[i].getX(), positions[i].getY(), positions[i].getZ()), out[i], "Position " + positions[i]);
+        }
+        Assertions.assertEquals(-1, out[positions.length]);
+    }
+
+    @Test
+    public void testValuesMatchPointReads()
+    {
+        final DataMap map = createMap();
+        for (BlockPos pos : VALUES.keySet())
+        {
+            final int[] out = new int[1];
+            map.readValues(new long[]{pos.toLong()}, 1, DataMapType.RADIATION, out);
+            Assertions.assertEquals(map.getValue(pos, DataMapType.RADIATION), out[0]);
+            Assertions.assertEquals(map.readValue(pos.getX(), pos.getY(), pos.getZ(), DataMapType.RADIATION), out[0]);
+        }
+    }
+}
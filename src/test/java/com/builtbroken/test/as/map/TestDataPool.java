@@ -0,0 +1,103 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.map.data.DataPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class TestDataPool
+{
+    @Test
+    public void testEmpty()
+    {
+        DataPool<Object> pool = new DataPool("test", 100);
+        Assertions.assertFalse(pool.has());
+        Assertions.assertNull(pool.get());
+        Assertions.assertEquals(1, pool.misses.sum());
+        Assertions.assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testDisposeGet()
+    {
+        DataPool<Object> pool = new DataPool("test", 1000);
+        List<Object> objects = new ArrayList();
+        for (int i = 0; i < 500; i++)
+        {
+            objects.add(new Object());
+            pool.dispose(objects.get(i));
+        }
+        Assertions.assertEquals(500, pool.size());
+
+        //Every object comes back once
+        Set<Object> returned = Collections.newSetFromMap(new IdentityHashMap());
+        while (pool.has())
+        {
+            Assertions.assertTrue(returned.add(pool.get()));
+        }
+        Assertions.assertEquals(500, returned.size());
+        Assertions.assertTrue(returned.containsAll(objects));
+        Assertions.assertEquals(0, pool.size());
+        Assertions.assertEquals(500, pool.hits.sum());
+    }
+
+    @Test
+    public void testBounded()
+    {
+        DataPool<Object> pool = new DataPool("test", 256);
+        for (int i = 0; i < 10000; i++)
+        {
+            pool.dispose(new Object());
+        }
+        //Depot is bounded, thread magazines hold a little more
+        Assertions.assertTrue(pool.size() <= 256 + 64, "size " + pool.size());
+        Assertions.assertEquals(10000, pool.size() + pool.overflows.sum());
+    }
+
+    @Test
+    public void testAcrossThreads() throws InterruptedException
+    {
+        final DataPool<Object> pool = new DataPool("test", 100000);
+        final ConcurrentLinkedQueue<Object> taken = new ConcurrentLinkedQueue();
+
+        //One thread fills, others drain
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++)
+            {
+                pool.dispose(new Object());
+            }
+        });
+        producer.start();
+        producer.join();
+
+        Thread[] consumers = new Thread[4];
+        for (int t = 0; t < consumers.length; t++)
+        {
+            consumers[t] = new Thread(() -> {
+                Object object;
+                while ((object = pool.get()) != null)
+                {
+                    taken.add(object);
+                }
+            });
+            consumers[t].start();
+        }
+        for (Thread thread : consumers)
+        {
+            thread.join();
+        }
+
+        //Producer thread keeps its last two magazines, everything moved through the depot is taken once
+        Set<Object> unique = Collections.newSetFromMap(new IdentityHashMap());
+        unique.addAll(taken);
+        Assertions.assertEquals(taken.size(), unique.size());
+        Assertions.assertEquals(20000, taken.size() + pool.size());
+        Assertions.assertTrue(taken.size() >= 20000 - 64);
+    }
+}
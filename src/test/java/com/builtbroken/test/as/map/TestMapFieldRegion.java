@@ -0,0 +1,157 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.map.data.storage.MapFieldRegion;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class TestMapFieldRegion
+{
+    @Test
+    public void testPack()
+    {
+        for (int dx = -2048; dx < 2048; dx += 7)
+        {
+            for (int dz = -2048; dz < 2048; dz += 13)
+            {
+                for (int y = 0; y < 256; y += 51)
+                {
+                    final int pos = MapFieldRegion.pack(dx, y, dz);
+                    Assertions.assertEquals(dx, MapFieldRegion.unpackX(pos));
+                    Assertions.assertEquals(y, MapFieldRegion.unpackY(pos));
+                    Assertions.assertEquals(dz, MapFieldRegion.unpackZ(pos));
+                }
+            }
+        }
+        Assertions.assertFalse(MapFieldRegion.canPack(2048, 0, 0));
+        Assertions.assertFalse(MapFieldRegion.canPack(0, 256, 0));
+    }
+
+    @Test
+    public void testSaveLoad() throws IOException
+    {
+        final File folder = Files.createTempDirectory("asfields").toFile();
+        final File file = new File(folder, "r.0.0.radiation.asf");
+
+        final MapFieldRegion.Record recordA = new MapFieldRegion.Record(12345L,
+                new int[]{MapFieldRegion.pack(-5, 64, 3), MapFieldRegion.pack(10, 0, -40)},
+                new int[]{100, 7});
+        final MapFieldRegion.Record recordB = new MapFieldRegion.Record(-1L, new int[0], new int[0]);
+
+        final MapFieldRegion region = new MapFieldRegion(file);
+        region.put(1L, recordA);
+        region.put(2L, recordB);
+        Assertions.assertTrue(region.isDirty());
+        region.save();
+        Assertions.assertFalse(region.isDirty());
+        Assertions.assertTrue(file.exists());
+
+        final MapFieldRegion loaded = new MapFieldRegion(file);
+        loaded.load();
+        Assertions.assertEquals(recordA, loaded.get(1L));
+        Assertions.assertEquals(recordB, loaded.get(2L));
+        Assertions.assertNull(loaded.get(3L));
+
+        //Same record does not need saving
+        loaded.put(1L, recordA);
+        Assertions.assertFalse(loaded.isDirty());
+
+        //Removing all records deletes the file
+        loaded.remove(1L);
+        loaded.remove(2L);
+        loaded.save();
+        Assertions.assertFalse(file.exists());
+        folder.delete();
+    }
+
+    @Test
+    public void testClaimOnce() throws IOException
+    {
+        final File folder = Files.createTempDirectory("asfields").toFile();
+        final File file = new File(folder, "r.0.0.radiation.asf");
+
+        final long nearPos = new BlockPos(10, 64, 10).toLong();
+        final long farPos = new BlockPos(200, 64, 200).toLong();
+        final MapFieldRegion.Record record = new MapFieldRegion.Record(1L, new int[]{MapFieldRegion.pack(0, 64, 0)}, new int[]{5});
+
+        final MapFieldRegion region = new MapFieldRegion(file);
+        region.put(nearPos, record);
+        region.put(farPos, record);
+
+        //Records stored this session are not restored
+        Assertions.assertNull(region.claim(nearPos));
+        region.save();
+
+        final MapFieldRegion loaded = new MapFieldRegion(file);
+        loaded.load();
+        Assertions.assertTrue(loaded.hasWaiting());
+
+        //Block change near the first source drops only its record
+        loaded.removeWaiting(20, 64, 20, 50);
+        Assertions.assertNull(loaded.claim(nearPos));
+        Assertions.assertTrue(loaded.isDirty());
+
+        //Second claim of the same source gets nothing
+        Assertions.assertEquals(record, loaded.claim(farPos));
+        Assertions.assertNull(loaded.claim(farPos));
+        Assertions.assertFalse(loaded.hasWaiting());
+
+        file.delete();
+        folder.delete();
+    }
+
+    @Test
+    public void testRemoveWaitingByChunk() throws IOException
+    {
+        final File folder = Files.createTempDirectory("asfields").toFile();
+        final File file = new File(folder, "r.0.0.radiation.asf");
+
+        final long[] sources = {
+                new BlockPos(1, 10, 1).toLong(),
+                new BlockPos(14, 200, 2).toLong(),
+                new BlockPos(17, 64, 1).toLong(),
+                new BlockPos(-3, 64, 40).toLong(),
+                new BlockPos(500, 64, 500).toLong()
+        };
+        final MapFieldRegion.Record record = new MapFieldRegion.Record(1L, new int[0], new int[0]);
+
+        final MapFieldRegion region = new MapFieldRegion(file);
+        for (long source : sources)
+        {
+            region.put(source, record);
+        }
+        region.save();
+
+        //Positions read back without a BlockPos
+        Assertions.assertEquals(-3, MapFieldRegion.getX(sources[3]));
+        Assertions.assertEquals(64, MapFieldRegion.getY(sources[3]));
+        Assertions.assertEquals(40, MapFieldRegion.getZ(sources[3]));
+
+        final MapFieldRegion loaded = new MapFieldRegion(file);
+        loaded.load();
+
+        //Box inside the first chunk only drops the sources inside the box
+        loaded.removeWaiting(0, 0, 0, 15, 100, 15);
+        Assertions.assertNull(loaded.claim(sources[0]));
+        Assertions.assertNull(loaded.get(sources[0]));
+        Assertions.assertNotNull(loaded.get(sources[1]));
+        Assertions.assertNotNull(loaded.get(sources[2]));
+
+        //Box larger than the waiting chunks walks the buckets instead
+        loaded.removeWaiting(-1000, 0, -5, 1000, 255, 5);
+        Assertions.assertNull(loaded.get(sources[1]));
+        Assertions.assertNull(loaded.get(sources[2]));
+
+        //Sources outside both boxes can still be claimed
+        Assertions.assertEquals(record, loaded.claim(sources[3]));
+        Assertions.assertEquals(record, loaded.claim(sources[4]));
+        Assertions.assertFalse(loaded.hasWaiting());
+
+        file.delete();
+        folder.delete();
+    }
+}
@@ -0,0 +1,113 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.map.exposure.RayDirectionTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class TestRayDirectionTable
+{
+    @ParameterizedTest
+    @ValueSource(ints = {2, 5, 10, 31, 50, 100})
+    public void testUnitLength(int range)
+    {
+        RayDirectionTable table = RayDirectionTable.get(range);
+        for (int i = 0; i < table.size(); i++)
+        {
+            double length = Math.sqrt(table.x[i] * table.x[i] + table.y[i] * table.y[i] + table.z[i] * table.z[i]);
+            Assertions.assertEquals(1, length, 0.000001);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 5, 10, 31})
+    public void testNoDuplicates(int range)
+    {
+        RayDirectionTable table = RayDirectionTable.get(range);
+        for (int i = 0; i < table.size(); i++)
+        {
+            for (int j = i + 1; j < table.size(); j++)
+            {
+                boolean same = Math.abs(table.x[i] - table.x[j]) < 0.00001
+                        && Math.abs(table.y[i] - table.y[j]) < 0.00001
+                        && Math.abs(table.z[i] - table.z[j]) < 0.00001;
+                Assertions.assertFalse(same, "Ray " + i + " and " + j + " point the same way");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 5, 10, 31, 50, 100})
+    public void testPoleOnce(int range)
+    {
+        RayDirectionTable table = RayDirectionTable.get(range);
+        int up = 0;
+        for (int i = 0; i < table.size(); i++)
+        {
+            if (table.y[i] > 0.99999)
+            {
+                up++;
+            }
+        }
+        Assertions.assertEquals(1, up);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 5, 10, 31, 50, 100})
+    public void testCached(int range)
+    {
+        Assertions.assertSame(RayDirectionTable.get(range), RayDirectionTable.get(range));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 5, 10, 31, 50})
+    public void testPathStepMatchesDistance(int range)
+    {
+        RayDirectionTable table = RayDirectionTable.get(range);
+        for (int ray = 0; ray < table.size(); ray++)
+        {
+            for (int step = 0; step < table.pathLength(ray); step++)
+            {
+                int voxel = table.pathVoxel[table.pathStart[ray] + step];
+                Assertions.assertEquals(step, RayDirectionTable.getStep(RayDirectionTable.unpackX(voxel), RayDirectionTable.unpackY(voxel), RayDirectionTable.unpackZ(voxel)));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 5, 10, 31})
+    public void testRaysThrough(int range)
+    {
+        RayDirectionTable table = RayDirectionTable.get(range);
+
+        //Build expected rays per block by walking every path
+        HashMap<Integer, HashSet<Integer>> expected = new HashMap();
+        for (int ray = 0; ray < table.size(); ray++)
+        {
+            for (int i = table.pathStart[ray]; i < table.pathStart[ray + 1]; i++)
+            {
+                expected.computeIfAbsent(table.pathVoxel[i], key -> new HashSet()).add(ray);
+            }
+        }
+
+        for (int voxel : expected.keySet())
+        {
+            HashSet<Integer> found = new HashSet();
+            table.forEachRayThrough(RayDirectionTable.unpackX(voxel), RayDirectionTable.unpackY(voxel), RayDirectionTable.unpackZ(voxel), found::add);
+            Assertions.assertEquals(expected.get(voxel), found);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-511, -50, -1, 0, 1, 50, 511})
+    public void testPack(int offset)
+    {
+        int voxel = RayDirectionTable.pack(offset, -offset, offset / 2);
+        Assertions.assertEquals(offset, RayDirectionTable.unpackX(voxel));
+        Assertions.assertEquals(-offset, RayDirectionTable.unpackY(voxel));
+        Assertions.assertEquals(offset / 2, RayDirectionTable.unpackZ(voxel));
+    }
+}
@@ -0,0 +1,81 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.map.data.node.SourceHandleTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+public class TestSourceHandleTable
+{
+    @Test
+    public void testRegisterGet()
+    {
+        SourceHandleTable<Object> table = new SourceHandleTable();
+        Object a = new Object();
+        Object b = new Object();
+
+        int handleA = table.register(a);
+        int handleB = table.register(b);
+
+        Assertions.assertNotEquals(SourceHandleTable.NO_HANDLE, handleA);
+        Assertions.assertNotEquals(handleA, handleB);
+        Assertions.assertSame(a, table.get(handleA));
+        Assertions.assertSame(b, table.get(handleB));
+        Assertions.assertTrue(table.isHandleOf(handleA, a));
+        Assertions.assertFalse(table.isHandleOf(handleA, b));
+    }
+
+    @Test
+    public void testNoHandle()
+    {
+        SourceHandleTable<Object> table = new SourceHandleTable();
+        table.register(new Object());
+        Assertions.assertNull(table.get(SourceHandleTable.NO_HANDLE));
+    }
+
+    @Test
+    public void testReleaseInvalidatesHandle()
+    {
+        SourceHandleTable<Object> table = new SourceHandleTable();
+        Object a = new Object();
+        int handleA = table.register(a);
+
+        table.release(handleA);
+        Assertions.assertNull(table.get(handleA));
+        Assertions.assertEquals(0, table.size());
+
+        //Slot is reused, old handle must not resolve to the new object
+        Object b = new Object();
+        int handleB = table.register(b);
+        Assertions.assertNotEquals(handleA, handleB);
+        Assertions.assertNull(table.get(handleA));
+        Assertions.assertSame(b, table.get(handleB));
+
+        //Releasing a stale handle does nothing
+        table.release(handleA);
+        Assertions.assertSame(b, table.get(handleB));
+    }
+
+    @Test
+    public void testGrow()
+    {
+        SourceHandleTable<Object> table = new SourceHandleTable();
+        List<Object> objects = new ArrayList();
+        List<Integer> handles = new ArrayList();
+        for (int i = 0; i < 1000; i++)
+        {
+            Object object = new Object();
+            objects.add(object);
+            handles.add(table.register(object));
+        }
+
+        Assertions.assertEquals(1000, new HashSet(handles).size());
+        for (int i = 0; i < objects.size(); i++)
+        {
+            Assertions.assertSame(objects.get(i), table.get(handles.get(i)));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.builtbroken.test.as.map;
+
+import com.builtbroken.atomic.api.map.DataMapType;
+import com.builtbroken.atomic.api.map.IDataMapSource;
+import com.builtbroken.atomic.config.server.ConfigThread;
+import com.builtbroken.atomic.map.data.DataChange;
+import com.builtbroken.atomic.map.data.ThreadDataChange;
+import net.minecraft.nbt.NBTTagCompound;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the worker pool hand off in {@link ThreadDataChange}
+ */
+public class TestThreadDataChange
+{
+    @Test
+    public void testRetryLosesToDeferredChange() throws InterruptedException
+    {
+        final FakeSource source = new FakeSource();
+        final FakeSource other = new FakeSource();
+
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirst = new CountDownLatch(1);
+        final CountDownLatch otherStarted = new CountDownLatch(1);
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList());
+        final AtomicInteger firstAttempts = new AtomicInteger();
+
+        final ThreadDataChange thread = new ThreadDataChange("test")
+        {
+            @Override
+            protected ExecutorService createWorkers(int count, ConfigThread.PoolType type)
+            {
+                return Executors.newFixedThreadPool(2);
+            }
+
+            @Override
+            protected boolean updateLocation(DataChange change)
+            {
+                if (change.source == other)
+                {
+                    otherStarted.countDown();
+                    return true;
+                }
+
+                processed.add(change.value);
+                if (change.value == 1)
+                {
+                    firstStarted.countDown();
+                    try
+                    {
+                        releaseFirst.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    //Not done the first time, asks to run again
+                    return firstAttempts.incrementAndGet() > 1;
+                }
+                return true;
+            }
+        };
+
+        final CountDownLatch completed = new CountDownLatch(2);
+        try
+        {
+            thread.start();
+
+            final DataChange first = DataChange.get(source, 1);
+            first.completionListener = s -> completed.countDown();
+            thread.queuePosition(first);
+            Assertions.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+            //Newer change is deferred while the first is running
+            final DataChange second = DataChange.get(source, 2);
+            second.completionListener = s -> completed.countDown();
+            thread.queuePosition(second);
+
+            //Changes are dispatched in order, so once this runs the newer change has been deferred
+            thread.queuePosition(DataChange.get(other, 1));
+            Assertions.assertTrue(otherStarted.await(5, TimeUnit.SECONDS));
+
+            //First change fails, the newer change runs instead of the retry
+            releaseFirst.countDown();
+            Assertions.assertTrue(completed.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(2, processed.size());
+            Assertions.assertEquals(1, (int) processed.get(0));
+            Assertions.assertEquals(2, (int) processed.get(1));
+            Assertions.assertEquals(1, firstAttempts.get());
+            Assertions.assertEquals(0, thread.getPendingCount());
+        }
+        finally
+        {
+            thread.kill();
+        }
+    }
+
+    private static class FakeSource implements IDataMapSource
+    {
+        @Nonnull
+        @Override
+        public DataMapType getType()
+        {
+            return DataMapType.RADIATION;
+        }
+
+        @Override
+        public void clearMapData()
+        {
+
+        }
+
+        @Override
+        public void disconnectMapData()
+        {
+
+        }
+
+        @Override
+        public boolean hasMapData()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean hasActiveMapData()
+        {
+            return false;
+        }
+
+        @Override
+        public void connectMapData()
+        {
+
+        }
+
+        @Override
+        public boolean shouldQueueForUpdate(@Nullable NBTTagCompound tagCompound)
+        {
+            return false;
+        }
+
+        @Override
+        public int dim()
+        {
+            return 0;
+        }
+
+        @Override
+        public double x()
+        {
+            return 0;
+        }
+
+        @Override
+        public double y()
+        {
+            return 0;
+        }
+
+        @Override
+        public double z()
+        {
+            return 0;
+        }
+    }
+}